@@ -28,9 +28,9 @@ import java.util.Map;
 
 import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
 import net.sf.webcat.eclipse.cxxtest.internal.MutableBoolean;
-import net.sf.webcat.eclipse.cxxtest.internal.generator.TestCaseVisitor;
 import net.sf.webcat.eclipse.cxxtest.internal.generator.TestRunnerGenerator;
 import net.sf.webcat.eclipse.cxxtest.internal.generator.TestSuiteCollection;
+import net.sf.webcat.eclipse.cxxtest.internal.generator.TestSuiteIndex;
 import net.sf.webcat.eclipse.cxxtest.options.IExtraOptionsUpdater;
 
 import org.eclipse.cdt.core.CCorePlugin;
@@ -108,27 +108,31 @@ public class CxxTestDriverBuilder extends IncrementalProjectBuilder
 			});
 		}
 		
-		if(!checkForRebuild())
+		monitor.beginTask(Messages.CxxTestDriverBuilder_GeneratingDriverTaskDescription, 3);
+
+		String outputFile = getDriverFileName();
+		IFile outputFileRsrc = project.getFile(outputFile);
+		boolean driverChanged = false;
+
+		// Bring the suite index up to date, which only walks the classes
+		// in translation units that were added or changed in the resource
+		// delta since the last build, and collect all of the CxxTest test
+		// suites in the project. This is done even if nothing else in the
+		// delta requires the runner to be rebuilt, since every delta must
+		// be seen by the index; a change to the project's settings alone
+		// can add or remove source roots.
+		TestSuiteIndex index = TestSuiteIndex.getIndex(project, outputFile);
+		index.update(cproject, getDelta(project),
+				new SubProgressMonitor(monitor, 1));
+
+		if(!checkForRebuild() && !index.hasChangedSinceDriverGenerated())
 		{
 			// We don't need to rebuild the test case runner, so bail out.
 			monitor.done();
 			return null;
 		}
 
-		monitor.beginTask(Messages.CxxTestDriverBuilder_GeneratingDriverTaskDescription, 3);
-
-		// Delete the existing test runner source file.
-		String outputFile = getDriverFileName();
-		IFile outputFileRsrc = project.getFile(outputFile);
-		outputFileRsrc.delete(true, monitor);
-		
-		// Walk down the project DOM tree and find all the classes that
-		// are CxxTest test suites.
-		TestCaseVisitor visitor = new TestCaseVisitor(outputFile);
-		cproject.accept(visitor);
-		monitor.worked(1);
-
-		TestSuiteCollection suites = visitor.getSuites();
+		TestSuiteCollection suites = index.getSuites();
 
 		IPreferenceStore store = CxxTestPlugin.getDefault().getPreferenceStore();
 
@@ -146,6 +150,10 @@ public class CxxTestDriverBuilder extends IncrementalProjectBuilder
 						CxxTestPlugin.CXXTEST_PREF_TRAP_SIGNALS);
 			boolean traceStack = store.getBoolean(
 					CxxTestPlugin.CXXTEST_PREF_TRACE_STACK);
+			int suitesPerPart = store.getInt(
+					CxxTestPlugin.CXXTEST_PREF_SUITES_PER_PART);
+			boolean binaryResultsLog = store.getBoolean(
+					CxxTestPlugin.CXXTEST_PREF_BINARY_RESULTS_LOG);
 
 			IManagedBuildInfo buildInfo = ManagedBuildManager.getBuildInfo(project);
 			IConfiguration config = buildInfo.getDefaultConfiguration();
@@ -153,16 +161,23 @@ public class CxxTestDriverBuilder extends IncrementalProjectBuilder
 			String[] extraIncludes = CxxTestPlugin.getDefault().
 				getExtraOptionsUpdater().getLatestCxxTestRunnerIncludes(config);
 
+			// Every test is compiled into the runner; the tests that are
+			// actually run are selected when it is launched, so changing the
+			// selection doesn't require the runner to be regenerated.
 			TestRunnerGenerator generator = new TestRunnerGenerator(
 					cproject, fullPath, suites, null);
 			generator.setTrackHeap(trackHeap);
 			generator.setTrapSignals(trapSignals);
 			generator.setTraceStack(traceStack);
-			generator.setPossibleTestFiles(
-					visitor.getSuites().getPossibleTestFiles());
+			generator.setSuitesPerPart(suitesPerPart);
+			generator.setWriteBinaryResultsLog(binaryResultsLog);
+			generator.setPossibleTestFiles(suites.getPossibleTestFiles());
 			generator.setExtraIncludes(extraIncludes);
 
-			generator.generate();
+			// The generator leaves the existing file untouched if its
+			// content would not change, so that it isn't recompiled.
+			driverChanged = generator.generate();
+			index.markDriverGenerated();
 		}
 		catch(IOException e)
 		{
@@ -174,10 +189,18 @@ public class CxxTestDriverBuilder extends IncrementalProjectBuilder
 
 		monitor.worked(1);
 
-		// Refresh the project so it recognizes the new source file and
-		// rebuilds appropriately.
-		outputFileRsrc.refreshLocal(IResource.DEPTH_ZERO,
-				new SubProgressMonitor(monitor, 1));
+		// Refresh the project so it recognizes the new source files and
+		// rebuilds appropriately. The runner parts, if any, are generated
+		// alongside the driver file.
+		if (driverChanged)
+		{
+			outputFileRsrc.getParent().refreshLocal(IResource.DEPTH_ONE,
+					new SubProgressMonitor(monitor, 1));
+		}
+		else
+		{
+			monitor.worked(1);
+		}
 		
 		monitor.done();
 		
@@ -277,7 +300,7 @@ public class CxxTestDriverBuilder extends IncrementalProjectBuilder
 	 * 
 	 * @return the name of the test runner source file that will be generated.
 	 */
-	private String getDriverFileName()
+	public static String getDriverFileName()
 	{
 		IPreferenceStore store = CxxTestPlugin.getDefault().getPreferenceStore();
 
@@ -316,10 +339,13 @@ public class CxxTestDriverBuilder extends IncrementalProjectBuilder
 	// ----------------------------------------------------------
 	/**
 	 * Called when the user cleans the project. Here we want to delete any
-	 * markers that may have been generated by the test runner. 
+	 * markers that may have been generated by the test runner, and discard
+	 * the suite index so that the next build visits the entire project.
 	 */
 	protected void clean(IProgressMonitor monitor) throws CoreException
 	{
 		super.clean(monitor);
+
+		TestSuiteIndex.getIndex(getProject(), getDriverFileName()).clear();
 	}
 }
@@ -21,9 +21,28 @@
 
 package net.sf.webcat.eclipse.cxxtest;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
+import net.sf.webcat.eclipse.cxxtest.internal.ResultsLogFollower;
+import net.sf.webcat.eclipse.cxxtest.internal.ShardLogMerger;
+import net.sf.webcat.eclipse.cxxtest.internal.TestSelection;
+import net.sf.webcat.eclipse.cxxtest.internal.TestRunHistory;
+import net.sf.webcat.eclipse.cxxtest.internal.TestShardPlanner;
+import net.sf.webcat.eclipse.cxxtest.internal.generator.TestCase;
+import net.sf.webcat.eclipse.cxxtest.internal.generator.TestSuite;
+import net.sf.webcat.eclipse.cxxtest.internal.generator.TestSuiteIndex;
 import net.sf.webcat.eclipse.cxxtest.ui.TestRunnerViewPart;
 
 import org.eclipse.cdt.core.CCorePlugin;
@@ -44,13 +63,19 @@ import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.DebugPlugin;
 import org.eclipse.debug.core.ILaunch;
 import org.eclipse.debug.core.ILaunchConfigurationType;
 import org.eclipse.debug.core.ILaunchConfigurationWorkingCopy;
 import org.eclipse.debug.core.ILaunchManager;
+import org.eclipse.debug.core.ILaunchesListener2;
 import org.eclipse.debug.ui.IDebugUIConstants;
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.swt.widgets.Display;
 
 //------------------------------------------------------------------------
@@ -65,53 +90,182 @@ import org.eclipse.swt.widgets.Display;
  */
 public class CxxTestDriverRunner extends IncrementalProjectBuilder
 {
-	private class RunnerLaunchThread extends Thread
+	/**
+	 * A job that launches the test executable for a project and waits for it
+	 * to finish. The number of test executables running at once across the
+	 * whole workspace is limited by a preference. Once a job has its run
+	 * slots, it launches the executable under the project's scheduling rule,
+	 * so runs of the same project don't overlap.
+	 * <p>
+	 * If sharding is enabled, the executable is launched several times at
+	 * once, with each process restricted to a disjoint subset of the test
+	 * suites. The suites are balanced across the shards by their recorded
+	 * durations, and the logs written by the shards are merged afterwards so
+	 * that the CxxTest view sees the results of a single run.
+	 * <p>
+	 * The tests to run are selected by passing include and exclude patterns
+	 * to the executable, so a different selection doesn't require the test
+	 * runner to be regenerated or recompiled. The order in which they run is
+	 * passed the same way: if enabled, the tests that failed recently run
+	 * first, then the suites affected by recent changes, then the rest. If
+	 * the job was given a selection other than every test, its results are
+	 * merged into the results already shown in the CxxTest view instead of
+	 * replacing them.
+	 * <p>
+	 * While the executables run, the logs they write are followed so that
+	 * the CxxTest view can show each test's result as soon as it finishes.
+	 */
+	private static class RunnerLaunchJob extends Job
 	{
 		private IProject project;
+		private TestSelection selection;
 
-		public RunnerLaunchThread(IProject project)
+		public RunnerLaunchJob(IProject project, TestSelection selection)
 		{
+			super(MessageFormat.format(Messages.CxxTestDriverRunner_RunnerJobName,
+					project.getName()));
+
 			this.project = project;
-			start();
+			this.selection = selection;
+		}
+
+		@Override
+		public boolean belongsTo(Object family)
+		{
+			return family == RUNNER_JOB_FAMILY || family == project;
 		}
 
-		public void run()
+		@Override
+		protected IStatus run(final IProgressMonitor monitor)
 		{
+			monitor.beginTask(
+					Messages.CxxTestDriverRunner_RunningDriverTaskDescription,
+					IProgressMonitor.UNKNOWN);
+
+			// Remember which generation of the test runner is being run,
+			// so that only the changes it was generated from are
+			// considered tested if all of the tests pass.
+			final TestSuiteIndex index = TestSuiteIndex.getIndex(project,
+					CxxTestDriverBuilder.getDriverFileName());
+			final long driverGeneration = index.getDriverGeneration();
+
+			final TestSelection runSelection = getRunSelection(index);
+			final TestRunHistory history = TestRunHistory.getHistory(project);
+			final List<String> order = getTestOrder(index, history);
+			final Map<String, Long> durations =
+				getExpectedDurations(index, history, runSelection);
+			final List<List<String>> shards =
+				TestShardPlanner.partition(durations, getMaximumShardCount());
+
+			// Each shard occupies one of the workspace-wide run slots. The
+			// job has no scheduling rule while it waits for them, so that a
+			// queued run doesn't block builds of the project; the project's
+			// rule is only taken once the slots are held.
+			int slotCount = Math.max(1, shards.size());
+			Semaphore runSlots = getRunSlots();
+
+			try
+			{
+				if (!acquireRunSlots(runSlots, slotCount, monitor))
+				{
+					monitor.done();
+					return Status.CANCEL_STATUS;
+				}
+			}
+			catch (InterruptedException e)
+			{
+				monitor.done();
+				return Status.CANCEL_STATUS;
+			}
+
 			try
 			{
 				final ICProject cproject =
 					CCorePlugin.getDefault().getCoreModel().create(project);
 
-				IPath exePath = getExecutableFile().getProjectRelativePath();
-
-				ILaunchManager launchManager = DebugPlugin.getDefault().getLaunchManager();
-				ILaunchConfigurationType type = launchManager.getLaunchConfigurationType(
-						ICDTLaunchConfigurationConstants.ID_LAUNCH_C_APP);
-				final ILaunchConfigurationWorkingCopy config = type.newInstance(null, "CxxTestRunner"); //$NON-NLS-1$
-	
-				config.setAttribute(IDebugUIConstants.ATTR_PRIVATE, true);
-				config.setAttribute(IDebugUIConstants.ATTR_LAUNCH_IN_BACKGROUND, false);
+				final ILaunchConfigurationWorkingCopy[] configs =
+					new ILaunchConfigurationWorkingCopy[slotCount];
 
-				config.setAttribute(ICDTLaunchConfigurationConstants.ATTR_PROJECT_NAME,
-						project.getName());
-				config.setAttribute(ICDTLaunchConfigurationConstants.ATTR_PROGRAM_NAME,
-						exePath.toString());
+				for (int i = 0; i < slotCount; i++)
+				{
+					configs[i] = createLaunchConfiguration(
+							(shards.size() > 1) ? shards.get(i) : null, i,
+							runSelection, order);
+				}
 
 				IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
-					public void run(IProgressMonitor monitor) throws CoreException {
-						final ILaunch launch = config.launch(ILaunchManager.RUN_MODE, null);
+					public void run(IProgressMonitor runMonitor) throws CoreException {
+						monitor.subTask(
+								Messages.CxxTestDriverRunner_RunningDriverTaskDescription);
+
+						final ILaunch[] launches = new ILaunch[configs.length];
+
+						// The logs of the previous run are removed first so
+						// that the follower doesn't read them instead.
+						File[] resultsLogs = getResultsLogs(configs.length,
+								ICxxTestConstants.TEST_RESULTS_FILE);
+						File[] binaryLogs = getResultsLogs(configs.length,
+								ICxxTestConstants.BINARY_LOG_FILE);
+
+						for (int i = 0; i < configs.length; i++)
+						{
+							resultsLogs[i].delete();
+							binaryLogs[i].delete();
+						}
+
+						// The merged logs of a sharded run are removed too,
+						// so that only the log in the format the runner
+						// writes is left to be read at the end.
+						if (configs.length > 1)
+						{
+							File projectDir = project.getLocation().toFile();
+							new File(projectDir,
+									ICxxTestConstants.TEST_RESULTS_FILE).delete();
+							new File(projectDir,
+									ICxxTestConstants.BINARY_LOG_FILE).delete();
+						}
+
+						for (int i = 0; i < configs.length; i++)
+							launches[i] = configs[i].launch(ILaunchManager.RUN_MODE, null);
 						
 						Display.getDefault().syncExec(new Runnable() {
 							public void run()
 							{
 								TestRunnerViewPart runnerPart =
 									CxxTestPlugin.getDefault().getTestRunnerView();
-								runnerPart.testRunStarted(cproject, launch);
+								runnerPart.testRunStarted(cproject, launches[0],
+										!runSelection.isEverything());
 							}
 						});
 
-						// Wait for the launched process to complete.
-						waitForProcess(launch);
+						ResultsLogFollower follower = new ResultsLogFollower(
+								resultsLogs, binaryLogs,
+								new LiveResultsListener(cproject,
+										countSelectedTests(index, runSelection)));
+						follower.start();
+
+						// Wait for the launched processes to complete, or
+						// terminate them if the job is canceled.
+						try
+						{
+							waitForProcesses(launches, monitor);
+						}
+						finally
+						{
+							follower.stop();
+						}
+
+						if (!monitor.isCanceled() && launches.length > 1)
+							mergeShardLogs(launches.length);
+
+						// Whether the tests passed is decided from the
+						// results once they have been read, since the exit
+						// value of the runner can't be relied on; a project
+						// with its own main() ignores it. Re-running some of
+						// the tests says nothing about the others, though.
+						final TestSuiteIndex testedIndex =
+							(selection.isEverything() && !monitor.isCanceled())
+							? index : null;
 
 						// Parse the CxxTest results file and enter the results in the
 						// CxxTest view.
@@ -120,7 +274,8 @@ public class CxxTestDriverRunner extends IncrementalProjectBuilder
 							{
 								TestRunnerViewPart runnerPart =
 									CxxTestPlugin.getDefault().getTestRunnerView();
-								runnerPart.testRunEnded();
+								runnerPart.testRunEnded(testedIndex,
+										driverGeneration);
 							}
 						});				
 					}
@@ -131,16 +286,484 @@ public class CxxTestDriverRunner extends IncrementalProjectBuilder
 			catch(CoreException e)
 			{
 			}
+			finally
+			{
+				runSlots.release(slotCount);
+				monitor.done();
+			}
+
+			return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+		}
+
+		private ILaunchConfigurationWorkingCopy createLaunchConfiguration(
+				List<String> suiteNames, int shardIndex,
+				TestSelection runSelection, List<String> order)
+				throws CoreException
+		{
+			IPath exePath = getExecutableFile(project).getProjectRelativePath();
+
+			ILaunchManager launchManager = DebugPlugin.getDefault().getLaunchManager();
+			ILaunchConfigurationType type = launchManager.getLaunchConfigurationType(
+					ICDTLaunchConfigurationConstants.ID_LAUNCH_C_APP);
+			ILaunchConfigurationWorkingCopy config = type.newInstance(null, "CxxTestRunner"); //$NON-NLS-1$
+
+			config.setAttribute(IDebugUIConstants.ATTR_PRIVATE, true);
+			config.setAttribute(IDebugUIConstants.ATTR_LAUNCH_IN_BACKGROUND, false);
+
+			config.setAttribute(ICDTLaunchConfigurationConstants.ATTR_PROJECT_NAME,
+					project.getName());
+			config.setAttribute(ICDTLaunchConfigurationConstants.ATTR_PROGRAM_NAME,
+					exePath.toString());
+
+			Map<String, String> environment = new HashMap<String, String>();
+
+			// Restrict a shard to its own suites, and have it write its
+			// results to its own logs so that they can be merged later.
+			if (suiteNames != null)
+			{
+				environment.put(ENV_SUITES, TestSelection.join(suiteNames));
+				environment.put(ENV_RESULTS_FILE,
+						getShardLogName(ICxxTestConstants.TEST_RESULTS_FILE, shardIndex));
+				environment.put(ENV_BINARY_RESULTS_FILE,
+						getShardLogName(ICxxTestConstants.BINARY_LOG_FILE, shardIndex));
+				environment.put(ENV_DEREFEREE_RESULTS_FILE,
+						getShardLogName(ICxxTestConstants.DEREFEREE_RESULTS_FILE, shardIndex));
+			}
+
+			if (runSelection.getIncludes() != null)
+			{
+				environment.put(ENV_INCLUDE,
+						TestSelection.join(runSelection.getIncludes()));
+			}
+
+			if (runSelection.getExcludes() != null)
+			{
+				environment.put(ENV_EXCLUDE,
+						TestSelection.join(runSelection.getExcludes()));
+			}
+
+			if (order != null && !order.isEmpty())
+				environment.put(ENV_ORDER, TestSelection.join(order));
+
+			if (CxxTestPlugin.getDefault().getPreferenceStore().getBoolean(
+					CxxTestPlugin.CXXTEST_PREF_FAIL_FAST))
+			{
+				environment.put(ENV_FAIL_FAST, "1"); //$NON-NLS-1$
+			}
+
+			if (!environment.isEmpty())
+			{
+				config.setAttribute(ILaunchManager.ATTR_ENVIRONMENT_VARIABLES,
+						environment);
+				config.setAttribute(ILaunchManager.ATTR_APPEND_ENVIRONMENT_VARIABLES,
+						true);
+			}
+
+			return config;
+		}
+
+		/**
+		 * Gets the tests that this run should select. If the job was not
+		 * given a selection and only the suites affected by the changes
+		 * since the tests last passed should be run, those suites are
+		 * selected.
+		 */
+		private TestSelection getRunSelection(TestSuiteIndex index)
+		{
+			IPreferenceStore store = CxxTestPlugin.getDefault().getPreferenceStore();
+
+			if (selection.isEverything() && store.getBoolean(
+					CxxTestPlugin.CXXTEST_PREF_RUN_AFFECTED_ONLY))
+			{
+				return new TestSelection(index.getAffectedSuiteNames(), null);
+			}
+			else
+			{
+				return selection;
+			}
+		}
+
+		/**
+		 * Gets the patterns for the tests that should run before the others,
+		 * in the order they should run, or null if the tests should run in
+		 * the order they are declared.
+		 */
+		private List<String> getTestOrder(TestSuiteIndex index,
+				TestRunHistory history)
+		{
+			IPreferenceStore store = CxxTestPlugin.getDefault().getPreferenceStore();
+
+			if (!store.getBoolean(CxxTestPlugin.CXXTEST_PREF_FAILURES_FIRST))
+				return null;
+
+			List<String> order = new ArrayList<String>(
+					history.getRecentFailures());
+
+			for (String suiteName : new TreeSet<String>(
+					index.getAffectedSuiteNames()))
+			{
+				if (!order.contains(suiteName))
+					order.add(suiteName);
+			}
+
+			return order;
+		}
+
+		private Map<String, Long> getExpectedDurations(TestSuiteIndex index,
+				TestRunHistory history, TestSelection runSelection)
+		{
+			List<TestSuite> suites = index.getSuites().getSuites();
+
+			Map<String, Long> durations = new HashMap<String, Long>();
+			List<TestSuite> unknown = new ArrayList<TestSuite>();
+			long knownDuration = 0;
+			int knownTestCount = 0;
+
+			for (TestSuite suite : suites)
+			{
+				// Suites that won't run aren't given a shard.
+				if (!isSuiteSelected(suite, runSelection))
+					continue;
+
+				long duration = getExpectedDuration(suite, history,
+						runSelection);
+
+				if (duration < 0)
+				{
+					unknown.add(suite);
+				}
+				else
+				{
+					durations.put(suite.getName(), duration);
+					knownDuration += duration;
+					knownTestCount += countSelectedTests(suite, runSelection);
+				}
+			}
+
+			for (TestSuite suite : unknown)
+			{
+				durations.put(suite.getName(),
+						TestShardPlanner.estimateDuration(
+								countSelectedTests(suite, runSelection),
+								knownDuration, knownTestCount));
+			}
+
+			return durations;
+		}
+
+		/**
+		 * Gets the expected duration of the selected tests in a suite, or -1
+		 * if it isn't known. If only some of the suite's tests are selected,
+		 * the recorded durations of those tests are added up, since the
+		 * suite's own duration includes the tests that won't run. Otherwise,
+		 * or if a selected test has no recorded duration, the duration of
+		 * the whole suite is used.
+		 */
+		private long getExpectedDuration(TestSuite suite,
+				TestRunHistory history, TestSelection runSelection)
+		{
+			long suiteDuration = history.getSuiteDuration(suite.getName());
+
+			if (runSelection.isEverything())
+				return suiteDuration;
+
+			long duration = 0;
+			int selectedCount = 0;
+
+			for (TestCase testCase : suite.getTestCases())
+			{
+				if (!runSelection.isSelected(suite.getName(),
+						testCase.getName()))
+					continue;
+
+				long testDuration = history.getTestDuration(suite.getName(),
+						testCase.getName());
+
+				if (testDuration < 0)
+					return suiteDuration;
+
+				duration += testDuration;
+				selectedCount++;
+			}
+
+			if (selectedCount == suite.getTestCases().size())
+				return suiteDuration;
+			else
+				return duration;
+		}
+
+		private int countSelectedTests(TestSuite suite,
+				TestSelection runSelection)
+		{
+			int count = 0;
+
+			for (TestCase testCase : suite.getTestCases())
+			{
+				if (runSelection.isSelected(suite.getName(),
+						testCase.getName()))
+					count++;
+			}
+
+			return count;
+		}
+
+		private boolean isSuiteSelected(TestSuite suite,
+				TestSelection runSelection)
+		{
+			if (runSelection.isEverything())
+				return true;
+
+			List<TestCase> testCases = suite.getTestCases();
+
+			if (testCases.isEmpty())
+				return runSelection.isSelected(suite.getName(), ""); //$NON-NLS-1$
+
+			for (TestCase testCase : testCases)
+			{
+				if (runSelection.isSelected(suite.getName(), testCase.getName()))
+					return true;
+			}
+
+			return false;
+		}
+
+		private int countSelectedTests(TestSuiteIndex index,
+				TestSelection runSelection)
+		{
+			int count = 0;
+
+			for (TestSuite suite : index.getSuites().getSuites())
+				count += countSelectedTests(suite, runSelection);
+
+			return count;
+		}
+
+		/**
+		 * Gets the results logs with the specified name that the launched
+		 * executables write, which are the shards' own logs if there is more
+		 * than one.
+		 */
+		private File[] getResultsLogs(int shardCount, String logName)
+		{
+			File projectDir = project.getLocation().toFile();
+
+			if (shardCount == 1)
+				return new File[] { new File(projectDir, logName) };
+
+			File[] resultsLogs = new File[shardCount];
+
+			for (int i = 0; i < shardCount; i++)
+			{
+				resultsLogs[i] = new File(projectDir,
+						getShardLogName(logName, i));
+			}
+
+			return resultsLogs;
+		}
+
+		private void mergeShardLogs(int shardCount)
+		{
+			File projectDir = project.getLocation().toFile();
+			File[] resultsLogs = getResultsLogs(shardCount,
+					ICxxTestConstants.TEST_RESULTS_FILE);
+			File[] binaryLogs = getResultsLogs(shardCount,
+					ICxxTestConstants.BINARY_LOG_FILE);
+			File[] derefereeLogs = getResultsLogs(shardCount,
+					ICxxTestConstants.DEREFEREE_RESULTS_FILE);
+
+			try
+			{
+				// Only one of the two results logs is written, depending on
+				// how the runner was generated. The binary logs are only
+				// merged if some shard wrote one.
+				File binaryLog = new File(projectDir,
+						ICxxTestConstants.BINARY_LOG_FILE);
+				ShardLogMerger.mergeBinaryTestResults(binaryLogs, binaryLog);
+
+				if (!binaryLog.exists())
+				{
+					ShardLogMerger.mergeTestResults(resultsLogs, new File(
+							projectDir, ICxxTestConstants.TEST_RESULTS_FILE));
+				}
+
+				ShardLogMerger.mergeDerefereeLogs(derefereeLogs, new File(
+						projectDir, ICxxTestConstants.DEREFEREE_RESULTS_FILE));
+			}
+			catch (IOException e)
+			{
+				// The view will report that the results could not be read.
+			}
+
+			for (int i = 0; i < shardCount; i++)
+			{
+				resultsLogs[i].delete();
+				binaryLogs[i].delete();
+				derefereeLogs[i].delete();
+			}
+		}
+
+		private boolean acquireRunSlots(Semaphore runSlots, int slotCount,
+				IProgressMonitor monitor) throws InterruptedException
+		{
+			if (runSlots.tryAcquire(slotCount))
+				return true;
+
+			monitor.subTask(Messages.CxxTestDriverRunner_WaitingForRunSlot);
+
+			// Wake up periodically so that the job can be canceled while it
+			// is waiting for another test run to finish.
+			while (!runSlots.tryAcquire(slotCount, RUN_SLOT_POLL_INTERVAL,
+					TimeUnit.MILLISECONDS))
+			{
+				if (monitor.isCanceled())
+					return false;
+			}
+
+			return true;
 		}
 		
-		private void waitForProcess(ILaunch launch)
+		/**
+		 * Waits for all of the launches to terminate, terminating them all if
+		 * the job is canceled.
+		 */
+		private void waitForProcesses(ILaunch[] launches,
+				IProgressMonitor monitor) throws DebugException
 		{
+			LaunchTerminationLatch[] latches =
+				new LaunchTerminationLatch[launches.length];
+			ILaunchManager launchManager =
+				DebugPlugin.getDefault().getLaunchManager();
+
+			// The listeners must be registered before checking whether the
+			// launches have already terminated, or the notifications could
+			// be missed.
+			for (int i = 0; i < launches.length; i++)
+			{
+				latches[i] = new LaunchTerminationLatch(launches[i]);
+				launchManager.addLaunchListener(latches[i]);
+			}
+
 			try
 			{
-				while(!launch.isTerminated())
-					Thread.sleep(250);
+				for (int i = 0; i < launches.length; i++)
+				{
+					while(!launches[i].isTerminated()
+							&& !latches[i].await(RUN_SLOT_POLL_INTERVAL))
+					{
+						if(monitor.isCanceled())
+						{
+							for (ILaunch launch : launches)
+							{
+								if (!launch.isTerminated())
+									launch.terminate();
+							}
+						}
+					}
+				}
 			}
 			catch(InterruptedException e) { }
+			finally
+			{
+				for (LaunchTerminationLatch latch : latches)
+					launchManager.removeLaunchListener(latch);
+			}
+		}
+	}
+
+	/**
+	 * Passes the results read by a log follower on to the CxxTest view. The
+	 * follower can read tests much faster than the view can show them, so
+	 * at most one update is waiting for the UI thread at a time, and it
+	 * shows whatever has been read by the time it runs.
+	 */
+	private static class LiveResultsListener
+		implements ResultsLogFollower.IListener
+	{
+		private ICProject project;
+		private int expectedTests;
+		private AtomicBoolean updatePending;
+
+		public LiveResultsListener(ICProject project, int expectedTests)
+		{
+			this.project = project;
+			this.expectedTests = expectedTests;
+			this.updatePending = new AtomicBoolean(false);
+		}
+
+		public void resultsChanged(final ResultsLogFollower follower)
+		{
+			if (!updatePending.compareAndSet(false, true))
+				return;
+
+			Display.getDefault().asyncExec(new Runnable() {
+				public void run()
+				{
+					updatePending.set(false);
+
+					TestRunnerViewPart runnerPart =
+						CxxTestPlugin.getDefault().getTestRunnerView();
+
+					if (runnerPart != null)
+					{
+						runnerPart.testRunProgress(project,
+								follower.getSuites(),
+								follower.getCompletedTestCount(),
+								expectedTests);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * A launch listener that allows a thread to block until a particular
+	 * launch terminates (or is removed from the launch manager), without
+	 * polling.
+	 */
+	private static class LaunchTerminationLatch implements ILaunchesListener2
+	{
+		private ILaunch launch;
+		private CountDownLatch latch;
+
+		public LaunchTerminationLatch(ILaunch launch)
+		{
+			this.launch = launch;
+			this.latch = new CountDownLatch(1);
+		}
+
+		public boolean await(long timeout) throws InterruptedException
+		{
+			return latch.await(timeout, TimeUnit.MILLISECONDS);
+		}
+
+		public void launchesTerminated(ILaunch[] launches)
+		{
+			countDownIfContained(launches);
+		}
+
+		public void launchesRemoved(ILaunch[] launches)
+		{
+			countDownIfContained(launches);
+		}
+
+		public void launchesAdded(ILaunch[] launches)
+		{
+		}
+
+		public void launchesChanged(ILaunch[] launches)
+		{
+		}
+
+		private void countDownIfContained(ILaunch[] launches)
+		{
+			for (ILaunch item : launches)
+			{
+				if (item == launch)
+				{
+					latch.countDown();
+					break;
+				}
+			}
 		}
 	}
 
@@ -155,7 +778,7 @@ public class CxxTestDriverRunner extends IncrementalProjectBuilder
 
 		public boolean visit(IResourceDelta delta) throws CoreException
 		{
-			if(delta.getResource().equals(getExecutableFile()))
+			if(delta.getResource().equals(getExecutableFile(getProject())))
 				exeChanged = true;
 
 			return true;
@@ -167,10 +790,8 @@ public class CxxTestDriverRunner extends IncrementalProjectBuilder
 		}
 	}
 
-	private IFile getExecutableFile()
+	private static IFile getExecutableFile(IProject project)
 	{
-		IProject project = getProject();
-
 		IManagedBuildInfo buildInfo =
 			ManagedBuildManager.getBuildInfo(project);
 
@@ -243,7 +864,7 @@ public class CxxTestDriverRunner extends IncrementalProjectBuilder
 		}
 
 		monitor.worked(1);
-		new RunnerLaunchThread(project);
+		new RunnerLaunchJob(project, TestSelection.EVERYTHING).schedule();
 
 		monitor.done();
 		
@@ -252,6 +873,71 @@ public class CxxTestDriverRunner extends IncrementalProjectBuilder
 		return null;
 	}
 
+	/**
+	 * Runs the tests in the specified project's existing test executable
+	 * without rebuilding it. The tests are run in the background, and their
+	 * results are merged into the results already shown in the CxxTest view
+	 * unless every test is selected.
+	 * 
+	 * @param project the project whose tests should be run
+	 * @param selection the tests to run
+	 */
+	public static void runTests(IProject project, TestSelection selection)
+	{
+		new RunnerLaunchJob(project, selection).schedule();
+	}
+
+	/**
+	 * Gets the semaphore that limits the number of test executables that can
+	 * run at the same time. If the limit in the preferences has changed, a
+	 * new semaphore is created; runs that already hold a permit from the old
+	 * one release it there.
+	 * 
+	 * @return the semaphore that limits concurrent test runs
+	 */
+	private static synchronized Semaphore getRunSlots()
+	{
+		IPreferenceStore store = CxxTestPlugin.getDefault().getPreferenceStore();
+		int limit = Math.max(1,
+				store.getInt(CxxTestPlugin.CXXTEST_PREF_MAX_CONCURRENT_RUNS));
+
+		if(runSlots == null || runSlotLimit != limit)
+		{
+			runSlots = new Semaphore(limit, true);
+			runSlotLimit = limit;
+		}
+
+		return runSlots;
+	}
+
+	/**
+	 * Gets the largest number of shards that a test run can be split into,
+	 * which is never more than the number of test executables that may run
+	 * at once.
+	 * 
+	 * @return the maximum number of shards
+	 */
+	private static int getMaximumShardCount()
+	{
+		IPreferenceStore store = CxxTestPlugin.getDefault().getPreferenceStore();
+
+		return Math.max(1, Math.min(
+				store.getInt(CxxTestPlugin.CXXTEST_PREF_SHARD_COUNT),
+				store.getInt(CxxTestPlugin.CXXTEST_PREF_MAX_CONCURRENT_RUNS)));
+	}
+
+	/**
+	 * Gets the name of the log that a shard writes in place of the specified
+	 * log; for example, ".cxxtest.log" becomes ".cxxtest.shard2.log".
+	 */
+	private static String getShardLogName(String logName, int shardIndex)
+	{
+		int dot = logName.lastIndexOf('.');
+
+		return logName.substring(0, dot) + ".shard" + shardIndex //$NON-NLS-1$
+			+ logName.substring(dot);
+	}
+
 	protected void clean(IProgressMonitor monitor) throws CoreException
 	{
 		super.clean(monitor);
@@ -284,4 +970,43 @@ public class CxxTestDriverRunner extends IncrementalProjectBuilder
 
 		project.getWorkspace().run(runnable, new NullProgressMonitor());
 	}
+
+	/**
+	 * The family of the jobs that run test executables, which can be used to
+	 * find or cancel them through the job manager.
+	 */
+	public static final Object RUNNER_JOB_FAMILY = new Object();
+
+	/**
+	 * How often, in milliseconds, a waiting job checks whether it has been
+	 * canceled.
+	 */
+	private static final long RUN_SLOT_POLL_INTERVAL = 250;
+
+	/**
+	 * The environment variables that restrict a shard of the test runner to
+	 * a comma-separated list of suites, and name the logs it writes.
+	 */
+	private static final String ENV_SUITES = "CXXTEST_SUITES"; //$NON-NLS-1$
+	private static final String ENV_RESULTS_FILE = "CXXTEST_RESULTS_FILE"; //$NON-NLS-1$
+	private static final String ENV_BINARY_RESULTS_FILE = "CXXTEST_BINARY_RESULTS_FILE"; //$NON-NLS-1$
+	private static final String ENV_DEREFEREE_RESULTS_FILE = "DEREFEREE_RESULTS_FILE"; //$NON-NLS-1$
+
+	/**
+	 * The environment variables that hold the comma-separated include and
+	 * exclude patterns that select the tests to run.
+	 */
+	private static final String ENV_INCLUDE = "CXXTEST_INCLUDE"; //$NON-NLS-1$
+	private static final String ENV_EXCLUDE = "CXXTEST_EXCLUDE"; //$NON-NLS-1$
+
+	/**
+	 * The environment variables that hold the comma-separated patterns for
+	 * the tests that should run first, and that stop the run after the
+	 * first failed test.
+	 */
+	private static final String ENV_ORDER = "CXXTEST_ORDER"; //$NON-NLS-1$
+	private static final String ENV_FAIL_FAST = "CXXTEST_FAIL_FAST"; //$NON-NLS-1$
+
+	private static Semaphore runSlots;
+	private static int runSlotLimit;
 }
@@ -28,6 +28,8 @@ import java.util.ResourceBundle;
 
 import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
 import net.sf.webcat.eclipse.cxxtest.internal.CxxTestPreferencesChangeListener;
+import net.sf.webcat.eclipse.cxxtest.internal.generator.TestRunnerGenerator;
+import net.sf.webcat.eclipse.cxxtest.internal.generator.TestSuiteIndex;
 import net.sf.webcat.eclipse.cxxtest.internal.options.ExtraOptionsUpdater;
 import net.sf.webcat.eclipse.cxxtest.options.IExtraOptionsUpdater;
 import net.sf.webcat.eclipse.cxxtest.ui.TestRunnerViewPart;
@@ -90,6 +92,8 @@ public class CxxTestPlugin extends AbstractUIPlugin
 		
 		getPreferenceStore().addPropertyChangeListener(
 				new CxxTestPreferencesChangeListener());
+
+		TestSuiteIndex.addProjectListener();
 	}
 	
 
@@ -99,6 +103,9 @@ public class CxxTestPlugin extends AbstractUIPlugin
 	 */
 	public void stop(BundleContext context) throws Exception
 	{
+		TestRunnerGenerator.flushTemplateCache();
+		TestSuiteIndex.removeProjectListener();
+
 		super.stop(context);
 	}
 
@@ -303,4 +310,25 @@ public class CxxTestPlugin extends AbstractUIPlugin
 
 	public static final String CXXTEST_PREF_FIRST_TIME = PLUGIN_ID
 			+ ".preferences.firstTime"; //$NON-NLS-1$
+
+	public static final String CXXTEST_PREF_SUITES_PER_PART = PLUGIN_ID
+			+ ".preferences.suitesPerPart"; //$NON-NLS-1$
+
+	public static final String CXXTEST_PREF_RUN_AFFECTED_ONLY = PLUGIN_ID
+			+ ".preferences.runAffectedOnly"; //$NON-NLS-1$
+
+	public static final String CXXTEST_PREF_MAX_CONCURRENT_RUNS = PLUGIN_ID
+			+ ".preferences.maxConcurrentRuns"; //$NON-NLS-1$
+
+	public static final String CXXTEST_PREF_SHARD_COUNT = PLUGIN_ID
+			+ ".preferences.shardCount"; //$NON-NLS-1$
+
+	public static final String CXXTEST_PREF_FAILURES_FIRST = PLUGIN_ID
+			+ ".preferences.failuresFirst"; //$NON-NLS-1$
+
+	public static final String CXXTEST_PREF_FAIL_FAST = PLUGIN_ID
+			+ ".preferences.failFast"; //$NON-NLS-1$
+
+	public static final String CXXTEST_PREF_BINARY_RESULTS_LOG = PLUGIN_ID
+			+ ".preferences.binaryResultsLog"; //$NON-NLS-1$
 }
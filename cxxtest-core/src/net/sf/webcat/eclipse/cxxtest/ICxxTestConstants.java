@@ -61,6 +61,13 @@ public interface ICxxTestConstants
 	 */
 	static final String TEST_RESULTS_FILE = ".cxxtest.log"; //$NON-NLS-1$
 
+	/**
+	 * The hard-coded filename of the compact binary results file that the
+	 * CxxTest runner will generate instead of the XML results file when the
+	 * binary results log preference is enabled.
+	 */
+	static final String BINARY_LOG_FILE = ".cxxtest.bin"; //$NON-NLS-1$
+
 	/**
 	 * The hard-coded filename of the results file that Dereferee
 	 * will generate. By default it is a dot-file, to prevent it from
@@ -49,6 +49,14 @@ public class Messages extends NLS
 
 	private static final String BUNDLE_NAME = "net.sf.webcat.eclipse.cxxtest.i18n.messages"; //$NON-NLS-1$
 
+	public static String BinaryLogReader_BadStringReference;
+	public static String BinaryLogReader_MissingHeader;
+	public static String BinaryLogReader_NumberTooLarge;
+	public static String BinaryLogReader_UnexpectedEndOfFile;
+	public static String BinaryLogReader_UnknownRecord;
+	public static String BinaryLogReader_UnknownValue;
+	public static String BinaryLogReader_UnsupportedVersion;
+	public static String ContextualPullParser_MismatchedEndTag;
 	public static String ContextualSAXHandler_StackNotEmptyAtEnd;
 	public static String ContextualSAXHandler_StackPrematurelyEmpty;
 	public static String ContextualSAXHandler_UnrecognizedTag;
@@ -75,17 +83,28 @@ public class Messages extends NLS
 	public static String CxxTestDriverBuilder_GeneratingDriverTaskDescription;
 	public static String CxxTestDriverBuilder_UpgradeProjectSettingsMessage;
 	public static String CxxTestDriverBuilder_UpgradeProjectSettingsTitle;
+	public static String CxxTestDriverRunner_RunnerJobName;
 	public static String CxxTestDriverRunner_RunningDriverTaskDescription;
+	public static String CxxTestDriverRunner_WaitingForRunSlot;
 	public static String CxxTestPlugin_ConsoleTitle;
+	public static String CxxTestPreferencePage_BinaryResultsLog;
 	public static String CxxTestPreferencePage_EnableBasicHeapChecking;
+	public static String CxxTestPreferencePage_FailFast;
+	public static String CxxTestPreferencePage_FailuresFirst;
 	public static String CxxTestPreferencePage_GeneratedDriverFileName;
 	public static String CxxTestPreferencePage_GenerateStackTraces;
+	public static String CxxTestPreferencePage_MaxConcurrentRuns;
+	public static String CxxTestPreferencePage_RunAffectedOnly;
+	public static String CxxTestPreferencePage_ShardCount;
+	public static String CxxTestPreferencePage_SuitesPerPart;
 	public static String CxxTestPreferencePage_TrapSignals;
 	public static String CxxTestPropertyPage_EnableCxxTest;
 	public static String CxxTestStackFrame_FileAndLineNumber;
 	public static String CxxTestStackFrame_FileOnly;
 	public static String DerefereeLeak_ArrayDescription;
 	public static String DerefereeLeak_BlockDescription;
+	public static String DerefereeLeakGroup_Description;
+	public static String DerefereeLeakGroup_DescriptionWithFunction;
 	public static String OpenTestAction_OpenInEditorLabel;
 	public static String OpenTestAction_OpenInEditorTooltip;
 	public static String PathUtils_DestinationPathNull;
@@ -103,8 +122,11 @@ public class Messages extends NLS
 	public static String TestHierarchyTab_ErrorTitle;
 	public static String TestHierarchyTab_ExpandAllLabel;
 	public static String TestHierarchyTab_ExpandAllTooltip;
+	public static String TestHierarchyTab_SortByTimeLabel;
+	public static String TestHierarchyTab_SortByTimeTooltip;
 	public static String TestHierarchyTab_TabName;
 	public static String TestHierarchyTab_TabTooltip;
+	public static String TestHierarchyTab_TimedLabel;
 	public static String TestMemoryTab_ErrorDescription;
 	public static String TestMemoryTab_ErrorDescriptionWithLineNumber;
 	public static String TestMemoryTab_ErrorTitle;
@@ -112,6 +134,8 @@ public class Messages extends NLS
 	public static String TestMemoryTab_NumMemoryLeaks;
 	public static String TestMemoryTab_NumMemoryLeaksElided;
 	public static String TestMemoryTab_TabName;
+	public static String TestRunResultService_JobName;
+	public static String TestRunnerGenerator_CouldNotReplace;
 	public static String TestRunnerViewPart_AllocatedUsingSuffix;
 	public static String TestRunnerViewPart_AutomaticViewLabel;
 	public static String TestRunnerViewPart_CallsToArrayDeleteNonNull;
@@ -122,11 +146,16 @@ public class Messages extends NLS
 	public static String TestRunnerViewPart_DetailsLabel;
 	public static String TestRunnerViewPart_HorizontalViewLabel;
 	public static String TestRunnerViewPart_MaximumBytesInUse;
+	public static String TestRunnerViewPart_RerunFailuresLabel;
+	public static String TestRunnerViewPart_RerunFailuresTooltip;
 	public static String TestRunnerViewPart_RunningMessage;
 	public static String TestRunnerViewPart_TerminateLabel;
 	public static String TestRunnerViewPart_TerminateTooltip;
 	public static String TestRunnerViewPart_TotalBytesAllocated;
 	public static String TestRunnerViewPart_VerticalViewLabel;
+	public static String XmlPullReader_UnexpectedCharacter;
+	public static String XmlPullReader_UnexpectedEndOfFile;
+	public static String XmlPullReader_UnknownEntity;
 
 
 	// ----------------------------------------------------------
@@ -46,6 +46,8 @@ public class CxxTestPreferencesChangeListener implements
 	{
 //		if (CxxTestPlugin.CXXTEST_PREF_TRACE_STACK.equals(
 //				event.getProperty()))
+		if (event.getOldValue() instanceof Boolean
+				&& event.getNewValue() instanceof Boolean)
 		{
 			boolean oldValue = (Boolean) event.getOldValue();
 			boolean newValue = (Boolean) event.getNewValue();
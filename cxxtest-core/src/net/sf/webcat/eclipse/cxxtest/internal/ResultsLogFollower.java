@@ -0,0 +1,529 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestSuite;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuite;
+import net.sf.webcat.eclipse.cxxtest.xml.BinaryLogReader;
+import net.sf.webcat.eclipse.cxxtest.xml.ContextualSAXHandler;
+import net.sf.webcat.eclipse.cxxtest.xml.ElementContext;
+import net.sf.webcat.eclipse.cxxtest.xml.testresults.DocumentContext;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+//--------------------------------------------------------------------------
+/**
+ * Reads the results logs of a test run while the test executables are still
+ * writing them, so that the results can be shown as each test finishes
+ * instead of only when the whole run has ended.
+ * <p>
+ * Each log is read on its own thread by the same contexts that read a
+ * finished log, through a stream that waits for more of the file to be
+ * written instead of reporting the end of the file. Either the XML or the
+ * binary results log is read, whichever the test runner writes. When the
+ * processes writing the logs have terminated, {@link #stop()} lets the
+ * streams end once they have read everything that was written. The results
+ * gathered this way are only a preview; the finished logs are still read as
+ * usual when the run ends.
+ * <p>
+ * The suites being read are never handed out, since the threads that read
+ * them keep changing them. Instead, each suite is shown through a copy to
+ * which its tests and errors are added only once they have been read
+ * completely, so the copies can be used on any thread.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class ResultsLogFollower
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new follower. The logs should not exist yet when the
+	 * follower is started, or what they already contain will be read as
+	 * part of the run.
+	 *
+	 * @param logFiles the XML results logs to read
+	 * @param binaryLogFiles the binary results logs to read, one for each
+	 *     of the XML results logs; only one log of each pair is written
+	 * @param listener the listener that is notified whenever more results
+	 *     have been read
+	 */
+	public ResultsLogFollower(File[] logFiles, File[] binaryLogFiles,
+			IListener listener)
+	{
+		this.listener = listener;
+
+		readers = new ArrayList<LogReader>();
+		shownSuites = new Vector<ICxxTestSuite>();
+
+		CxxTestStackFramePool framePool = new CxxTestStackFramePool();
+
+		for (int i = 0; i < logFiles.length; i++)
+		{
+			readers.add(new LogReader(logFiles[i], binaryLogFiles[i],
+					framePool));
+		}
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts reading the logs in the background.
+	 */
+	public void start()
+	{
+		for (LogReader reader : readers)
+			reader.start();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Tells the follower that nothing more will be written to the logs, and
+	 * waits for it to finish reading them. This should be called when the
+	 * processes writing the logs have terminated.
+	 */
+	public void stop()
+	{
+		stopped = true;
+
+		for (LogReader reader : readers)
+		{
+			try
+			{
+				reader.join(STOP_TIMEOUT);
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the suites that have been read so far from all of the logs, in
+	 * the order in which they started. The last suite from each log may
+	 * still be running, in which case only its finished tests are included.
+	 * A suite is the same object each time it is returned, and the suites
+	 * returned by an earlier call always come first.
+	 *
+	 * @return the suites that have been read so far
+	 */
+	public ICxxTestSuite[] getSuites()
+	{
+		return shownSuites.toArray(new ICxxTestSuite[0]);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of tests that have finished so far in all of the logs.
+	 *
+	 * @return the number of finished tests
+	 */
+	public int getCompletedTestCount()
+	{
+		int count = 0;
+
+		for (LogReader reader : readers)
+			count += reader.completedTests;
+
+		return count;
+	}
+
+
+	//~ Nested classes ........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Notified by a follower whenever a test or suite has been read.
+	 */
+	public interface IListener
+	{
+		// ----------------------------------------------------------
+		/**
+		 * Called on one of the follower's threads whenever more results have
+		 * been read. Implementations should return quickly, since the log is
+		 * not read while they run.
+		 *
+		 * @param follower the follower that read the results
+		 */
+		void resultsChanged(ResultsLogFollower follower);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads a single log on its own thread.
+	 */
+	private class LogReader extends Thread
+	{
+		// ----------------------------------------------------------
+		public LogReader(File logFile, File binaryLogFile,
+				CxxTestStackFramePool framePool)
+		{
+			super("CxxTest results log follower"); //$NON-NLS-1$
+
+			this.logFile = logFile;
+			this.binaryLogFile = binaryLogFile;
+			this.document = new DocumentContext(framePool);
+
+			setDaemon(true);
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public void run()
+		{
+			File file = waitForLog();
+
+			if (file == null)
+				return;
+
+			FollowingInputStream stream = new FollowingInputStream(file);
+			ElementContext context = new ProgressContext(this, document);
+
+			try
+			{
+				if (file == binaryLogFile)
+				{
+					new BinaryLogReader(context).parse(stream);
+				}
+				else
+				{
+					XMLReader reader = XMLReaderFactory.createXMLReader();
+					reader.setContentHandler(
+							new ContextualSAXHandler(context));
+					reader.parse(new InputSource(stream));
+				}
+			}
+			catch (Exception e)
+			{
+				// A log that ends early or is malformed is reported when the
+				// finished log is read at the end of the run.
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+
+
+		// ----------------------------------------------------------
+		/**
+		 * Called when a suite has started, to show it through a copy that
+		 * doesn't have any children yet.
+		 */
+		public void suiteStarted()
+		{
+			ICxxTestSuite[] suites = document.getSuites();
+
+			suite = (CxxTestSuite) suites[suites.length - 1];
+			shownSuite = suite.copyWithoutChildren();
+			shownSuites.add(shownSuite);
+		}
+
+
+		// ----------------------------------------------------------
+		/**
+		 * Called when a test or suite error has been read completely, to add
+		 * it to the copy of its suite.
+		 */
+		public void childEnded()
+		{
+			shownSuite.adoptChild(suite.getChild(suite.getChildCount() - 1));
+		}
+
+
+		// ----------------------------------------------------------
+		/**
+		 * Called when a suite has ended, to copy its times.
+		 */
+		public void suiteEnded()
+		{
+			shownSuite.setTimes(suite.getWallTime(), suite.getCpuTime());
+			suite = null;
+			shownSuite = null;
+		}
+
+
+		// ----------------------------------------------------------
+		/**
+		 * Waits for the test runner to create one of the logs.
+		 *
+		 * @return the log that was created, or null if the follower was
+		 *     stopped before either of them was
+		 */
+		private File waitForLog()
+		{
+			while (true)
+			{
+				boolean done = stopped;
+
+				if (logFile.exists())
+					return logFile;
+				else if (binaryLogFile.exists())
+					return binaryLogFile;
+				else if (done)
+					return null;
+
+				try
+				{
+					Thread.sleep(POLL_INTERVAL);
+				}
+				catch (InterruptedException e)
+				{
+					return null;
+				}
+			}
+		}
+
+
+		//~ Static/instance variables .........................................
+
+		private File logFile;
+		private File binaryLogFile;
+		private DocumentContext document;
+		private volatile int completedTests;
+
+		// The suite being read, and the copy through which it is shown.
+		private CxxTestSuite suite;
+		private CxxTestSuite shownSuite;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * A context that passes everything on to another context, and reports
+	 * each test and suite as soon as the end of its element has been read.
+	 * Each context returned by the other context is wrapped in the same way.
+	 */
+	private class ProgressContext extends ElementContext
+	{
+		// ----------------------------------------------------------
+		public ProgressContext(LogReader reader, ElementContext context)
+		{
+			this.reader = reader;
+			this.context = context;
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public ElementContext startElement(String uri, String localName,
+				String qName, Attributes attributes) throws SAXException
+		{
+			ElementContext child = context.startElement(uri, localName,
+					qName, attributes);
+
+			if (child == null)
+				return null;
+
+			if (TAG_SUITE.equals(localName))
+				reader.suiteStarted();
+
+			return new ProgressContext(reader, child);
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public void characters(char[] chars, int start, int length)
+			throws SAXException
+		{
+			context.characters(chars, start, length);
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public void endElement(String uri, String localName, String qName)
+			throws SAXException
+		{
+			context.endElement(uri, localName, qName);
+
+			if (TAG_TEST.equals(localName))
+			{
+				reader.childEnded();
+				reader.completedTests++;
+				listener.resultsChanged(ResultsLogFollower.this);
+			}
+			else if (TAG_SUITE_ERROR.equals(localName))
+			{
+				reader.childEnded();
+				listener.resultsChanged(ResultsLogFollower.this);
+			}
+			else if (TAG_SUITE.equals(localName))
+			{
+				reader.suiteEnded();
+				listener.resultsChanged(ResultsLogFollower.this);
+			}
+		}
+
+
+		//~ Static/instance variables .........................................
+
+		private LogReader reader;
+		private ElementContext context;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * An input stream over a file that is still being written. When it
+	 * reaches the end of what has been written so far it waits for more,
+	 * and it only reports the end of the file once the follower has been
+	 * stopped and everything written before then has been read. A file that
+	 * doesn't exist yet is waited for in the same way.
+	 */
+	private class FollowingInputStream extends InputStream
+	{
+		// ----------------------------------------------------------
+		public FollowingInputStream(File logFile)
+		{
+			this.logFile = logFile;
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public int read() throws IOException
+		{
+			byte[] buffer = new byte[1];
+
+			if (read(buffer, 0, 1) == -1)
+				return -1;
+			else
+				return buffer[0] & 0xFF;
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public int read(byte[] buffer, int offset, int length)
+			throws IOException
+		{
+			if (length == 0)
+				return 0;
+
+			while (true)
+			{
+				// Check whether the writers are done before reading, so
+				// that anything written before they finished is read before
+				// the end of the file is reported.
+				boolean done = stopped;
+
+				if (file == null && logFile.exists())
+					file = new RandomAccessFile(logFile, "r"); //$NON-NLS-1$
+
+				if (file != null)
+				{
+					int count = file.read(buffer, offset, length);
+
+					if (count > 0)
+						return count;
+				}
+
+				if (done)
+					return -1;
+
+				try
+				{
+					Thread.sleep(POLL_INTERVAL);
+				}
+				catch (InterruptedException e)
+				{
+					return -1;
+				}
+			}
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public void close()
+		{
+			if (file != null)
+			{
+				try
+				{
+					file.close();
+				}
+				catch (IOException e)
+				{
+					// Nothing more can be done about it.
+				}
+
+				file = null;
+			}
+		}
+
+
+		//~ Static/instance variables .........................................
+
+		private File logFile;
+		private RandomAccessFile file;
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	// How often, in milliseconds, a log is checked for more output.
+	private static final long POLL_INTERVAL = 100;
+
+	// How long, in milliseconds, to wait for a log to be read to the end
+	// after the follower is stopped.
+	private static final long STOP_TIMEOUT = 5000;
+
+	private static final String TAG_SUITE = "suite"; //$NON-NLS-1$
+	private static final String TAG_SUITE_ERROR = "suite-error"; //$NON-NLS-1$
+	private static final String TAG_TEST = "test"; //$NON-NLS-1$
+
+	private IListener listener;
+	private List<LogReader> readers;
+
+	// The copies of the suites that have been read so far, from all of the
+	// logs, in the order in which they started.
+	private Vector<ICxxTestSuite> shownSuites;
+	private volatile boolean stopped;
+}
@@ -0,0 +1,427 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.webcat.eclipse.cxxtest.xml.BinaryLogReader;
+
+//--------------------------------------------------------------------------
+/**
+ * Merges the results logs written by the shards of a test run into the
+ * single logs that the CxxTest view reads. The XML logs are combined line
+ * by line, relying on the layout that the CxxTest XML formatter and the
+ * Dereferee listener produce (one element per line), so they don't need to
+ * be parsed here. The binary results logs are concatenated.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class ShardLogMerger
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	private ShardLogMerger()
+	{
+		// Prevent instantiation.
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Merges the CxxTest results logs of the shards into a single log whose
+	 * world contains the suites of every shard. If a shard's log is missing
+	 * or was cut off (because the shard crashed, for example), its contents
+	 * are placed last and the merged world is left unclosed, so that the
+	 * merged log is reported as incomplete just as the log of an unsharded
+	 * run would be.
+	 *
+	 * @param shardLogs the logs written by the shards
+	 * @param target the file to write the merged log to
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void mergeTestResults(File[] shardLogs, File target)
+		throws IOException
+	{
+		List<String> completeLines = new ArrayList<String>();
+		List<String> incompleteLines = new ArrayList<String>();
+		boolean allComplete = true;
+
+		for (File shardLog : shardLogs)
+		{
+			List<String> lines = new ArrayList<String>();
+			boolean inWorld = false;
+			boolean complete = false;
+
+			if (shardLog.exists())
+			{
+				for (String line : readLines(shardLog))
+				{
+					String trimmed = line.trim();
+
+					if (!inWorld)
+					{
+						inWorld = trimmed.startsWith(WORLD_START);
+					}
+					else if (trimmed.equals(WORLD_END))
+					{
+						complete = true;
+						break;
+					}
+					else
+					{
+						lines.add(line);
+					}
+				}
+			}
+
+			if (complete)
+			{
+				completeLines.addAll(lines);
+			}
+			else
+			{
+				// A shard whose log is missing or ends before its first
+				// suite adds no lines, but its results are still missing.
+				incompleteLines.addAll(lines);
+				allComplete = false;
+			}
+		}
+
+		Writer writer = openWriter(target);
+
+		try
+		{
+			writer.write(XML_DECLARATION);
+			writer.write(WORLD_START + ">\n"); //$NON-NLS-1$
+
+			for (String line : completeLines)
+				writer.write(line + "\n"); //$NON-NLS-1$
+
+			for (String line : incompleteLines)
+				writer.write(line + "\n"); //$NON-NLS-1$
+
+			if (allComplete)
+				writer.write(WORLD_END + "\n"); //$NON-NLS-1$
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Merges the binary CxxTest results logs of the shards into a single
+	 * log. A binary log can hold the logs of several shards one after
+	 * another, so they are simply copied into the merged log, with the logs
+	 * that were cut off placed last as in {@link #mergeTestResults}. If some
+	 * of the shards did not write a binary log, the merged log ends with a
+	 * world that is never closed, so that it is reported as incomplete.
+	 * Nothing is written if none of the shards wrote a binary log.
+	 *
+	 * @param shardLogs the logs written by the shards
+	 * @param target the file to write the merged log to
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void mergeBinaryTestResults(File[] shardLogs, File target)
+		throws IOException
+	{
+		List<File> completeLogs = new ArrayList<File>();
+		List<File> incompleteLogs = new ArrayList<File>();
+		boolean allExist = true;
+
+		for (File shardLog : shardLogs)
+		{
+			if (!shardLog.exists())
+			{
+				allExist = false;
+				continue;
+			}
+
+			InputStream stream = new FileInputStream(shardLog);
+
+			try
+			{
+				if (BinaryLogReader.isComplete(stream))
+					completeLogs.add(shardLog);
+				else
+					incompleteLogs.add(shardLog);
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+
+		if (completeLogs.isEmpty() && incompleteLogs.isEmpty())
+			return;
+
+		completeLogs.addAll(incompleteLogs);
+
+		OutputStream output = new BufferedOutputStream(
+				new FileOutputStream(target));
+
+		try
+		{
+			byte[] buffer = new byte[COPY_BUFFER_SIZE];
+
+			for (File shardLog : completeLogs)
+			{
+				InputStream stream = new FileInputStream(shardLog);
+
+				try
+				{
+					int count;
+					while ((count = stream.read(buffer)) != -1)
+						output.write(buffer, 0, count);
+				}
+				finally
+				{
+					stream.close();
+				}
+			}
+
+			// A log that was cut off already leaves the world open.
+			if (!allExist && incompleteLogs.isEmpty())
+				output.write(UNCLOSED_WORLD);
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Merges the Dereferee memory logs of the shards into a single log. The
+	 * leak counts and usage statistics are added together, except for the
+	 * maximum number of bytes in use, which is the largest maximum of any
+	 * shard since the shards ran in separate processes. Shards that did not
+	 * write a memory log are ignored, and nothing is written if none of them
+	 * did.
+	 *
+	 * @param shardLogs the logs written by the shards
+	 * @param target the file to write the merged log to
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void mergeDerefereeLogs(File[] shardLogs, File target)
+		throws IOException
+	{
+		List<String> leakLines = new ArrayList<String>();
+		Map<String, Long> summary = new LinkedHashMap<String, Long>();
+		long leakCount = 0;
+		boolean found = false;
+
+		for (File shardLog : shardLogs)
+		{
+			if (!shardLog.exists())
+				continue;
+
+			found = true;
+			boolean inReport = false;
+
+			for (String line : readLines(shardLog))
+			{
+				String trimmed = line.trim();
+
+				if (trimmed.startsWith(DEREFEREE_START))
+				{
+					inReport = true;
+					leakCount += getLongAttribute(trimmed,
+							ATTR_ACTUAL_LEAK_COUNT);
+				}
+				else if (trimmed.startsWith(SUMMARY_START))
+				{
+					addSummary(summary, trimmed);
+				}
+				else if (trimmed.equals(DEREFEREE_END))
+				{
+					inReport = false;
+				}
+				else if (inReport)
+				{
+					leakLines.add(line);
+				}
+			}
+		}
+
+		if (!found)
+			return;
+
+		Writer writer = openWriter(target);
+
+		try
+		{
+			writer.write(XML_DECLARATION);
+			writer.write(DEREFEREE_START + " " + ATTR_ACTUAL_LEAK_COUNT //$NON-NLS-1$
+					+ "=\"" + leakCount + "\">\n"); //$NON-NLS-1$ //$NON-NLS-2$
+
+			for (String line : leakLines)
+				writer.write(line + "\n"); //$NON-NLS-1$
+
+			if (!summary.isEmpty())
+			{
+				writer.write("    " + SUMMARY_START); //$NON-NLS-1$
+
+				for (Map.Entry<String, Long> pair : summary.entrySet())
+				{
+					writer.write(" " + pair.getKey() + "=\"" //$NON-NLS-1$ //$NON-NLS-2$
+							+ pair.getValue() + "\""); //$NON-NLS-1$
+				}
+
+				writer.write("/>\n"); //$NON-NLS-1$
+			}
+
+			writer.write(DEREFEREE_END + "\n"); //$NON-NLS-1$
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private static void addSummary(Map<String, Long> summary, String line)
+	{
+		Matcher matcher = NUMERIC_ATTRIBUTE.matcher(line);
+
+		while (matcher.find())
+		{
+			String name = matcher.group(1);
+			long value = Long.parseLong(matcher.group(2));
+			Long previous = summary.get(name);
+
+			if (previous == null)
+				summary.put(name, value);
+			else if (ATTR_MAX_BYTES_IN_USE.equals(name))
+				summary.put(name, Math.max(previous, value));
+			else
+				summary.put(name, previous + value);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private static long getLongAttribute(String line, String name)
+	{
+		Matcher matcher = NUMERIC_ATTRIBUTE.matcher(line);
+
+		while (matcher.find())
+		{
+			if (matcher.group(1).equals(name))
+				return Long.parseLong(matcher.group(2));
+		}
+
+		return 0;
+	}
+
+
+	// ----------------------------------------------------------
+	private static List<String> readLines(File file) throws IOException
+	{
+		List<String> lines = new ArrayList<String>();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), ENCODING));
+
+		try
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+				lines.add(line);
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		return lines;
+	}
+
+
+	// ----------------------------------------------------------
+	private static Writer openWriter(File file) throws IOException
+	{
+		return new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file), ENCODING));
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	// The logs are copied byte for byte, so they are read and written with
+	// an encoding that maps every byte to a single character.
+	private static final String ENCODING = "ISO-8859-1"; //$NON-NLS-1$
+
+	private static final int COPY_BUFFER_SIZE = 8192;
+
+	// A binary log segment that starts a world and ends there: the header,
+	// then the start of a "world" element with no attributes, whose name is
+	// defined as the first entry of the segment's string table.
+	private static final byte[] UNCLOSED_WORLD = {
+		'C', 'X', 'T', 'B', 1,
+		1, 0, 5, 'w', 'o', 'r', 'l', 'd', 0
+	};
+
+	private static final String XML_DECLARATION = "<?xml version='1.0'?>\n"; //$NON-NLS-1$
+
+	private static final String WORLD_START = "<world"; //$NON-NLS-1$
+	private static final String WORLD_END = "</world>"; //$NON-NLS-1$
+
+	private static final String DEREFEREE_START = "<dereferee"; //$NON-NLS-1$
+	private static final String DEREFEREE_END = "</dereferee>"; //$NON-NLS-1$
+	private static final String SUMMARY_START = "<summary"; //$NON-NLS-1$
+
+	private static final String ATTR_ACTUAL_LEAK_COUNT = "actual-leak-count"; //$NON-NLS-1$
+	private static final String ATTR_MAX_BYTES_IN_USE = "max-bytes-in-use"; //$NON-NLS-1$
+
+	private static final Pattern NUMERIC_ATTRIBUTE =
+		Pattern.compile("([a-z-]+)=\"(-?\\d+)\""); //$NON-NLS-1$
+}
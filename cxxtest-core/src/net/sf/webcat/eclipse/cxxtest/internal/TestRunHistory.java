@@ -0,0 +1,488 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.sf.webcat.eclipse.cxxtest.CxxTestPlugin;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestBase;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestMethod;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuite;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuiteChild;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+
+//--------------------------------------------------------------------------
+/**
+ * A persistent record of how long each test suite in a project took to run
+ * in recent test runs, and of the outcome and duration of each test. The
+ * history is stored in the project's working location in the plug-in
+ * metadata area. It is used to balance the suites across the shards of a
+ * test run, and to run the tests that failed recently before the others.
+ * The durations of the tests are used to estimate how long a suite will
+ * take when only some of its tests are selected.
+ * <p>
+ * Tests are identified by patterns of the form "Suite::test", in the form
+ * accepted by {@link TestSelection}; an error in a suite outside of any of
+ * its tests is recorded under the pattern "Suite".
+ * <p>
+ * There is a single shared history for each project, which is obtained with
+ * {@link #getHistory(IProject)}.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class TestRunHistory
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new history for the specified project. The history is not
+	 * read from disk until it is first used.
+	 *
+	 * @param project the project whose test runs will be recorded
+	 */
+	private TestRunHistory(IProject project)
+	{
+		this.project = project;
+
+		suiteDurations = new TreeMap<String, Long>();
+		testFailures = new TreeMap<String, Long>();
+		testDurations = new TreeMap<String, Long>();
+		loaded = false;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the shared test run history for the specified project.
+	 *
+	 * @param project the project
+	 *
+	 * @return the test run history for the project
+	 */
+	public static synchronized TestRunHistory getHistory(IProject project)
+	{
+		TestRunHistory history = histories.get(project);
+
+		if (history == null)
+		{
+			history = new TestRunHistory(project);
+			histories.put(project, history);
+		}
+
+		return history;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Drops the shared history for the specified project, if there is one.
+	 * The history on disk is left alone, so it is read again if the project
+	 * is reopened.
+	 *
+	 * @param project the project whose history should be dropped
+	 */
+	public static synchronized void forgetHistory(IProject project)
+	{
+		histories.remove(project);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Drops the shared history of every project. This is called when the
+	 * plug-in is stopped.
+	 */
+	public static synchronized void forgetAllHistories()
+	{
+		histories.clear();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the recorded duration of the specified test suite.
+	 *
+	 * @param suiteName the name of the test suite
+	 *
+	 * @return the duration of the suite in milliseconds, or -1 if no
+	 *     duration has been recorded for it
+	 */
+	public synchronized long getSuiteDuration(String suiteName)
+	{
+		load();
+
+		Long duration = suiteDurations.get(suiteName);
+		return (duration != null) ? duration : -1;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records how long the specified test suite took to run. The new
+	 * duration is averaged with the one previously recorded, so that a
+	 * single unusually slow or fast run doesn't skew the history.
+	 *
+	 * @param suiteName the name of the test suite
+	 * @param duration the duration of the suite in milliseconds
+	 */
+	public synchronized void recordSuiteDuration(String suiteName,
+			long duration)
+	{
+		load();
+
+		Long previous = suiteDurations.get(suiteName);
+
+		if (previous != null)
+			duration = (previous + duration) / 2;
+
+		suiteDurations.put(suiteName, duration);
+		dirty = true;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records the outcomes and durations of the tests, and the durations of
+	 * the suites, in the results of a test run. Tests that were not run keep
+	 * their earlier outcomes. The duration of a suite is only recorded if
+	 * every one of its tests ran, since the time taken by some of them says
+	 * little about the time the whole suite takes.
+	 *
+	 * @param suites the suites in the results of the run
+	 * @param testCounts a map from the name of each suite to the number of
+	 *     tests it declares
+	 */
+	public synchronized void recordResults(ICxxTestSuite[] suites,
+			Map<String, Integer> testCounts)
+	{
+		// All of the failures in a run are considered equally recent.
+		long time = System.currentTimeMillis();
+
+		for (ICxxTestSuite suite : suites)
+		{
+			boolean suiteError = false;
+			int testsRun = 0;
+
+			for (ICxxTestSuiteChild child : suite.getChildren(false))
+			{
+				boolean failed =
+					child.getStatus() >= ICxxTestBase.STATUS_FAILED;
+
+				if (child instanceof ICxxTestMethod)
+				{
+					ICxxTestMethod test = (ICxxTestMethod) child;
+					testsRun++;
+
+					recordTestOutcome(suite.getName() + TEST_SEPARATOR
+							+ test.getName(), failed,
+							toMilliseconds(test.getWallTime()), time);
+				}
+				else if (failed)
+				{
+					suiteError = true;
+				}
+			}
+
+			recordTestOutcome(suite.getName(), suiteError, -1, time);
+
+			Integer testCount = testCounts.get(suite.getName());
+
+			if (suite.getWallTime() >= 0 && testCount != null
+					&& testsRun >= testCount)
+			{
+				recordSuiteDuration(suite.getName(),
+						toMilliseconds(suite.getWallTime()));
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records the outcome of a test. A test that passes is no longer
+	 * considered to have failed recently, no matter how recently it failed
+	 * before.
+	 */
+	private void recordTestOutcome(String pattern, boolean failed,
+			long duration, long time)
+	{
+		load();
+
+		if (failed)
+			testFailures.put(pattern, time);
+		else
+			testFailures.remove(pattern);
+
+		if (duration >= 0)
+			testDurations.put(pattern, duration);
+
+		dirty = true;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the recorded duration of the specified test.
+	 *
+	 * @param suiteName the name of the suite that contains the test
+	 * @param testName the name of the test
+	 *
+	 * @return the duration of the test in milliseconds, or -1 if no duration
+	 *     has been recorded for it
+	 */
+	public synchronized long getTestDuration(String suiteName,
+			String testName)
+	{
+		load();
+
+		Long duration = testDurations.get(
+				suiteName + TEST_SEPARATOR + testName);
+		return (duration != null) ? duration : -1;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the tests whose most recent outcome was a failure or an error,
+	 * starting with those that failed most recently.
+	 *
+	 * @return the patterns that identify the tests that failed recently
+	 */
+	public synchronized List<String> getRecentFailures()
+	{
+		load();
+
+		List<String> failures = new ArrayList<String>(testFailures.keySet());
+
+		Collections.sort(failures, new Comparator<String>() {
+			public int compare(String a, String b)
+			{
+				long timeA = testFailures.get(a);
+				long timeB = testFailures.get(b);
+
+				if (timeA != timeB)
+					return (timeA > timeB) ? -1 : 1;
+				else
+					return a.compareTo(b);
+			}
+		});
+
+		return failures;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Writes the history to disk if it has changed since it was last read or
+	 * written. Failure to write the history is not fatal; the suites will
+	 * simply be balanced less evenly until it is recorded again.
+	 */
+	public synchronized void save()
+	{
+		if (!dirty)
+			return;
+
+		File file = getHistoryFile();
+		if (file == null)
+			return;
+
+		DataOutputStream out = null;
+
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file)));
+
+			out.writeInt(HISTORY_VERSION);
+			writeMap(out, suiteDurations);
+			writeMap(out, testFailures);
+			writeMap(out, testDurations);
+
+			dirty = false;
+		}
+		catch (IOException e)
+		{
+			file.delete();
+		}
+		finally
+		{
+			if (out != null)
+			{
+				try
+				{
+					out.close();
+				}
+				catch (IOException e) { }
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private File getHistoryFile()
+	{
+		IPath location = project.getWorkingLocation(CxxTestPlugin.PLUGIN_ID);
+
+		if (location == null)
+			return null;
+		else
+			return location.append(HISTORY_FILE_NAME).toFile();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads the history from disk, if it has not already been read. A
+	 * missing, outdated, or corrupted history is silently treated as empty.
+	 */
+	private void load()
+	{
+		if (loaded)
+			return;
+
+		loaded = true;
+
+		File file = getHistoryFile();
+		if (file == null || !file.exists())
+			return;
+
+		DataInputStream in = null;
+
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+
+			if (in.readInt() != HISTORY_VERSION)
+				return;
+
+			readMap(in, suiteDurations);
+			readMap(in, testFailures);
+			readMap(in, testDurations);
+		}
+		catch (IOException e)
+		{
+			suiteDurations.clear();
+			testFailures.clear();
+			testDurations.clear();
+		}
+		finally
+		{
+			if (in != null)
+			{
+				try
+				{
+					in.close();
+				}
+				catch (IOException e) { }
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private static long toMilliseconds(long microseconds)
+	{
+		return (microseconds >= 0) ? microseconds / 1000 : -1;
+	}
+
+
+	// ----------------------------------------------------------
+	private static void writeMap(DataOutputStream out, Map<String, Long> map)
+		throws IOException
+	{
+		out.writeInt(map.size());
+
+		for (Map.Entry<String, Long> pair : map.entrySet())
+		{
+			out.writeUTF(pair.getKey());
+			out.writeLong(pair.getValue());
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private static void readMap(DataInputStream in, Map<String, Long> map)
+		throws IOException
+	{
+		int count = in.readInt();
+
+		for (int i = 0; i < count; i++)
+			map.put(in.readUTF(), in.readLong());
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	// The name of the file in the project's working location that holds
+	// the history.
+	private static final String HISTORY_FILE_NAME = "runHistory.dat"; //$NON-NLS-1$
+
+	// The version of the on-disk history format. Histories written with a
+	// different version are discarded.
+	private static final int HISTORY_VERSION = 2;
+
+	// The separator between the suite and test names in a test's pattern.
+	private static final String TEST_SEPARATOR = "::"; //$NON-NLS-1$
+
+	// The shared history for each project.
+	private static final Map<IProject, TestRunHistory> histories =
+		new HashMap<IProject, TestRunHistory>();
+
+	private IProject project;
+
+	// The recorded duration of each suite in milliseconds, keyed by suite
+	// name.
+	private Map<String, Long> suiteDurations;
+
+	// The time at which each test that failed in its most recent run
+	// failed, keyed by the pattern that identifies the test.
+	private Map<String, Long> testFailures;
+
+	// The recorded duration of each test in milliseconds, keyed by the
+	// pattern that identifies the test.
+	private Map<String, Long> testDurations;
+
+	private boolean loaded;
+	private boolean dirty;
+}
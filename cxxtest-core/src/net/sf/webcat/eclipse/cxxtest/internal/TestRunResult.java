@@ -0,0 +1,243 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.internal;
+
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestBase;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuite;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuiteChild;
+import net.sf.webcat.eclipse.cxxtest.model.IDerefereeSummary;
+
+import org.eclipse.cdt.core.model.ICProject;
+
+//--------------------------------------------------------------------------
+/**
+ * The results of a test run, as read from both of the logs that the test
+ * runner writes. A result is created by the {@link TestRunResultService}
+ * once both logs have been read, and is never changed afterwards, so it can
+ * be handed from the thread that read it to the UI thread and shared by all
+ * of the tabs in the CxxTest view. The suites and summary it holds must not
+ * be changed either.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class TestRunResult
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new result.
+	 *
+	 * @param project the project whose tests were run
+	 * @param suites the suites that were run, or null if the CxxTest
+	 *     results log could not be read
+	 * @param resultsLogName the name of the CxxTest results log that was
+	 *     read, which is either the XML log or the binary log
+	 * @param resultsError the error that occurred while reading the CxxTest
+	 *     results log, or null if it was read
+	 * @param memorySummary the memory usage summary, or null if there is no
+	 *     memory usage log or it could not be read
+	 * @param memoryError the error that occurred while reading the memory
+	 *     usage log, or null if it was read or doesn't exist
+	 */
+	public TestRunResult(ICProject project, ICxxTestSuite[] suites,
+			String resultsLogName, Exception resultsError,
+			IDerefereeSummary memorySummary, Exception memoryError)
+	{
+		this.project = project;
+		this.suites = suites;
+		this.resultsLogName = resultsLogName;
+		this.resultsError = resultsError;
+		this.memorySummary = memorySummary;
+		this.memoryError = memoryError;
+
+		int total = 0, failed = 0, errors = 0;
+		boolean suiteErrors = false;
+
+		if (suites != null)
+		{
+			for (ICxxTestSuite suite : suites)
+			{
+				if (suite.getStatus() >= ICxxTestBase.STATUS_FAILED)
+					suiteErrors = true;
+
+				for (ICxxTestSuiteChild test : suite.getChildren(true))
+				{
+					total++;
+
+					if (test.getStatus() == ICxxTestBase.STATUS_ERROR)
+						errors++;
+					else if (test.getStatus() == ICxxTestBase.STATUS_FAILED)
+						failed++;
+				}
+			}
+		}
+
+		totalTests = total;
+		failedTests = failed;
+		errorTests = errors;
+		successful = (suites != null && resultsError == null && !suiteErrors);
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the project whose tests were run.
+	 *
+	 * @return the project
+	 */
+	public ICProject getProject()
+	{
+		return project;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the suites that were run, including the results of earlier runs
+	 * if only some of the tests were run again.
+	 *
+	 * @return the suites, or null if the CxxTest results log could not be
+	 *     read
+	 */
+	public ICxxTestSuite[] getSuites()
+	{
+		return suites;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the name of the CxxTest results log that was read, relative to
+	 * the project.
+	 *
+	 * @return the name of either the XML log or the binary log
+	 */
+	public String getResultsLogName()
+	{
+		return resultsLogName;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the error that occurred while reading the CxxTest results log.
+	 *
+	 * @return the error, or null if the log was read
+	 */
+	public Exception getResultsError()
+	{
+		return resultsError;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of tests in the suites.
+	 *
+	 * @return the number of tests
+	 */
+	public int getTotalTests()
+	{
+		return totalTests;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of tests in the suites that failed.
+	 *
+	 * @return the number of failed tests
+	 */
+	public int getFailedTests()
+	{
+		return failedTests;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of tests in the suites that had errors.
+	 *
+	 * @return the number of tests with errors
+	 */
+	public int getErrorTests()
+	{
+		return errorTests;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether the run passed: its results log was
+	 * read completely, and no test or suite in it failed or had an error.
+	 *
+	 * @return true if the run passed
+	 */
+	public boolean isSuccessful()
+	{
+		return successful;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the memory usage summary.
+	 *
+	 * @return the summary, or null if there is no memory usage log or it
+	 *     could not be read
+	 */
+	public IDerefereeSummary getMemorySummary()
+	{
+		return memorySummary;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the error that occurred while reading the memory usage log.
+	 *
+	 * @return the error, or null if the log was read or doesn't exist
+	 */
+	public Exception getMemoryError()
+	{
+		return memoryError;
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	private final ICProject project;
+	private final ICxxTestSuite[] suites;
+	private final String resultsLogName;
+	private final Exception resultsError;
+	private final int totalTests;
+	private final int failedTests;
+	private final int errorTests;
+	private final boolean successful;
+	private final IDerefereeSummary memorySummary;
+	private final Exception memoryError;
+}
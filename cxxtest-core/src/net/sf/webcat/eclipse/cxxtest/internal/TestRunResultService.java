@@ -0,0 +1,528 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import net.sf.webcat.eclipse.cxxtest.CxxTestDriverBuilder;
+import net.sf.webcat.eclipse.cxxtest.ICxxTestConstants;
+import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
+import net.sf.webcat.eclipse.cxxtest.internal.generator.TestSuiteIndex;
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestSuite;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestAssertion;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestMethod;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuite;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuiteChild;
+import net.sf.webcat.eclipse.cxxtest.model.IDerefereeSummary;
+import net.sf.webcat.eclipse.cxxtest.xml.BinaryLogReader;
+import net.sf.webcat.eclipse.cxxtest.xml.ContextualPullParser;
+import net.sf.webcat.eclipse.cxxtest.xml.ElementContext;
+import net.sf.webcat.eclipse.cxxtest.xml.testresults.DocumentContext;
+
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.texteditor.MarkerUtilities;
+
+//--------------------------------------------------------------------------
+/**
+ * Reads the logs written by a test run and publishes the results to the
+ * listeners that have subscribed to them, such as the tabs of the CxxTest
+ * view. Each log is read only once however many listeners there are.
+ * <p>
+ * The CxxTest results log and the memory usage log are read at the same
+ * time in a background job, which also records the results in the project's
+ * test history and creates the problem markers for the failed assertions.
+ * The listeners are then given the {@link TestRunResult} in the UI thread.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class TestRunResultService
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	private TestRunResultService()
+	{
+		listeners = new ListenerList();
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the service that is shared by the whole workspace.
+	 *
+	 * @return the service
+	 */
+	public static synchronized TestRunResultService getDefault()
+	{
+		if (instance == null)
+			instance = new TestRunResultService();
+
+		return instance;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Subscribes a listener to the results of test runs.
+	 *
+	 * @param listener the listener
+	 */
+	public void addListener(IListener listener)
+	{
+		listeners.add(listener);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Unsubscribes a listener from the results of test runs.
+	 *
+	 * @param listener the listener
+	 */
+	public void removeListener(IListener listener)
+	{
+		listeners.remove(listener);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts reading the logs of a test run that has ended. Any results that
+	 * are still being read for an earlier run are discarded.
+	 *
+	 * @param project the project whose tests were run
+	 * @param previousSuites the results of an earlier run that the new
+	 *     results should be merged into, or null if they should replace them
+	 * @param testedIndex the suite index of the project if the run was meant
+	 *     to run every test, or null; if every test passed, the changes the
+	 *     runner was generated from are marked as tested in the index
+	 * @param driverGeneration the generation of the test runner that was run
+	 */
+	public synchronized void readResults(ICProject project,
+			ICxxTestSuite[] previousSuites, TestSuiteIndex testedIndex,
+			long driverGeneration)
+	{
+		cancel();
+
+		currentJob = new ReadJob(project, previousSuites, testedIndex,
+				driverGeneration);
+		currentJob.schedule();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Discards any results that are still being read, so that they won't
+	 * be published. This should be called when a new test run starts.
+	 */
+	public synchronized void cancel()
+	{
+		if (currentJob != null)
+		{
+			currentJob.cancel();
+			currentJob = null;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Publishes a result to the listeners, unless the job that read it has
+	 * been superseded in the meantime. This is called in the UI thread.
+	 */
+	private void publish(ReadJob job, TestRunResult result)
+	{
+		synchronized (this)
+		{
+			if (currentJob != job)
+				return;
+
+			currentJob = null;
+		}
+
+		for (Object listener : listeners.getListeners())
+			((IListener) listener).testRunResultAvailable(result);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the name of the CxxTest results log that the runner wrote. The
+	 * runner writes either the binary log or the XML log; the logs of the
+	 * previous run are deleted before the runner is launched.
+	 *
+	 * @return the name of the log, relative to the project
+	 */
+	private static String getResultsLogName(ICProject project)
+	{
+		IFile binaryFile = project.getProject().getFile(
+				ICxxTestConstants.BINARY_LOG_FILE);
+
+		if (binaryFile.getLocation().toFile().exists())
+			return ICxxTestConstants.BINARY_LOG_FILE;
+		else
+			return ICxxTestConstants.TEST_RESULTS_FILE;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads the CxxTest results log and then records the results, merges
+	 * them and creates their markers.
+	 *
+	 * @param logName the name of the results log to read
+	 *
+	 * @return the suites that were run
+	 */
+	private static ICxxTestSuite[] readSuites(ICProject project,
+			String logName, ICxxTestSuite[] previousSuites,
+			CxxTestStackFramePool framePool) throws Exception
+	{
+		IFile resultsFile = project.getProject().getFile(logName);
+		DocumentContext docContext = new DocumentContext(framePool);
+
+		parseLog(resultsFile, docContext,
+				ICxxTestConstants.BINARY_LOG_FILE.equals(logName));
+
+		ICxxTestSuite[] suites = docContext.getSuites();
+
+		// Remember which tests failed, so that they can be run first next
+		// time.
+		TestRunHistory history = TestRunHistory.getHistory(project.getProject());
+		history.recordResults(suites, TestSuiteIndex.getIndex(
+				project.getProject(),
+				CxxTestDriverBuilder.getDriverFileName()).getTestCounts());
+		history.save();
+
+		if (previousSuites != null)
+		{
+			suites = CxxTestSuite.mergeResults(previousSuites, suites);
+
+			// The markers for the earlier results are recreated below from
+			// the merged results.
+			try
+			{
+				project.getProject().deleteMarkers(
+						ICxxTestConstants.MARKER_FAILED_TEST, true,
+						IResource.DEPTH_INFINITE);
+			}
+			catch (CoreException e)
+			{
+				// The old markers stay; the new ones are still created.
+			}
+		}
+
+		setFailureMarkers(project, suites);
+
+		return suites;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads the memory usage log.
+	 *
+	 * @return the summary, or null if there is no memory usage log
+	 */
+	private static IDerefereeSummary readMemorySummary(ICProject project,
+			CxxTestStackFramePool framePool) throws Exception
+	{
+		IFile resultsFile = project.getProject().getFile(
+				ICxxTestConstants.DEREFEREE_RESULTS_FILE);
+		net.sf.webcat.eclipse.cxxtest.xml.memstats.DocumentContext
+			docContext = new net.sf.webcat.eclipse.cxxtest.xml.memstats
+				.DocumentContext(framePool);
+
+		try
+		{
+			parseLog(resultsFile, docContext, false);
+		}
+		catch (FileNotFoundException e)
+		{
+			// Memory usage wasn't tracked, so there is nothing to show.
+			return null;
+		}
+
+		return docContext.getSummary();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Parses an XML or binary log with the specified document context.
+	 */
+	@SuppressWarnings("deprecation")
+	private static void parseLog(IFile logFile, ElementContext docContext,
+			boolean binary) throws Exception
+	{
+		File logPath = logFile.getLocation().toFile();
+
+		// When the CxxTest results file is generated, Eclipse autodetects
+		// this change in the project contents and attempts to run the
+		// managed make process again (which has no effect because there's
+		// nothing new to make, but it does delete warning markers). But it
+		// appears setting the derived flag (which does apply here, as it's
+		// derived from the runner) will prevent managed make from doing an
+		// extraneous run.
+		try
+		{
+			logFile.setDerived(true);
+		}
+		catch (CoreException e)
+		{
+			// The log may just not exist.
+		}
+
+		FileInputStream stream = new FileInputStream(logPath);
+
+		try
+		{
+			if (binary)
+				new BinaryLogReader(docContext).parse(stream);
+			else
+				new ContextualPullParser(docContext).parse(stream);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private static void setFailureMarkers(final ICProject project,
+			final ICxxTestSuite[] suites)
+	{
+		// Create the markers in a single batch, so that the workspace sends
+		// out one change notification for all of them.
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+			public void run(IProgressMonitor monitor)
+			{
+				for (ICxxTestSuite suite : suites)
+				{
+					IFile file = project.getProject().getFile(suite.getFile());
+
+					for (ICxxTestSuiteChild child : suite.getChildren(true))
+					{
+						ICxxTestMethod test = (ICxxTestMethod) child;
+
+						for (ICxxTestAssertion assertion :
+							test.getFailedAssertions())
+						{
+							setAssertionMarker(file, assertion);
+						}
+					}
+				}
+			}
+		};
+
+		try
+		{
+			project.getProject().getWorkspace().run(runnable, null,
+					IWorkspace.AVOID_UPDATE, null);
+		}
+		catch (CoreException e)
+		{
+			// The results are still shown without the markers.
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private static void setAssertionMarker(IFile file,
+			ICxxTestAssertion assertion)
+	{
+		try
+		{
+			HashMap<String, Object> attrs = new HashMap<String, Object>();
+
+			attrs.put(IMarker.MESSAGE, assertion.getMessage(false));
+			attrs.put(IMarker.LINE_NUMBER,
+					new Integer(assertion.getLineNumber()));
+			attrs.put(IMarker.SEVERITY, new Integer(IMarker.SEVERITY_INFO));
+			attrs.put(ICxxTestConstants.ATTR_ASSERTIONTYPE,
+					new Integer(assertion.getStatus()));
+
+			MarkerUtilities.createMarker(file, attrs,
+					ICxxTestConstants.MARKER_FAILED_TEST);
+		}
+		catch (CoreException e)
+		{
+			// The assertion is still shown in the CxxTest view.
+		}
+	}
+
+
+	//~ Nested classes ........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Notified when the results of a test run are available.
+	 */
+	public interface IListener
+	{
+		// ----------------------------------------------------------
+		/**
+		 * Called in the UI thread when the results of a test run have been
+		 * read.
+		 *
+		 * @param result the results of the run
+		 */
+		void testRunResultAvailable(TestRunResult result);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads both logs of a test run, each on its own thread, and publishes
+	 * the result in the UI thread.
+	 */
+	private class ReadJob extends Job
+	{
+		// ----------------------------------------------------------
+		public ReadJob(ICProject project, ICxxTestSuite[] previousSuites,
+				TestSuiteIndex testedIndex, long driverGeneration)
+		{
+			super(Messages.TestRunResultService_JobName);
+
+			this.project = project;
+			this.previousSuites = previousSuites;
+			this.testedIndex = testedIndex;
+			this.driverGeneration = driverGeneration;
+
+			setSystem(true);
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		protected IStatus run(IProgressMonitor monitor)
+		{
+			// Both logs usually contain the same stack frames, so they
+			// share them.
+			final CxxTestStackFramePool framePool =
+				new CxxTestStackFramePool();
+
+			FutureTask<IDerefereeSummary> memoryTask =
+				new FutureTask<IDerefereeSummary>(
+						new Callable<IDerefereeSummary>() {
+					public IDerefereeSummary call() throws Exception
+					{
+						return readMemorySummary(project, framePool);
+					}
+				});
+
+			new Thread(memoryTask, "CxxTest memory usage log reader") //$NON-NLS-1$
+				.start();
+
+			String resultsLogName = getResultsLogName(project);
+			ICxxTestSuite[] suites = null;
+			Exception resultsError = null;
+			IDerefereeSummary memorySummary = null;
+			Exception memoryError = null;
+
+			// The results log is read on this thread while the memory usage
+			// log is read on the other; the results can't be published
+			// until both are done.
+			try
+			{
+				suites = readSuites(project, resultsLogName, previousSuites,
+						framePool);
+			}
+			catch (Exception e)
+			{
+				resultsError = e;
+			}
+
+			try
+			{
+				memorySummary = memoryTask.get();
+			}
+			catch (ExecutionException e)
+			{
+				memoryError = (e.getCause() instanceof Exception)
+					? (Exception) e.getCause() : e;
+			}
+			catch (InterruptedException e)
+			{
+				return Status.CANCEL_STATUS;
+			}
+
+			final TestRunResult result = new TestRunResult(project, suites,
+					resultsLogName, resultsError, memorySummary, memoryError);
+
+			if (monitor.isCanceled())
+				return Status.CANCEL_STATUS;
+
+			if (testedIndex != null && result.isSuccessful())
+				testedIndex.markTestsPassed(driverGeneration);
+
+			Display.getDefault().asyncExec(new Runnable() {
+				public void run()
+				{
+					publish(ReadJob.this, result);
+				}
+			});
+
+			return Status.OK_STATUS;
+		}
+
+
+		//~ Static/instance variables .........................................
+
+		private ICProject project;
+		private ICxxTestSuite[] previousSuites;
+		private TestSuiteIndex testedIndex;
+		private long driverGeneration;
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	private static TestRunResultService instance;
+
+	private ListenerList listeners;
+	private ReadJob currentJob;
+}
@@ -0,0 +1,225 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+//--------------------------------------------------------------------------
+/**
+ * A selection of the tests in a test runner, given by lists of include and
+ * exclude patterns that are passed to the runner when it is launched, so
+ * that the runner doesn't need to be regenerated and recompiled when the
+ * selection changes. Each pattern is either of the form "Suite", which
+ * matches every test in the matching suites, or "Suite::test"; a '*' in
+ * either part matches any sequence of characters and a '?' matches any
+ * single character.
+ * <p>
+ * A test is selected if it matches one of the include patterns (or there is
+ * no list of include patterns) and doesn't match any of the exclude
+ * patterns. These are the same rules the test runner itself applies.
+ * Selections are immutable.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class TestSelection
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new selection.
+	 *
+	 * @param includes the include patterns, or null to include every test;
+	 *     an empty collection includes no tests
+	 * @param excludes the exclude patterns, or null to exclude no tests
+	 */
+	public TestSelection(Collection<String> includes,
+			Collection<String> excludes)
+	{
+		this.includes = copy(includes);
+		this.excludes = copy(excludes);
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the include patterns.
+	 *
+	 * @return the include patterns, or null if every test is included
+	 */
+	public List<String> getIncludes()
+	{
+		return includes;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the exclude patterns.
+	 *
+	 * @return the exclude patterns, or null if no test is excluded
+	 */
+	public List<String> getExcludes()
+	{
+		return excludes;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether this selection selects every test.
+	 *
+	 * @return true if there are neither include nor exclude patterns
+	 */
+	public boolean isEverything()
+	{
+		return includes == null && excludes == null;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether the specified test is selected.
+	 *
+	 * @param suiteName the name of the suite that contains the test
+	 * @param testName the name of the test
+	 *
+	 * @return true if the test is selected
+	 */
+	public boolean isSelected(String suiteName, String testName)
+	{
+		return (includes == null || matchesAny(includes, suiteName, testName))
+			&& (excludes == null || !matchesAny(excludes, suiteName, testName));
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Joins a list of patterns into the comma-separated form that the test
+	 * runner accepts.
+	 *
+	 * @param patterns the patterns
+	 *
+	 * @return the comma-separated patterns
+	 */
+	public static String join(List<String> patterns)
+	{
+		StringBuilder buffer = new StringBuilder();
+
+		for (String pattern : patterns)
+		{
+			if (buffer.length() > 0)
+				buffer.append(',');
+
+			buffer.append(pattern);
+		}
+
+		return buffer.toString();
+	}
+
+
+	// ----------------------------------------------------------
+	private static boolean matchesAny(List<String> patterns,
+			String suiteName, String testName)
+	{
+		for (String pattern : patterns)
+		{
+			int separator = pattern.indexOf(TEST_SEPARATOR);
+
+			if (separator == -1)
+			{
+				if (wildcardMatches(pattern, suiteName))
+					return true;
+			}
+			else if (wildcardMatches(pattern.substring(0, separator),
+						suiteName)
+					&& wildcardMatches(pattern.substring(
+						separator + TEST_SEPARATOR.length()), testName))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+
+	// ----------------------------------------------------------
+	private static boolean wildcardMatches(String pattern, String text)
+	{
+		StringBuilder regex = new StringBuilder();
+		int start = 0;
+
+		for (int i = 0; i < pattern.length(); i++)
+		{
+			char ch = pattern.charAt(i);
+
+			if (ch == '*' || ch == '?')
+			{
+				if (i > start)
+					regex.append(Pattern.quote(pattern.substring(start, i)));
+
+				regex.append((ch == '*') ? ".*" : "."); //$NON-NLS-1$ //$NON-NLS-2$
+				start = i + 1;
+			}
+		}
+
+		if (start < pattern.length())
+			regex.append(Pattern.quote(pattern.substring(start)));
+
+		return Pattern.matches(regex.toString(), text);
+	}
+
+
+	// ----------------------------------------------------------
+	private static List<String> copy(Collection<String> patterns)
+	{
+		if (patterns == null)
+			return null;
+		else
+			return Collections.unmodifiableList(
+					new ArrayList<String>(patterns));
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	/**
+	 * A selection that selects every test.
+	 */
+	public static final TestSelection EVERYTHING =
+		new TestSelection(null, null);
+
+	// The separator between the suite and test parts of a pattern.
+	private static final String TEST_SEPARATOR = "::"; //$NON-NLS-1$
+
+	private List<String> includes;
+	private List<String> excludes;
+}
@@ -0,0 +1,137 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+//--------------------------------------------------------------------------
+/**
+ * Divides the test suites in a test runner into shards that can be run in
+ * parallel by separate processes. Each suite is assigned to exactly one
+ * shard, and the shards are balanced by the expected duration of the suites
+ * in them: the suites are considered from the longest to the shortest, and
+ * each is given to the shard with the least total duration so far.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class TestShardPlanner
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	private TestShardPlanner()
+	{
+		// Prevent instantiation.
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Divides the specified suites into at most the specified number of
+	 * shards. No shard is ever empty, so fewer shards are returned if there
+	 * are fewer suites than requested shards. The result depends only on the
+	 * suite names and durations, not on the iteration order of the map.
+	 *
+	 * @param durations the expected duration of each suite, keyed by suite
+	 *     name
+	 * @param shardCount the maximum number of shards
+	 *
+	 * @return a list of shards, each of which is a list of suite names
+	 */
+	public static List<List<String>> partition(
+			final Map<String, Long> durations, int shardCount)
+	{
+		List<String> names = new ArrayList<String>(durations.keySet());
+
+		Collections.sort(names, new Comparator<String>() {
+			public int compare(String a, String b)
+			{
+				long durationA = durations.get(a);
+				long durationB = durations.get(b);
+
+				if (durationA != durationB)
+					return (durationA > durationB) ? -1 : 1;
+				else
+					return a.compareTo(b);
+			}
+		});
+
+		int count = Math.max(1, Math.min(shardCount, names.size()));
+
+		List<List<String>> shards = new ArrayList<List<String>>(count);
+		long[] totals = new long[count];
+
+		for (int i = 0; i < count; i++)
+			shards.add(new ArrayList<String>());
+
+		for (String name : names)
+		{
+			int lightest = 0;
+
+			for (int i = 1; i < count; i++)
+			{
+				if (totals[i] < totals[lightest])
+					lightest = i;
+			}
+
+			shards.get(lightest).add(name);
+			totals[lightest] += durations.get(name);
+		}
+
+		if (names.isEmpty())
+			shards.clear();
+
+		return shards;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Estimates the duration of a suite that has no recorded history, from
+	 * the number of tests in it and the average duration per test of the
+	 * suites that do.
+	 *
+	 * @param testCount the number of tests in the suite
+	 * @param knownDuration the total recorded duration of the suites that
+	 *     have a history
+	 * @param knownTestCount the total number of tests in the suites that have
+	 *     a history
+	 *
+	 * @return the estimated duration of the suite
+	 */
+	public static long estimateDuration(int testCount, long knownDuration,
+			int knownTestCount)
+	{
+		if (knownTestCount == 0 || knownDuration == 0)
+			return Math.max(1, testCount);
+		else
+			return Math.max(1, testCount * knownDuration / knownTestCount);
+	}
+}
@@ -0,0 +1,371 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.internal.generator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+//--------------------------------------------------------------------------
+/**
+ * A fast scanner that reads the raw bytes of a source file to determine
+ * whether it could declare CxxTest test suites, before the much more
+ * expensive C model is built for it. Unless the file's quoted include
+ * directives are also being collected, the scan stops as soon as an
+ * {@code #include <cxxtest/TestSuite.h>} directive is found. Otherwise, it
+ * looks for the identifiers {@code TestSuite} and {@code main}; a file that
+ * contains neither can't declare a test suite or a main function, so the
+ * classes and methods in it don't need to be visited.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class IncludeDirectivePrefilter
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	private IncludeDirectivePrefilter()
+	{
+		// Prevent instantiation.
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Scans the specified file.
+	 *
+	 * @param file the file to scan
+	 *
+	 * @return one of {@link #NO_SUITES}, {@link #MAY_CONTAIN_SUITES}, or
+	 *     {@link #INCLUDES_CXXTEST}
+	 *
+	 * @throws IOException if an I/O error occurs while reading the file
+	 */
+	public static int scan(File file) throws IOException
+	{
+		return scan(file, null);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Scans the specified file, collecting the names of the headers that it
+	 * includes with quoted include directives (such as
+	 * {@code #include "foo.h"}). Since every directive in the file must be
+	 * found, the scan does not stop early when the CxxTest header is
+	 * included.
+	 *
+	 * @param file the file to scan
+	 * @param quotedIncludes a list to which the names of the headers
+	 *     included with quoted include directives will be added, or null if
+	 *     they shouldn't be collected
+	 *
+	 * @return one of {@link #NO_SUITES}, {@link #MAY_CONTAIN_SUITES}, or
+	 *     {@link #INCLUDES_CXXTEST}
+	 *
+	 * @throws IOException if an I/O error occurs while reading the file
+	 */
+	public static int scan(File file, List<String> quotedIncludes)
+		throws IOException
+	{
+		FileInputStream stream = new FileInputStream(file);
+
+		try
+		{
+			return scan(stream.getChannel(), quotedIncludes);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Scans the bytes read from the specified channel. The channel is not
+	 * closed.
+	 *
+	 * @param channel the channel to read from
+	 *
+	 * @return one of {@link #NO_SUITES}, {@link #MAY_CONTAIN_SUITES}, or
+	 *     {@link #INCLUDES_CXXTEST}
+	 *
+	 * @throws IOException if an I/O error occurs while reading the channel
+	 */
+	public static int scan(ReadableByteChannel channel) throws IOException
+	{
+		return scan(channel, null);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Scans the bytes read from the specified channel, optionally collecting
+	 * the names of the headers included with quoted include directives. The
+	 * channel is not closed.
+	 *
+	 * @param channel the channel to read from
+	 * @param quotedIncludes a list to which the names of the headers
+	 *     included with quoted include directives will be added, or null if
+	 *     they shouldn't be collected
+	 *
+	 * @return one of {@link #NO_SUITES}, {@link #MAY_CONTAIN_SUITES}, or
+	 *     {@link #INCLUDES_CXXTEST}
+	 *
+	 * @throws IOException if an I/O error occurs while reading the channel
+	 */
+	public static int scan(ReadableByteChannel channel,
+			List<String> quotedIncludes) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		// The identifier currently being read. Identifiers longer than any
+		// we are looking for are only counted, not stored.
+		byte[] identifier = new byte[MAX_IDENTIFIER_LENGTH];
+		int identifierLength = 0;
+
+		// The header name currently being read after "#include <".
+		byte[] header = new byte[CXXTEST_HEADER.length];
+		int headerLength = 0;
+
+		// The header name currently being read after "#include \"".
+		StringBuilder quotedHeader = new StringBuilder();
+
+		int state = STATE_LINE_START;
+		int result = NO_SUITES;
+		boolean foundInclude = false;
+
+		while (channel.read(buffer) != -1)
+		{
+			buffer.flip();
+
+			while (buffer.hasRemaining())
+			{
+				byte ch = buffer.get();
+
+				if (state == STATE_QUOTED_HEADER)
+				{
+					if (ch == '"')
+					{
+						quotedIncludes.add(quotedHeader.toString());
+						state = STATE_OTHER;
+					}
+					else if (ch == '\n')
+					{
+						state = STATE_LINE_START;
+					}
+					else
+					{
+						quotedHeader.append((char) (ch & 0xFF));
+					}
+
+					continue;
+				}
+				else if (state == STATE_HEADER)
+				{
+					if (ch == '>')
+					{
+						if (headerLength == header.length
+								&& equals(header, headerLength, CXXTEST_HEADER))
+						{
+							if (quotedIncludes == null)
+								return INCLUDES_CXXTEST;
+
+							foundInclude = true;
+						}
+
+						state = STATE_OTHER;
+					}
+					else if (ch == '\n')
+					{
+						state = STATE_LINE_START;
+					}
+					else if (headerLength < header.length)
+					{
+						header[headerLength++] = ch;
+					}
+					else
+					{
+						// Too long to be the CxxTest header.
+						state = STATE_OTHER;
+					}
+
+					continue;
+				}
+
+				if (isIdentifierChar(ch))
+				{
+					if (identifierLength < MAX_IDENTIFIER_LENGTH)
+						identifier[identifierLength] = ch;
+
+					identifierLength++;
+					continue;
+				}
+
+				// The byte ends any identifier being read.
+				if (identifierLength > 0)
+				{
+					if (state == STATE_HASH && identifierLength ==
+							INCLUDE.length && equals(identifier,
+									identifierLength, INCLUDE))
+					{
+						state = STATE_INCLUDE;
+					}
+					else
+					{
+						if (equals(identifier, identifierLength, TEST_SUITE)
+								|| equals(identifier, identifierLength, MAIN))
+							result = MAY_CONTAIN_SUITES;
+
+						state = STATE_OTHER;
+					}
+
+					identifierLength = 0;
+				}
+
+				if (ch == '\n')
+				{
+					state = STATE_LINE_START;
+				}
+				else if (ch == ' ' || ch == '\t' || ch == '\r'
+						|| ch == '\f' || ch == '\u000b')
+				{
+					// Whitespace doesn't change the state.
+				}
+				else if (ch == '#' && state == STATE_LINE_START)
+				{
+					state = STATE_HASH;
+				}
+				else if (ch == '<' && state == STATE_INCLUDE)
+				{
+					headerLength = 0;
+					state = STATE_HEADER;
+				}
+				else if (ch == '"' && state == STATE_INCLUDE
+						&& quotedIncludes != null)
+				{
+					quotedHeader.setLength(0);
+					state = STATE_QUOTED_HEADER;
+				}
+				else
+				{
+					state = STATE_OTHER;
+				}
+			}
+
+			buffer.clear();
+		}
+
+		// Check an identifier at the very end of the file.
+		if (identifierLength > 0
+				&& (equals(identifier, identifierLength, TEST_SUITE)
+				|| equals(identifier, identifierLength, MAIN)))
+		{
+			result = MAY_CONTAIN_SUITES;
+		}
+
+		return foundInclude ? INCLUDES_CXXTEST : result;
+	}
+
+
+	// ----------------------------------------------------------
+	private static boolean isIdentifierChar(byte ch)
+	{
+		return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z')
+			|| (ch >= '0' && ch <= '9') || ch == '_';
+	}
+
+
+	// ----------------------------------------------------------
+	private static boolean equals(byte[] bytes, int length, byte[] expected)
+	{
+		if (length != expected.length)
+			return false;
+
+		for (int i = 0; i < length; i++)
+		{
+			if (bytes[i] != expected[i])
+				return false;
+		}
+
+		return true;
+	}
+
+
+	// ----------------------------------------------------------
+	private static byte[] ascii(String str)
+	{
+		byte[] bytes = new byte[str.length()];
+
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) str.charAt(i);
+
+		return bytes;
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	/**
+	 * The file contains neither a CxxTest include directive nor any
+	 * reference to TestSuite or main, so it can't declare a test suite.
+	 */
+	public static final int NO_SUITES = 0;
+
+	/**
+	 * The file doesn't include the CxxTest header directly, but refers to
+	 * TestSuite or main, so it may declare a test suite (if the header is
+	 * included indirectly) or a main function.
+	 */
+	public static final int MAY_CONTAIN_SUITES = 1;
+
+	/**
+	 * The file includes the CxxTest header directly.
+	 */
+	public static final int INCLUDES_CXXTEST = 2;
+
+	// The states of the scanner.
+	private static final int STATE_LINE_START = 0;
+	private static final int STATE_HASH = 1;
+	private static final int STATE_INCLUDE = 2;
+	private static final int STATE_HEADER = 3;
+	private static final int STATE_OTHER = 4;
+	private static final int STATE_QUOTED_HEADER = 5;
+
+	private static final int BUFFER_SIZE = 16384;
+
+	private static final byte[] INCLUDE = ascii("include"); //$NON-NLS-1$
+	private static final byte[] TEST_SUITE = ascii("TestSuite"); //$NON-NLS-1$
+	private static final byte[] MAIN = ascii("main"); //$NON-NLS-1$
+	private static final byte[] CXXTEST_HEADER =
+		ascii("cxxtest/TestSuite.h"); //$NON-NLS-1$
+
+	private static final int MAX_IDENTIFIER_LENGTH = TEST_SUITE.length;
+}
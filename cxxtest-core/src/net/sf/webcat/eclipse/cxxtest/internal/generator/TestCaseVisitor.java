@@ -21,7 +21,13 @@
 
 package net.sf.webcat.eclipse.cxxtest.internal.generator;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -49,8 +55,23 @@ import org.eclipse.core.runtime.IPath;
 public class TestCaseVisitor implements ICElementVisitor
 {
 	public TestCaseVisitor(String file)
+	{
+		this(file, false);
+	}
+
+	/**
+	 * Creates a visitor that optionally collects the headers included with
+	 * quoted include directives in each translation unit. Collecting them
+	 * requires every file to be scanned to the end, so it should only be
+	 * done when the includes will be used.
+	 * 
+	 * @param file the name of the generated test runner source file
+	 * @param collectIncludes true if the quoted includes should be collected
+	 */
+	public TestCaseVisitor(String file, boolean collectIncludes)
 	{
 		driverFileName = file;
+		this.collectIncludes = collectIncludes;
 	}
 
 	/**
@@ -134,32 +155,75 @@ public class TestCaseVisitor implements ICElementVisitor
 		IPath path = unit.getLocation();
 		String name = path.lastSegment();
 		
-		if(name.equals(driverFileName))
+		if(TestRunnerGenerator.isGeneratedFileName(driverFileName, name))
 		{
 			return false;
 		}
 		else
 		{
-			if(containsCxxTestIncludeDirective(unit))
+			int scanResult = prefilterFile(unit);
+
+			if(scanResult == IncludeDirectivePrefilter.INCLUDES_CXXTEST)
 			{
 				suites.addPossibleTestFile(path.toOSString());
 			}
 
-			return true;
+			// Only visit the classes and functions in the file (which forces
+			// the C model to parse it) if it could contain a test suite or
+			// main function.
+			return scanResult != IncludeDirectivePrefilter.NO_SUITES;
 		}
 	}
 
-	private boolean containsCxxTestIncludeDirective(ITranslationUnit unit)
+	/**
+	 * Scans the bytes of a translation unit with the include directive
+	 * prefilter. If the unit isn't backed by a local file, its contents are
+	 * searched for the CxxTest include directive instead, and it is assumed
+	 * that it may contain suites.
+	 * 
+	 * @param unit the translation unit to scan
+	 * 
+	 * @return the result of the scan, one of the constants in
+	 *     IncludeDirectivePrefilter
+	 */
+	private int prefilterFile(ITranslationUnit unit)
 	{
+		IPath location = unit.getLocation();
+
+		if(location != null)
+		{
+			File file = location.toFile();
+
+			if(file.isFile())
+			{
+				try
+				{
+					List<String> includes = null;
+
+					if(collectIncludes)
+						includes = new ArrayList<String>();
+
+					int result = IncludeDirectivePrefilter.scan(file, includes);
+
+					if(includes != null)
+						quotedIncludes.put(location, includes);
+
+					return result;
+				}
+				catch(IOException e)
+				{
+					// Fall back to reading the unit's contents below.
+				}
+			}
+		}
+
 		String contents = String.valueOf(unit.getContents());
 		
 		Matcher matcher = includePattern.matcher(contents);
 		if(matcher.find())
-		{
-			return true;
-		}
+			return IncludeDirectivePrefilter.INCLUDES_CXXTEST;
 		else
-			return false;
+			return IncludeDirectivePrefilter.MAY_CONTAIN_SUITES;
 	}
 
 	/**
@@ -173,6 +237,21 @@ public class TestCaseVisitor implements ICElementVisitor
 		return suites;
 	}
 
+	/**
+	 * Gets the names of the headers included with quoted include directives
+	 * in each of the translation units that were visited, keyed by the
+	 * location of the unit. Units that are not backed by a local file are
+	 * not included, and the map is empty if the visitor was not asked to
+	 * collect the includes.
+	 * 
+	 * @return a map from the location of each unit to the names of the
+	 *     headers it includes
+	 */
+	public Map<IPath, List<String>> getQuotedIncludes()
+	{
+		return quotedIncludes;
+	}
+
 	/**
 	 * Gets a value indicating whether or not a reference to namespace std
 	 * was made.
@@ -368,10 +447,10 @@ public class TestCaseVisitor implements ICElementVisitor
 	 * base class in the superclass list.  This will match either
 	 * TestSuite, CxxTest::TestSuite, or ::CxxTest::TestSuite.
 	 */
-	private Pattern superclassPattern =
+	private static final Pattern superclassPattern =
 		Pattern.compile("((::)?\\s*CxxTest\\s*::\\s*)?TestSuite"); //$NON-NLS-1$
 
-	private Pattern includePattern =
+	private static final Pattern includePattern =
 		Pattern.compile("\\s*#\\s*include\\s+<cxxtest/TestSuite.h>"); //$NON-NLS-1$
 
 	/*
@@ -389,4 +468,16 @@ public class TestCaseVisitor implements ICElementVisitor
 	private Set<IStructure> generatedSuites = new HashSet<IStructure>();
 
 	private String driverFileName = null;
+
+	/*
+	 * True if the quoted includes of each translation unit are collected.
+	 */
+	private boolean collectIncludes;
+
+	/*
+	 * The names of the headers included with quoted include directives in
+	 * each translation unit, keyed by the location of the unit.
+	 */
+	private Map<IPath, List<String>> quotedIncludes =
+		new LinkedHashMap<IPath, List<String>>();
 }
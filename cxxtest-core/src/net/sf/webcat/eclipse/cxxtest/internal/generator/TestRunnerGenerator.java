@@ -21,17 +21,28 @@
 
 package net.sf.webcat.eclipse.cxxtest.internal.generator;
 
-import java.io.FileWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import net.sf.webcat.eclipse.cxxtest.CxxTestPlugin;
 import net.sf.webcat.eclipse.cxxtest.ICxxTestConstants;
+import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
 
 import org.antlr.stringtemplate.AutoIndentWriter;
 import org.antlr.stringtemplate.StringTemplate;
@@ -40,6 +51,7 @@ import org.antlr.stringtemplate.language.AngleBracketTemplateLexer;
 import org.eclipse.cdt.core.model.ICProject;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
+import org.osgi.framework.Bundle;
 
 /**
  * 
@@ -59,6 +71,12 @@ public class TestRunnerGenerator
      *            the path of the source file to be generated
      * @param suites
      *            the collection of test suites to be generated
+     * @param testsToRun
+     *            a map whose keys are of the form "Suite::test", indicating
+     *            whether each test should be run; tests that are not in the
+     *            map are run. May be null to run every test. The builder
+     *            always passes null, since the tests to run are now
+     *            selected when the runner is launched.
      * 
      * @throws IOException
      *             if an I/O error occurs during generation
@@ -74,21 +92,15 @@ public class TestRunnerGenerator
         // have been added, but not refreshed in the tool window, they
         // will be run until they are explicitly disabled).
 
-        this.testsToRunProxy = new TestsToRunProxy();
+        this.testsToRunProxy = new TestsToRunProxy(testsToRun);
 
-        // Load the template from the embedded assembly resources.
+        // Get the template group, which is only loaded from the plug-in's
+        // resources the first time it is needed. The string renderer depends
+        // on the path of the generated file, so it is registered on each
+        // template instance rather than on the shared group.
 
-        InputStream stream = FileLocator.openStream(
-        		CxxTestPlugin.getDefault().getBundle(),
-        		new Path(RunnerTemplateResourcePath), true);
-
-        StringTemplateGroup templateGroup = new StringTemplateGroup(
-                new InputStreamReader(stream), AngleBracketTemplateLexer.class);
-
-        templateGroup.registerRenderer(String.class,
-                new TestRunnerStringRenderer(path));
-
-        template = templateGroup.getInstanceOf("runAllTestsFile"); //$NON-NLS-1$
+        this.templateGroup = getTemplateGroup();
+        this.stringRenderer = new TestRunnerStringRenderer(path);
 
         // Initialize the options that will be passed into the template.
 
@@ -104,18 +116,11 @@ public class TestRunnerGenerator
         options.put("testResultsFilename", ICxxTestConstants.TEST_RESULTS_FILE); //$NON-NLS-1$
         options.put("testsToRun", testsToRunProxy); //$NON-NLS-1$
 
-        ArrayList<String> listeners = new ArrayList<String>();
-        listeners.add("XmlStdioPrinter"); //$NON-NLS-1$
+        listeners = new ArrayList<String>();
+        listeners.add(XML_LISTENER);
         options.put("listeners", listeners); //$NON-NLS-1$
-        
-        try
-        {
-            writer = new FileWriter(path);
-        }
-        catch (IOException e)
-        {
-            e.printStackTrace();
-        }
+
+        this.path = path;
     }
 
 
@@ -151,6 +156,25 @@ public class TestRunnerGenerator
 		traceStack = value;
 	}
 
+	public boolean isWritingBinaryResultsLog()
+	{
+		return listeners.contains(BINARY_LISTENER);
+	}
+
+	/**
+	 * Sets whether the generated runner writes its results to the compact
+	 * binary log instead of the XML log. The binary log is much faster to
+	 * write and read when the tests produce a large number of failures or
+	 * traces.
+	 * 
+	 * @param value true to write the binary log, or false to write the XML
+	 *     log
+	 */
+	public void setWriteBinaryResultsLog(boolean value)
+	{
+		listeners.set(0, value ? BINARY_LISTENER : XML_LISTENER);
+	}
+
 	public String[] getExtraIncludes()
 	{
 		return extraIncludes;
@@ -161,6 +185,27 @@ public class TestRunnerGenerator
 		extraIncludes = files;
 	}
 	
+	public int getSuitesPerPart()
+	{
+		return suitesPerPart;
+	}
+
+	/**
+	 * Sets the number of test suites that are generated into each runner
+	 * part. If this is zero (the default), a single source file containing
+	 * every suite is generated. Otherwise, each group of suites is generated
+	 * into its own part file alongside a thin root file, so that a change to
+	 * one suite only requires its part to be recompiled and the parts can be
+	 * compiled in parallel.
+	 * 
+	 * @param value the number of suites per part, or 0 to generate a single
+	 *     source file
+	 */
+	public void setSuitesPerPart(int value)
+	{
+		suitesPerPart = Math.max(value, 0);
+	}
+
 	public String[] getPossibleTestFiles()
 	{
 		return possibleTestFiles;
@@ -171,29 +216,352 @@ public class TestRunnerGenerator
 		possibleTestFiles = files;
 	}
 	
-	public void generate()
+	/**
+	 * Generates the test runner source file, and the runner part files if
+	 * partitioned generation is enabled. Each source is rendered into memory
+	 * first and compared with the contents of the existing file, if any; the
+	 * file is only replaced if the content differs, so that its timestamp
+	 * doesn't change (and it isn't recompiled) when nothing test-related has
+	 * changed. Part files left over from an earlier generation that are no
+	 * longer needed are deleted.
+	 * 
+	 * @return true if any file was written or deleted, or false if the
+	 *     existing files were already up to date
+	 * 
+	 * @throws IOException if an I/O error occurs during generation
+	 */
+	public boolean generate() throws IOException
     {
-        template.setAttribute("options", options); //$NON-NLS-1$
-        template.setAttribute("suites", suites.getSuites()); //$NON-NLS-1$
+        if (extraIncludes != null && extraIncludes.length > 0)
+        {
+        	options.put("extraIncludes", extraIncludes); //$NON-NLS-1$
+        }
+
+        File driverFile = new File(path);
+        boolean changed = false;
+        int partCount = 0;
+
+        if (suitesPerPart == 0)
+        {
+            StringTemplate template =
+                createTemplate("runAllTestsFile"); //$NON-NLS-1$
+            template.setAttribute("options", options); //$NON-NLS-1$
+            template.setAttribute("suites", suites.getSuites()); //$NON-NLS-1$
+            setPossibleTestFilesAttribute(template);
 
+            changed |= writeIfChanged(driverFile, render(template));
+        }
+        else
+        {
+            // The parts only declare and initialize their suites; Root.cpp
+            // and the main function are generated into the root file.
+
+            Hashtable<String, Object> partOptions =
+                new Hashtable<String, Object>(options);
+            partOptions.put("root", false); //$NON-NLS-1$
+            partOptions.put("part", true); //$NON-NLS-1$
+
+            List<TestSuite> allSuites = suites.getSuites();
+            List<Integer> partIndices = new ArrayList<Integer>();
+
+            for (int start = 0; start < allSuites.size();
+                start += suitesPerPart)
+            {
+                partCount++;
+                partIndices.add(partCount);
+
+                int end = Math.min(start + suitesPerPart, allSuites.size());
+
+                StringTemplate template =
+                    createTemplate("runnerPartFile"); //$NON-NLS-1$
+                template.setAttribute("options", partOptions); //$NON-NLS-1$
+                template.setAttribute("suites", //$NON-NLS-1$
+                        new ArrayList<TestSuite>(allSuites.subList(start, end)));
+                template.setAttribute("partIndex", partCount); //$NON-NLS-1$
+
+                File partFile = new File(driverFile.getParentFile(),
+                        getPartFileName(driverFile.getName(), partCount));
+                changed |= writeIfChanged(partFile, render(template));
+            }
+
+            StringTemplate template =
+                createTemplate("runnerRootFile"); //$NON-NLS-1$
+            template.setAttribute("options", options); //$NON-NLS-1$
+            template.setAttribute("parts", partIndices); //$NON-NLS-1$
+            setPossibleTestFilesAttribute(template);
+
+            changed |= writeIfChanged(driverFile, render(template));
+        }
+
+        changed |= deleteStaleParts(driverFile, partCount);
+
+        return changed;
+    }
+
+
+    private StringTemplate createTemplate(String name)
+    {
+        StringTemplate template = templateGroup.getInstanceOf(name);
+        template.registerRenderer(String.class, stringRenderer);
+        return template;
+    }
+
+
+    /**
+     * Gets the template group used to generate the test runner, parsing it
+     * from the plug-in's resources if it has not been loaded yet or if the
+     * plug-in bundle has been updated since it was loaded. The group is
+     * shared by all generators, including those running concurrently in
+     * builds of different projects; it is never modified after it is
+     * created, and instances of its templates are created independently.
+     * 
+     * @return the runner template group
+     * 
+     * @throws IOException if the template file could not be read
+     */
+    private static synchronized StringTemplateGroup getTemplateGroup()
+    throws IOException
+    {
+        Bundle bundle = CxxTestPlugin.getDefault().getBundle();
+        String bundleKey = bundle.getBundleId() + ":" //$NON-NLS-1$
+            + bundle.getLastModified();
+
+        if (cachedTemplateGroup == null ||
+                !bundleKey.equals(cachedTemplateGroupKey))
+        {
+            InputStream stream = FileLocator.openStream(bundle,
+                    new Path(RunnerTemplateResourcePath), true);
+
+            try
+            {
+                cachedTemplateGroup = new StringTemplateGroup(
+                        new InputStreamReader(stream),
+                        AngleBracketTemplateLexer.class);
+                cachedTemplateGroupKey = bundleKey;
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+
+        return cachedTemplateGroup;
+    }
+
+
+    /**
+     * Discards the cached template group, so that it will be loaded again
+     * the next time a test runner is generated. This is called when the
+     * plug-in is stopped.
+     */
+    public static synchronized void flushTemplateCache()
+    {
+        cachedTemplateGroup = null;
+        cachedTemplateGroupKey = null;
+    }
+
+
+    private void setPossibleTestFilesAttribute(StringTemplate template)
+    {
         if (possibleTestFiles != null && possibleTestFiles.length > 0)
         {
         	template.setAttribute("possibleTestFiles", possibleTestFiles); //$NON-NLS-1$
         }
+    }
 
-        if (extraIncludes != null && extraIncludes.length > 0)
+
+    private static String render(StringTemplate template) throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        template.write(new AutoIndentWriter(writer));
+        return writer.toString();
+    }
+
+
+    /**
+     * Deletes any runner part files next to the driver file whose index is
+     * greater than the number of parts that were just generated.
+     * 
+     * @param driverFile the test runner source file
+     * @param partCount the number of parts that were generated
+     * 
+     * @return true if any files were deleted
+     */
+    private static boolean deleteStaleParts(File driverFile, int partCount)
+    {
+        File directory = driverFile.getAbsoluteFile().getParentFile();
+        String[] names = (directory != null) ? directory.list() : null;
+
+        if (names == null)
+            return false;
+
+        Pattern pattern = getPartFilePattern(driverFile.getName());
+        boolean deleted = false;
+
+        for (String name : names)
         {
-        	options.put("extraIncludes", extraIncludes); //$NON-NLS-1$
+            Matcher matcher = pattern.matcher(name);
+
+            if (matcher.matches() &&
+                    Integer.parseInt(matcher.group(1)) > partCount)
+            {
+                deleted |= new File(directory, name).delete();
+            }
+        }
+
+        return deleted;
+    }
+
+
+    /**
+     * Gets the name of a runner part file that is generated alongside the
+     * specified test runner source file. For example, part 3 of
+     * "runAllTests.cpp" is "runAllTests_part3.cpp".
+     * 
+     * @param driverFileName the name of the test runner source file
+     * @param index the one-based index of the part
+     * 
+     * @return the name of the part file
+     */
+    public static String getPartFileName(String driverFileName, int index)
+    {
+        int dot = driverFileName.lastIndexOf('.');
+
+        if (dot == -1)
+            return driverFileName + PartFileInfix + index;
+        else
+            return driverFileName.substring(0, dot) + PartFileInfix + index
+                + driverFileName.substring(dot);
+    }
+
+
+    /**
+     * Gets a value indicating whether the file with the specified name is
+     * generated by this class for the specified test runner source file,
+     * either the file itself or one of its runner parts. Generated files
+     * should not be searched for test suites.
+     * 
+     * @param driverFileName the name of the test runner source file
+     * @param name the name of the file to check
+     * 
+     * @return true if the file is generated; otherwise, false
+     */
+    public static boolean isGeneratedFileName(String driverFileName,
+            String name)
+    {
+        return name.equals(driverFileName) ||
+            getPartFilePattern(driverFileName).matcher(name).matches();
+    }
+
+
+    private static Pattern getPartFilePattern(String driverFileName)
+    {
+        int dot = driverFileName.lastIndexOf('.');
+        String base = (dot == -1) ? driverFileName
+                : driverFileName.substring(0, dot);
+        String extension = (dot == -1) ? "" //$NON-NLS-1$
+                : driverFileName.substring(dot);
+
+        return Pattern.compile(Pattern.quote(base + PartFileInfix)
+                + "(\\d+)" + Pattern.quote(extension)); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Writes the specified content to a file, unless the file already exists
+     * and has exactly the same content. The new content is written to a
+     * temporary file in the same directory which then replaces the original,
+     * so that a build never sees a partially written file.
+     * 
+     * @param file the file to write
+     * @param content the content to write to the file
+     * 
+     * @return true if the file was written, or false if it was unchanged
+     * 
+     * @throws IOException if an I/O error occurs
+     */
+    private static boolean writeIfChanged(File file, String content)
+    throws IOException
+    {
+        byte[] bytes = content.getBytes();
+
+        if (file.exists() && file.length() == bytes.length
+                && Arrays.equals(digest(bytes), digest(file)))
+        {
+            return false;
         }
 
+        File tempFile = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+        OutputStream stream = new FileOutputStream(tempFile);
+
         try
         {
-            template.write(new AutoIndentWriter(writer));
-            writer.close();
+            stream.write(bytes);
         }
-        catch (IOException e)
+        finally
         {
-            e.printStackTrace();
+            stream.close();
+        }
+
+        // File.renameTo won't replace an existing file on some platforms,
+        // so try again after removing the original.
+        if (!tempFile.renameTo(file))
+        {
+            file.delete();
+
+            if (!tempFile.renameTo(file))
+            {
+                tempFile.delete();
+                throw new IOException(MessageFormat.format(
+                        Messages.TestRunnerGenerator_CouldNotReplace,
+                        file.getPath()));
+            }
+        }
+
+        return true;
+    }
+
+
+    private static byte[] digest(byte[] bytes)
+    {
+        MessageDigest md = createDigest();
+        md.update(bytes);
+        return md.digest();
+    }
+
+
+    private static byte[] digest(File file) throws IOException
+    {
+        MessageDigest md = createDigest();
+        InputStream stream = new FileInputStream(file);
+
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int count;
+
+            while ((count = stream.read(buffer)) != -1)
+                md.update(buffer, 0, count);
+        }
+        finally
+        {
+            stream.close();
+        }
+
+        return md.digest();
+    }
+
+
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform is required to support MD5.
+            throw new IllegalStateException(e);
         }
     }
 
@@ -202,6 +570,12 @@ public class TestRunnerGenerator
     {
         private static final long serialVersionUID = 1L;
 
+        public TestsToRunProxy(Map<String, Boolean> testsToRun)
+        {
+            if (testsToRun != null)
+                putAll(testsToRun);
+        }
+
         public boolean containsKey(Object key)
         {
             return true;
@@ -209,7 +583,8 @@ public class TestRunnerGenerator
         
         public Boolean get(Object key)
         {
-            return true;
+            Boolean value = super.get(key);
+            return (value != null) ? value : Boolean.TRUE;
         }
     }
 
@@ -217,15 +592,28 @@ public class TestRunnerGenerator
     private static final String RunnerTemplateResourcePath =
     	"/generator-templates/runner.stg"; //$NON-NLS-1$
 
+    private static final String PartFileInfix = "_part"; //$NON-NLS-1$
+
+    // The parsed runner template group shared by all generators, and the
+    // bundle identity and modification time it was loaded from.
+    private static StringTemplateGroup cachedTemplateGroup;
+    private static String cachedTemplateGroupKey;
+
     private TestSuiteCollection suites;
     private TestsToRunProxy testsToRunProxy;
     private Hashtable<String, Object> options;
-    private StringTemplate template;
-    private Writer writer;
+    private StringTemplateGroup templateGroup;
+    private TestRunnerStringRenderer stringRenderer;
+    private String path;
+    private ArrayList<String> listeners;
     
+	private static final String XML_LISTENER = "XmlStdioPrinter"; //$NON-NLS-1$
+	private static final String BINARY_LISTENER = "BinaryStdioPrinter"; //$NON-NLS-1$
+
 	private boolean trackHeap;
 	private boolean trapSignals;
 	private boolean traceStack;
+	private int suitesPerPart;
 
 	private String[] possibleTestFiles;
 	private String[] extraIncludes;
@@ -21,6 +21,8 @@
 
 package net.sf.webcat.eclipse.cxxtest.internal.generator;
 
+import java.io.File;
+
 import org.antlr.stringtemplate.AttributeRenderer;
 
 /**
@@ -46,13 +48,24 @@ public class TestRunnerStringRenderer implements AttributeRenderer
     	if (formatName.equals("asCString")) //$NON-NLS-1$
             return toCString(o.toString());
         else if (formatName.equals("runnerRelativePath")) //$NON-NLS-1$
-            return PathUtils.relativizePath(runnerPath, o.toString());
+            return toRunnerRelativePath(o.toString());
         else if (formatName.equals("runnerRelativePathAsCString")) //$NON-NLS-1$
-            return toCString(PathUtils.relativizePath(runnerPath, o.toString()));
+            return toCString(toRunnerRelativePath(o.toString()));
         else
             return o.toString();
     }
 
+    /**
+     * Gets the path of a file relative to the runner source file, using
+     * forward slashes as the separator on every platform so that the
+     * generated source doesn't depend on the machine it was generated on.
+     */
+    private String toRunnerRelativePath(String path)
+    {
+        return PathUtils.relativizePath(runnerPath, path).replace(
+                File.separatorChar, '/');
+    }
+
     private String toCString(String str)
     {
         String res = ""; //$NON-NLS-1$
@@ -22,6 +22,8 @@
 package net.sf.webcat.eclipse.cxxtest.internal.generator;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 //--------------------------------------------------------------------------
@@ -202,6 +204,27 @@ public class TestSuite
     }
 
 
+    // ------------------------------------------------------
+    /**
+     * Sorts the test cases in this test suite by line number (and then by
+     * name), so that they are generated in a canonical order.
+     */
+    public void sortTestCases()
+    {
+        Collections.sort(testCases, new Comparator<TestCase>() {
+            public int compare(TestCase a, TestCase b)
+            {
+                int result = a.getLineNumber() - b.getLineNumber();
+
+                if (result == 0)
+                    result = a.getName().compareTo(b.getName());
+
+                return result;
+            }
+        });
+    }
+
+
     //~ Instance variables ...............................................
 
     // The name of the test suite.
@@ -22,13 +22,19 @@
 package net.sf.webcat.eclipse.cxxtest.internal.generator;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 //--------------------------------------------------------------------------
 /**
  * Represents the collection of test suites that will populate the runner.
+ * The suites, their test cases, and the possible test files are always
+ * returned in a canonical order (by file and line number), regardless of the
+ * order in which they were discovered, so that the generated runner is
+ * identical from one build to the next when the tests have not changed.
  * 
  * @author  Tony Allevato (Virginia Tech Computer Science)
  * @author  latest changes by: $Author$
@@ -42,7 +48,7 @@ public class TestSuiteCollection
     public TestSuiteCollection()
     {
         this.suites = new ArrayList<TestSuite>();
-        this.possibleTestFiles = new HashSet<String>();
+        this.possibleTestFiles = new TreeSet<String>();
     }
 
 
@@ -51,6 +57,16 @@ public class TestSuiteCollection
     // ----------------------------------------------------------
     public List<TestSuite> getSuites()
     {
+        if (!sorted)
+        {
+            Collections.sort(suites, SUITE_ORDER);
+
+            for (TestSuite suite : suites)
+                suite.sortTestCases();
+
+            sorted = true;
+        }
+
         return suites;
     }
 
@@ -81,6 +97,15 @@ public class TestSuiteCollection
     public void addSuite(TestSuite suite)
     {
         suites.add(suite);
+        sorted = false;
+    }
+
+
+    // ----------------------------------------------------------
+    public void addAll(List<TestSuite> newSuites)
+    {
+        suites.addAll(newSuites);
+        sorted = false;
     }
     
     
@@ -113,7 +138,26 @@ public class TestSuiteCollection
 
     //~ Static/instance variables .............................................
 
+    // Orders suites by the path of the file that contains them, then by line
+    // number, then by name.
+    private static final Comparator<TestSuite> SUITE_ORDER =
+        new Comparator<TestSuite>() {
+            public int compare(TestSuite a, TestSuite b)
+            {
+                int result = a.getFullPath().compareTo(b.getFullPath());
+
+                if (result == 0)
+                    result = a.getLineNumber() - b.getLineNumber();
+
+                if (result == 0)
+                    result = a.getName().compareTo(b.getName());
+
+                return result;
+            }
+        };
+
     private List<TestSuite> suites;
     private Set<String> possibleTestFiles;
     private boolean mainExists;
+    private boolean sorted;
 }
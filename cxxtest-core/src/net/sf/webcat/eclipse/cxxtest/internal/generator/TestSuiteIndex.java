@@ -0,0 +1,1296 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.internal.generator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.webcat.eclipse.cxxtest.CxxTestPlugin;
+import net.sf.webcat.eclipse.cxxtest.internal.TestRunHistory;
+
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.model.ICElement;
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+//--------------------------------------------------------------------------
+/**
+ * A persistent index of the test suites discovered in a project, kept per
+ * translation unit along with the modification stamp of the file at the time
+ * it was last visited. The index is stored in the project's working location
+ * in the plug-in metadata area so that it survives workbench restarts, and
+ * each build only needs to re-visit the translation units whose stamps have
+ * changed since the previous build.
+ * <p>
+ * The index also records the headers that each translation unit includes
+ * with quoted include directives, and the files that have changed since the
+ * tests last passed. Together, these are used to determine which test suites
+ * may be affected by those changes, so that only those suites need to be
+ * run.
+ * <p>
+ * There is a single shared index for each project, which is obtained with
+ * {@link #getIndex(IProject, String)}. The shared index of a project is
+ * dropped when the project is closed or deleted.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class TestSuiteIndex
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new suite index for the specified project. The index is not
+	 * read from disk until it is first used.
+	 *
+	 * @param project the project whose suites will be indexed
+	 * @param driverFileName the name of the generated test runner source
+	 *     file, which is never indexed (nor are its runner parts)
+	 */
+	private TestSuiteIndex(IProject project, String driverFileName)
+	{
+		this.project = project;
+		this.driverFileName = driverFileName;
+
+		entries = new TreeMap<String, Entry>();
+		pendingChanges = new TreeMap<String, Long>();
+		loaded = false;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the shared suite index for the specified project, creating it if
+	 * it does not exist yet or if the name of the test runner source file has
+	 * changed since it was created.
+	 *
+	 * @param project the project whose suites are indexed
+	 * @param driverFileName the name of the generated test runner source file
+	 *
+	 * @return the suite index for the project
+	 */
+	public static synchronized TestSuiteIndex getIndex(IProject project,
+			String driverFileName)
+	{
+		TestSuiteIndex index = indices.get(project);
+
+		if (index == null || !driverFileName.equals(index.driverFileName))
+		{
+			index = new TestSuiteIndex(project, driverFileName);
+			indices.put(project, index);
+		}
+
+		return index;
+	}
+
+	// ----------------------------------------------------------
+	/**
+	 * Starts listening for projects being closed or deleted, so that their
+	 * shared indices and test run histories can be dropped. This is called
+	 * when the plug-in is started.
+	 */
+	public static void addProjectListener()
+	{
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(
+				projectListener, IResourceChangeEvent.PRE_CLOSE
+				| IResourceChangeEvent.PRE_DELETE);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Stops listening for projects being closed or deleted and drops every
+	 * shared index and test run history. This is called when the plug-in is
+	 * stopped.
+	 */
+	public static void removeProjectListener()
+	{
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(
+				projectListener);
+
+		synchronized (TestSuiteIndex.class)
+		{
+			indices.clear();
+		}
+
+		TestRunHistory.forgetAllHistories();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Drops the shared index for the specified project, if there is one. The
+	 * index on disk is left alone, so it is read again if the project is
+	 * reopened.
+	 *
+	 * @param project the project whose index should be dropped
+	 */
+	private static synchronized void forgetIndex(IProject project)
+	{
+		indices.remove(project);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the name of the test runner source file that this index was
+	 * created for.
+	 */
+	public String getDriverFileName()
+	{
+		return driverFileName;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Brings the index up to date with the translation units currently in
+	 * the project. If a resource delta is available and the index is known
+	 * to reflect the state of the project when the delta was started, only
+	 * the translation units that were added, changed, or removed in the delta
+	 * are visited. Otherwise, every unit in the project whose modification
+	 * stamp differs from the one recorded in the index is visited again, and
+	 * units that no longer exist are dropped. The updated index is written
+	 * back to disk.
+	 *
+	 * @param cproject the C/C++ project handle of the indexed project
+	 * @param delta the resource delta since the last build, or null if it is
+	 *     not known what has changed
+	 * @param monitor the progress monitor to report to
+	 *
+	 * @throws CoreException if an error occurs while visiting the project
+	 */
+	public synchronized void update(ICProject cproject, IResourceDelta delta,
+			IProgressMonitor monitor) throws CoreException
+	{
+		load();
+
+		collectIncludes = shouldCollectIncludes();
+
+		List<IFile> changed = null;
+
+		// Units visited while includes weren't being collected must be
+		// visited again once they are, which the delta alone can't tell.
+		if (delta != null && valid
+				&& !(collectIncludes && hasUnknownIncludes()))
+		{
+			changed = collectChangedUnits(cproject, delta);
+		}
+
+		// The delta could not be used (for instance, the project's source
+		// roots may have changed), so fall back to checking the stamps of
+		// every translation unit in the project.
+		if (changed == null)
+			changed = collectStaleUnits(cproject);
+
+		monitor.beginTask("", changed.size()); //$NON-NLS-1$
+
+		boolean canceled = !visitFiles(changed, monitor);
+
+		monitor.done();
+
+		// If the update was canceled, some changes in the delta have not been
+		// recorded, so the next update must check every stamp again.
+		if (valid == canceled)
+		{
+			valid = !canceled;
+			dirty = true;
+		}
+
+		save();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether the quoted includes of each translation
+	 * unit are needed, which is only the case when the suites affected by
+	 * recent changes are run alone or first. Otherwise, the prefilter can
+	 * stop scanning a file as soon as it finds the CxxTest include.
+	 */
+	private static boolean shouldCollectIncludes()
+	{
+		IPreferenceStore store =
+			CxxTestPlugin.getDefault().getPreferenceStore();
+
+		return store.getBoolean(CxxTestPlugin.CXXTEST_PREF_RUN_AFFECTED_ONLY)
+			|| store.getBoolean(CxxTestPlugin.CXXTEST_PREF_FAILURES_FIRST);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether any entry in the index was recorded
+	 * without its quoted includes.
+	 */
+	private boolean hasUnknownIncludes()
+	{
+		for (Entry entry : entries.values())
+		{
+			if (entry.includes == null)
+				return true;
+		}
+
+		return false;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Collects every translation unit in the project that is not in the
+	 * index or whose modification stamp has changed, and drops the entries
+	 * for files that no longer exist in the project. If includes are being
+	 * collected, units recorded without them are collected too.
+	 */
+	private List<IFile> collectStaleUnits(ICProject cproject)
+		throws CoreException
+	{
+		Map<String, IFile> units = collectTranslationUnits(cproject);
+
+		// Drop entries for files that have disappeared from the project.
+		Iterator<String> it = entries.keySet().iterator();
+		while (it.hasNext())
+		{
+			String key = it.next();
+
+			if (!units.containsKey(key))
+			{
+				it.remove();
+				addPendingChange(key);
+			}
+		}
+
+		// Collect the files that are new or whose stamps have changed.
+		List<IFile> changed = new ArrayList<IFile>();
+		for (Map.Entry<String, IFile> unit : units.entrySet())
+		{
+			Entry entry = entries.get(unit.getKey());
+
+			if (entry == null || entry.stamp !=
+				unit.getValue().getModificationStamp()
+				|| (collectIncludes && entry.includes == null))
+			{
+				changed.add(unit.getValue());
+			}
+		}
+
+		return changed;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Collects the translation units that were added or changed in the
+	 * specified resource delta, and drops the entries for units that were
+	 * removed.
+	 *
+	 * @return the list of units that need to be visited, or null if the
+	 *     delta contains a change that requires the whole project to be
+	 *     checked
+	 */
+	private List<IFile> collectChangedUnits(ICProject cproject,
+			IResourceDelta delta) throws CoreException
+	{
+		UnitDeltaVisitor visitor = new UnitDeltaVisitor(cproject);
+		delta.accept(visitor);
+
+		if (visitor.isFullScanRequired())
+			return null;
+		else
+			return visitor.getChangedUnits();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the test suites recorded in the index, merged into a single
+	 * collection in the order of the project-relative paths of the
+	 * translation units that contain them.
+	 *
+	 * @return the merged collection of test suites
+	 */
+	public synchronized TestSuiteCollection getSuites()
+	{
+		TestSuiteCollection suites = new TestSuiteCollection();
+
+		for (Entry entry : entries.values())
+		{
+			suites.addAll(entry.suites);
+
+			if (entry.possibleTestFile != null)
+				suites.addPossibleTestFile(entry.possibleTestFile);
+
+			if (entry.mainExists)
+				suites.setDoesMainFunctionExist(true);
+		}
+
+		return suites;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of test cases declared in each of the suites recorded
+	 * in the index.
+	 *
+	 * @return a map from the name of each suite to its number of test cases
+	 */
+	public synchronized Map<String, Integer> getTestCounts()
+	{
+		load();
+
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+
+		for (Entry entry : entries.values())
+		{
+			for (TestSuite suite : entry.suites)
+				counts.put(suite.getName(), suite.getTestCases().size());
+		}
+
+		return counts;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Discards the contents of the index, both in memory and on disk, so
+	 * that the next update visits every translation unit in the project.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+		pendingChanges.clear();
+		changeCount = 0;
+		driverGeneration = 0;
+		loaded = true;
+		valid = false;
+		dirty = false;
+
+		File file = getIndexFile();
+		if (file != null && file.exists())
+			file.delete();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Visits the specified translation units and records the suites found in
+	 * them. Since each unit is visited independently with its own visitor,
+	 * the units are distributed across a pool of threads, one per available
+	 * processor. The results are recorded in the index on the calling thread
+	 * in the order the units were given, so the outcome doesn't depend on the
+	 * order in which the threads finish.
+	 *
+	 * @param files the translation units to visit
+	 * @param monitor the progress monitor to report to
+	 *
+	 * @return true if every unit was visited, or false if the update was
+	 *     canceled
+	 *
+	 * @throws CoreException if an error occurs while visiting a unit
+	 */
+	private boolean visitFiles(List<IFile> files, IProgressMonitor monitor)
+		throws CoreException
+	{
+		int threadCount = Math.min(files.size(),
+				Runtime.getRuntime().availableProcessors());
+
+		if (threadCount <= 1)
+		{
+			for (IFile file : files)
+			{
+				if (monitor.isCanceled())
+					return false;
+
+				putEntry(file, createEntry(file));
+				monitor.worked(1);
+			}
+
+			return true;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+		try
+		{
+			List<Future<Entry>> futures =
+				new ArrayList<Future<Entry>>(files.size());
+
+			for (final IFile file : files)
+			{
+				futures.add(executor.submit(new Callable<Entry>() {
+					public Entry call() throws CoreException
+					{
+						return createEntry(file);
+					}
+				}));
+			}
+
+			for (int i = 0; i < files.size(); i++)
+			{
+				if (monitor.isCanceled())
+					return false;
+
+				putEntry(files.get(i), futures.get(i).get());
+				monitor.worked(1);
+			}
+
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof CoreException)
+				throw (CoreException) e.getCause();
+			else
+				throw new CoreException(new Status(IStatus.ERROR,
+						CxxTestPlugin.PLUGIN_ID, 0,
+						e.getCause().toString(), e.getCause()));
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Visits a single translation unit and collects the suites found in it.
+	 * This method does not modify the index, so it may be called for
+	 * several units concurrently.
+	 *
+	 * @param file the translation unit to visit
+	 *
+	 * @return the index entry for the unit, or null if the file is not a
+	 *     translation unit
+	 *
+	 * @throws CoreException if an error occurs while visiting the unit
+	 */
+	private Entry createEntry(IFile file) throws CoreException
+	{
+		ICElement unit = CoreModel.getDefault().create(file);
+
+		if (unit == null)
+			return null;
+
+		TestCaseVisitor visitor =
+			new TestCaseVisitor(driverFileName, collectIncludes);
+		unit.accept(visitor);
+
+		TestSuiteCollection found = visitor.getSuites();
+
+		Entry entry = new Entry();
+		entry.stamp = file.getModificationStamp();
+		entry.suites = found.getSuites();
+		entry.mainExists = found.doesMainFunctionExist();
+
+		if (collectIncludes)
+		{
+			entry.includes = new ArrayList<String>();
+
+			for (Map.Entry<IPath, List<String>> pair :
+				visitor.getQuotedIncludes().entrySet())
+			{
+				for (String name : pair.getValue())
+				{
+					String key = resolveInclude(pair.getKey(), name);
+
+					if (key != null && !entry.includes.contains(key))
+						entry.includes.add(key);
+				}
+			}
+		}
+
+		String[] possibleTestFiles = found.getPossibleTestFiles();
+		if (possibleTestFiles.length > 0)
+			entry.possibleTestFile = possibleTestFiles[0];
+
+		return entry;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records the entry for a translation unit in the index, replacing
+	 * anything previously recorded for that file.
+	 */
+	private void putEntry(IFile file, Entry entry)
+	{
+		String key = file.getProjectRelativePath().toString();
+
+		if (entry == null)
+			entries.remove(key);
+		else
+			entries.put(key, entry);
+
+		addPendingChange(key);
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records that the file with the specified key has changed since the
+	 * tests last passed.
+	 */
+	private void addPendingChange(String key)
+	{
+		pendingChanges.put(key, ++changeCount);
+		dirty = true;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the names of the test suites that may be affected by the files
+	 * that have changed since the tests last passed. A suite is affected if
+	 * a changed file is the file that declares it, a header that it includes
+	 * directly or indirectly, or an implementation file with the same base
+	 * name as one of those headers (such as "foo.cpp" for "foo.h"), or
+	 * anything those implementation files include in turn.
+	 *
+	 * @return the names of the affected test suites
+	 */
+	public synchronized Set<String> getAffectedSuiteNames()
+	{
+		load();
+
+		Set<String> affected = new HashSet<String>();
+
+		if (pendingChanges.isEmpty())
+			return affected;
+
+		// Group the indexed files by path without the extension, to find
+		// the implementation files that go with each header.
+		Map<String, List<String>> companions =
+			new HashMap<String, List<String>>();
+
+		for (String key : entries.keySet())
+		{
+			String base = removeExtension(key);
+			List<String> keys = companions.get(base);
+
+			if (keys == null)
+			{
+				keys = new ArrayList<String>(2);
+				companions.put(base, keys);
+			}
+
+			keys.add(key);
+		}
+
+		for (Map.Entry<String, Entry> pair : entries.entrySet())
+		{
+			Entry entry = pair.getValue();
+
+			if (!entry.suites.isEmpty() &&
+					dependsOnPendingChange(pair.getKey(), companions))
+			{
+				for (TestSuite suite : entry.suites)
+					affected.add(suite.getName());
+			}
+		}
+
+		return affected;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Walks the include graph from the specified file, following includes
+	 * and companion implementation files, to determine if any file it
+	 * depends on has changed since the tests last passed.
+	 */
+	private boolean dependsOnPendingChange(String start,
+			Map<String, List<String>> companions)
+	{
+		Set<String> visited = new HashSet<String>();
+		LinkedList<String> queue = new LinkedList<String>();
+
+		visited.add(start);
+		queue.add(start);
+
+		while (!queue.isEmpty())
+		{
+			String key = queue.removeFirst();
+
+			if (pendingChanges.containsKey(key))
+				return true;
+
+			List<String> next = new ArrayList<String>();
+
+			Entry entry = entries.get(key);
+			if (entry != null && entry.includes != null)
+				next.addAll(entry.includes);
+
+			List<String> keys = companions.get(removeExtension(key));
+			if (keys != null)
+				next.addAll(keys);
+
+			for (String nextKey : next)
+			{
+				if (visited.add(nextKey))
+					queue.add(nextKey);
+			}
+		}
+
+		return false;
+	}
+
+
+	// ----------------------------------------------------------
+	private static String removeExtension(String key)
+	{
+		int slash = key.lastIndexOf('/');
+		int dot = key.lastIndexOf('.');
+
+		return (dot > slash) ? key.substring(0, dot) : key;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records that the test runner has been generated from the current state
+	 * of the index.
+	 *
+	 * @return the generation of the test runner, to be passed to
+	 *     {@link #markTestsPassed(long)} if the tests it runs pass
+	 */
+	public synchronized long markDriverGenerated()
+	{
+		load();
+
+		if (driverGeneration != changeCount)
+		{
+			driverGeneration = changeCount;
+			dirty = true;
+			save();
+		}
+
+		return driverGeneration;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a value indicating whether the index has changed since the test
+	 * runner was last generated from it.
+	 *
+	 * @return true if the runner should be generated again
+	 */
+	public synchronized boolean hasChangedSinceDriverGenerated()
+	{
+		load();
+		return changeCount != driverGeneration;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the generation of the most recently generated test runner.
+	 *
+	 * @return the generation of the test runner
+	 */
+	public synchronized long getDriverGeneration()
+	{
+		load();
+		return driverGeneration;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Records that all of the tests run by the specified generation of the
+	 * test runner passed, so that the changes the runner was generated from
+	 * no longer cause any suites to be affected. Changes that were recorded
+	 * after that runner was generated are kept.
+	 *
+	 * @param generation the generation of the test runner whose tests passed
+	 */
+	public synchronized void markTestsPassed(long generation)
+	{
+		load();
+
+		Iterator<Long> it = pendingChanges.values().iterator();
+		while (it.hasNext())
+		{
+			if (it.next() <= generation)
+			{
+				it.remove();
+				dirty = true;
+			}
+		}
+
+		save();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Resolves the name of a header included with a quoted include
+	 * directive to the project-relative path of the file it refers to. As
+	 * with most compilers, the name is looked up relative to the directory
+	 * containing the including file first; the project directory is used as
+	 * a fallback since it is typically on the include path.
+	 *
+	 * @param unitLocation the location of the including file
+	 * @param name the name of the included header
+	 *
+	 * @return the project-relative path of the header, or null if it could
+	 *     not be found in the project
+	 */
+	private String resolveInclude(IPath unitLocation, String name)
+	{
+		IPath projectLocation = project.getLocation();
+
+		if (projectLocation == null)
+			return null;
+
+		IPath[] candidates = {
+			unitLocation.removeLastSegments(1).append(name),
+			projectLocation.append(name)
+		};
+
+		for (IPath candidate : candidates)
+		{
+			if (projectLocation.isPrefixOf(candidate)
+					&& candidate.toFile().isFile())
+			{
+				return candidate.removeFirstSegments(
+						projectLocation.segmentCount()).setDevice(null)
+						.makeRelative().toString();
+			}
+		}
+
+		return null;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Collects the files in the project that are translation units on one
+	 * of the project's source roots, keyed by project-relative path.
+	 */
+	private Map<String, IFile> collectTranslationUnits(final ICProject cproject)
+		throws CoreException
+	{
+		final Map<String, IFile> units = new TreeMap<String, IFile>();
+
+		project.accept(new IResourceProxyVisitor() {
+			public boolean visit(IResourceProxy proxy)
+			{
+				if (proxy.getType() != IResource.FILE)
+					return true;
+
+				String name = proxy.getName();
+
+				if (TestRunnerGenerator.isGeneratedFileName(driverFileName, name) ||
+					!CoreModel.isValidTranslationUnitName(project, name))
+					return false;
+
+				IResource resource = proxy.requestResource();
+
+				if (cproject.isOnSourceRoot(resource))
+				{
+					units.put(resource.getProjectRelativePath().toString(),
+						(IFile) resource);
+				}
+
+				return false;
+			}
+		}, IResource.NONE);
+
+		return units;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the file in the plug-in's working location for the project in
+	 * which the index is stored.
+	 */
+	private File getIndexFile()
+	{
+		IPath location = project.getWorkingLocation(CxxTestPlugin.PLUGIN_ID);
+
+		if (location == null)
+			return null;
+		else
+			return location.append(INDEX_FILE_NAME).toFile();
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets a string that identifies the configuration under which the index
+	 * was built. The index is discarded if this changes, since the paths
+	 * stored in it are absolute and the driver file is excluded from it.
+	 */
+	private String getIndexSignature()
+	{
+		IPath location = project.getLocation();
+
+		return ((location != null) ? location.toString() : "") //$NON-NLS-1$
+			+ "|" + driverFileName; //$NON-NLS-1$
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads the index from disk, if it has not already been read. A missing,
+	 * outdated, or corrupted index is silently treated as empty.
+	 */
+	private void load()
+	{
+		if (loaded)
+			return;
+
+		loaded = true;
+		valid = false;
+		entries.clear();
+		pendingChanges.clear();
+
+		File file = getIndexFile();
+		if (file == null || !file.exists())
+			return;
+
+		DataInputStream in = null;
+
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+
+			if (in.readInt() != INDEX_VERSION ||
+				!getIndexSignature().equals(in.readUTF()))
+			{
+				return;
+			}
+
+			int entryCount = in.readInt();
+			for (int i = 0; i < entryCount; i++)
+			{
+				String key = in.readUTF();
+
+				Entry entry = new Entry();
+				entry.stamp = in.readLong();
+				entry.mainExists = in.readBoolean();
+
+				if (in.readBoolean())
+					entry.possibleTestFile = in.readUTF();
+
+				int suiteCount = in.readInt();
+				entry.suites = new ArrayList<TestSuite>(suiteCount);
+
+				for (int j = 0; j < suiteCount; j++)
+					entry.suites.add(readSuite(in));
+
+				int includeCount = in.readInt();
+
+				if (includeCount >= 0)
+				{
+					entry.includes = new ArrayList<String>(includeCount);
+
+					for (int j = 0; j < includeCount; j++)
+						entry.includes.add(in.readUTF());
+				}
+
+				entries.put(key, entry);
+			}
+
+			int pendingCount = in.readInt();
+			for (int i = 0; i < pendingCount; i++)
+				pendingChanges.put(in.readUTF(), in.readLong());
+
+			changeCount = in.readLong();
+			driverGeneration = in.readLong();
+			valid = in.readBoolean();
+		}
+		catch (IOException e)
+		{
+			entries.clear();
+			pendingChanges.clear();
+			changeCount = 0;
+			driverGeneration = 0;
+			valid = false;
+		}
+		finally
+		{
+			if (in != null)
+			{
+				try
+				{
+					in.close();
+				}
+				catch (IOException e) { }
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Writes the index to disk if it has changed since it was last read or
+	 * written. Failure to write the index is not fatal; the next build will
+	 * simply visit the entire project again.
+	 */
+	private void save()
+	{
+		if (!dirty)
+			return;
+
+		File file = getIndexFile();
+		if (file == null)
+			return;
+
+		DataOutputStream out = null;
+
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file)));
+
+			out.writeInt(INDEX_VERSION);
+			out.writeUTF(getIndexSignature());
+			out.writeInt(entries.size());
+
+			for (Map.Entry<String, Entry> pair : entries.entrySet())
+			{
+				Entry entry = pair.getValue();
+
+				out.writeUTF(pair.getKey());
+				out.writeLong(entry.stamp);
+				out.writeBoolean(entry.mainExists);
+				out.writeBoolean(entry.possibleTestFile != null);
+
+				if (entry.possibleTestFile != null)
+					out.writeUTF(entry.possibleTestFile);
+
+				out.writeInt(entry.suites.size());
+
+				for (TestSuite suite : entry.suites)
+					writeSuite(out, suite);
+
+				if (entry.includes == null)
+				{
+					out.writeInt(-1);
+				}
+				else
+				{
+					out.writeInt(entry.includes.size());
+
+					for (String include : entry.includes)
+						out.writeUTF(include);
+				}
+			}
+
+			out.writeInt(pendingChanges.size());
+
+			for (Map.Entry<String, Long> pair : pendingChanges.entrySet())
+			{
+				out.writeUTF(pair.getKey());
+				out.writeLong(pair.getValue());
+			}
+
+			out.writeLong(changeCount);
+			out.writeLong(driverGeneration);
+			out.writeBoolean(valid);
+
+			dirty = false;
+		}
+		catch (IOException e)
+		{
+			file.delete();
+		}
+		finally
+		{
+			if (out != null)
+			{
+				try
+				{
+					out.close();
+				}
+				catch (IOException e) { }
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private static TestSuite readSuite(DataInputStream in) throws IOException
+	{
+		TestSuite suite = new TestSuite(in.readUTF(), in.readUTF(),
+				in.readInt());
+		suite.setCreateLineNumber(in.readInt());
+		suite.setDestroyLineNumber(in.readInt());
+
+		int testCount = in.readInt();
+		for (int i = 0; i < testCount; i++)
+			suite.addTestCase(new TestCase(in.readUTF(), in.readInt()));
+
+		return suite;
+	}
+
+
+	// ----------------------------------------------------------
+	private static void writeSuite(DataOutputStream out, TestSuite suite)
+		throws IOException
+	{
+		out.writeUTF(suite.getName());
+		out.writeUTF(suite.getFullPath());
+		out.writeInt(suite.getLineNumber());
+		out.writeInt(suite.getCreateLineNumber());
+		out.writeInt(suite.getDestroyLineNumber());
+
+		List<TestCase> testCases = suite.getTestCases();
+		out.writeInt(testCases.size());
+
+		for (TestCase testCase : testCases)
+		{
+			out.writeUTF(testCase.getName());
+			out.writeInt(testCase.getLineNumber());
+		}
+	}
+
+
+	//~ Nested classes ........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Walks a resource delta, collecting the translation units that were
+	 * added or whose contents changed and removing the index entries for
+	 * units that were deleted or moved off a source root.
+	 */
+	private class UnitDeltaVisitor implements IResourceDeltaVisitor
+	{
+		// ----------------------------------------------------------
+		public UnitDeltaVisitor(ICProject cproject)
+		{
+			this.cproject = cproject;
+
+			changedUnits = new ArrayList<IFile>();
+			fullScanRequired = false;
+		}
+
+
+		// ----------------------------------------------------------
+		public boolean visit(IResourceDelta delta)
+		{
+			if (fullScanRequired)
+				return false;
+
+			IResource resource = delta.getResource();
+
+			if (resource.getType() != IResource.FILE)
+				return true;
+
+			String name = resource.getName();
+
+			// Changes to the project description or the CDT settings may add
+			// or remove source roots, which can't be determined from the
+			// delta alone.
+			if (resource.getParent() == project &&
+					(name.equals(".project") || name.equals(".cproject"))) //$NON-NLS-1$ //$NON-NLS-2$
+			{
+				fullScanRequired = true;
+				return false;
+			}
+
+			if (TestRunnerGenerator.isGeneratedFileName(driverFileName, name))
+				return false;
+
+			String key = resource.getProjectRelativePath().toString();
+
+			if (delta.getKind() == IResourceDelta.REMOVED)
+			{
+				if (entries.remove(key) != null)
+					addPendingChange(key);
+			}
+			else if (delta.getKind() == IResourceDelta.ADDED ||
+					(delta.getFlags() & CONTENT_FLAGS) != 0)
+			{
+				if (CoreModel.isValidTranslationUnitName(project, name) &&
+						cproject.isOnSourceRoot(resource))
+				{
+					changedUnits.add((IFile) resource);
+				}
+				else if (entries.remove(key) != null)
+				{
+					addPendingChange(key);
+				}
+			}
+
+			return false;
+		}
+
+
+		// ----------------------------------------------------------
+		public List<IFile> getChangedUnits()
+		{
+			return changedUnits;
+		}
+
+
+		// ----------------------------------------------------------
+		public boolean isFullScanRequired()
+		{
+			return fullScanRequired;
+		}
+
+
+		// The delta flags that indicate the contents of a file changed.
+		private static final int CONTENT_FLAGS =
+			IResourceDelta.CONTENT | IResourceDelta.REPLACED;
+
+		private ICProject cproject;
+		private List<IFile> changedUnits;
+		private boolean fullScanRequired;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * The information recorded in the index for a single translation unit.
+	 */
+	private static class Entry
+	{
+		// The modification stamp of the file when it was last visited.
+		public long stamp;
+
+		// The test suites declared in the file.
+		public List<TestSuite> suites;
+
+		// The full path of the file if it includes CxxTest but declares no
+		// suites, otherwise null.
+		public String possibleTestFile;
+
+		// True if the file defines a main() function.
+		public boolean mainExists;
+
+		// The project-relative paths of the files that this file includes
+		// with quoted include directives, or null if they weren't collected
+		// when the file was visited.
+		public List<String> includes;
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	// The name of the file in the project's working location that holds
+	// the index.
+	private static final String INDEX_FILE_NAME = "suiteIndex.dat"; //$NON-NLS-1$
+
+	// The version of the on-disk index format. Indices written with a
+	// different version are discarded.
+	private static final int INDEX_VERSION = 4;
+
+	// The shared index for each project.
+	private static final Map<IProject, TestSuiteIndex> indices =
+		new HashMap<IProject, TestSuiteIndex>();
+
+	// Drops the shared index of a project when it is closed or deleted.
+	private static final IResourceChangeListener projectListener =
+		new IResourceChangeListener() {
+			public void resourceChanged(IResourceChangeEvent event)
+			{
+				if (event.getResource() instanceof IProject)
+				{
+					IProject project = (IProject) event.getResource();
+
+					forgetIndex(project);
+					TestRunHistory.forgetHistory(project);
+				}
+			}
+		};
+
+	private IProject project;
+	private String driverFileName;
+
+	// Index entries keyed by project-relative path of the translation unit.
+	private Map<String, Entry> entries;
+
+	// The files that have changed since the tests last passed, keyed by
+	// project-relative path, with the value of the change counter when the
+	// change was recorded.
+	private Map<String, Long> pendingChanges;
+
+	// A counter incremented for each recorded change.
+	private long changeCount;
+
+	// The value of the change counter when the test runner was last
+	// generated.
+	private long driverGeneration;
+
+	private boolean loaded;
+	private boolean dirty;
+
+	// True if the index is known to reflect the state of the project at the
+	// end of the last update, so that a resource delta can be applied to it.
+	private boolean valid;
+
+	// True if the current update collects the quoted includes of the units
+	// it visits.
+	private boolean collectIncludes;
+}
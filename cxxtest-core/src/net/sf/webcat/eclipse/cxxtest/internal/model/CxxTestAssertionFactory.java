@@ -46,14 +46,18 @@ public class CxxTestAssertionFactory
 		
 		private int status;
 		
-		private String message;
+		private MessageFormat message;
 		
 		private String[] args;
 		
 		private int lineNumber;
 
+		private String messageWithLine;
+
+		private String messageWithoutLine;
+
 		public Assertion(CxxTestMethod parent, int lineNumber, int status,
-				String message, String[] args)
+				MessageFormat message, String[] args)
 		{
 			this.parent = parent;
 			this.status = status;
@@ -65,21 +69,40 @@ public class CxxTestAssertionFactory
 		}
 
 		public String getMessage(boolean includeLine)
+		{
+			// The labels of the results views ask for the message every
+			// time the assertion is painted, so each variant is only
+			// formatted the first time.
+			if(includeLine)
+			{
+				if(messageWithLine == null)
+					messageWithLine = formatMessage(true);
+
+				return messageWithLine;
+			}
+			else
+			{
+				if(messageWithoutLine == null)
+					messageWithoutLine = formatMessage(false);
+
+				return messageWithoutLine;
+			}
+		}
+
+		private String formatMessage(boolean includeLine)
 		{
 			String[] realArgs = args.clone();
 
 			if(includeLine)
 			{
-				realArgs[0] = MessageFormat.format(
-						Messages.CxxTestAssertionFactory_LineNumber,
-						realArgs[0]);
+				realArgs[0] = format(MSG_LINE_NUMBER, realArgs[0]);
 			}
 			else
 			{
 				realArgs[0] = ""; //$NON-NLS-1$
 			}
 
-			return MessageFormat.format(message, (Object[]) realArgs);
+			return format(message, (Object[]) realArgs);
 		}
 
 		public ICxxTestBase getParent()
@@ -103,41 +126,57 @@ public class CxxTestAssertionFactory
 		}
 	}
 
-	private static final String MSG_TRACE =
-		Messages.CxxTestAssertionFactory_TraceMsg;
+	private static final MessageFormat MSG_LINE_NUMBER =
+		new MessageFormat(Messages.CxxTestAssertionFactory_LineNumber);
+
+	private static final MessageFormat MSG_TRACE =
+		new MessageFormat(Messages.CxxTestAssertionFactory_TraceMsg);
 
-	private static final String MSG_FAILED_ASSERT =
-		Messages.CxxTestAssertionFactory_FailedAssertMsg;
+	private static final MessageFormat MSG_FAILED_ASSERT =
+		new MessageFormat(Messages.CxxTestAssertionFactory_FailedAssertMsg);
 
-	private static final String MSG_FAILED_ASSERT_EQ =
-		Messages.CxxTestAssertionFactory_FailedAssertEq;
+	private static final MessageFormat MSG_FAILED_ASSERT_EQ =
+		new MessageFormat(Messages.CxxTestAssertionFactory_FailedAssertEq);
 
-	private static final String MSG_FAILED_ASSERT_SAME_DATA =
-		Messages.CxxTestAssertionFactory_FailedAssertSameData;
+	private static final MessageFormat MSG_FAILED_ASSERT_SAME_DATA =
+		new MessageFormat(Messages.CxxTestAssertionFactory_FailedAssertSameData);
 
-	private static final String MSG_FAILED_ASSERT_DELTA =
-		Messages.CxxTestAssertionFactory_FailedAssertDelta;
+	private static final MessageFormat MSG_FAILED_ASSERT_DELTA =
+		new MessageFormat(Messages.CxxTestAssertionFactory_FailedAssertDelta);
 
-	private static final String MSG_FAILED_ASSERT_NE =
-		Messages.CxxTestAssertionFactory_FailedAssertNe;
+	private static final MessageFormat MSG_FAILED_ASSERT_NE =
+		new MessageFormat(Messages.CxxTestAssertionFactory_FailedAssertNe);
 
-	private static final String MSG_FAILED_ASSERT_LT =
-		Messages.CxxTestAssertionFactory_FailedAssertLt;
+	private static final MessageFormat MSG_FAILED_ASSERT_LT =
+		new MessageFormat(Messages.CxxTestAssertionFactory_FailedAssertLt);
 
-	private static final String MSG_FAILED_ASSERT_LE = 
-		Messages.CxxTestAssertionFactory_FailedAssertLe;
+	private static final MessageFormat MSG_FAILED_ASSERT_LE =
+		new MessageFormat(Messages.CxxTestAssertionFactory_FailedAssertLe);
 
-	private static final String MSG_FAILED_ASSERT_RELATION =
-		Messages.CxxTestAssertionFactory_FailedAssertRelation;
+	private static final MessageFormat MSG_FAILED_ASSERT_RELATION =
+		new MessageFormat(Messages.CxxTestAssertionFactory_FailedAssertRelation);
 
-	private static final String MSG_FAILED_ASSERT_PREDICATE =
-		Messages.CxxTestAssertionFactory_FailedAssertPredicate;
+	private static final MessageFormat MSG_FAILED_ASSERT_PREDICATE =
+		new MessageFormat(Messages.CxxTestAssertionFactory_FailedAssertPredicate);
 
-	private static final String MSG_FAILED_ASSERT_THROWS = 
-		Messages.CxxTestAssertionFactory_FailedAssertThrows;
+	private static final MessageFormat MSG_FAILED_ASSERT_THROWS =
+		new MessageFormat(Messages.CxxTestAssertionFactory_FailedAssertThrows);
 
-	private static final String MSG_FAILED_ASSERT_NOTHROW =
-		Messages.CxxTestAssertionFactory_FailedAssertNoThrow;
+	private static final MessageFormat MSG_FAILED_ASSERT_NOTHROW =
+		new MessageFormat(Messages.CxxTestAssertionFactory_FailedAssertNoThrow);
+
+	/**
+	 * Formats a message with one of the shared, precompiled formats. A
+	 * MessageFormat is not thread-safe, and markers are created from the
+	 * results on a background thread while the views may be painting them.
+	 */
+	static String format(MessageFormat format, Object... args)
+	{
+		synchronized(format)
+		{
+			return format.format(args);
+		}
+	}
 
 	static public ICxxTestAssertion create(CxxTestMethod parent, String type,
 			Attributes attributes)
@@ -204,6 +243,32 @@ public class CxxTestAssertionFactory
 		}
 	}
 
+	/**
+	 * Copies an assertion into another test, which becomes the parent of
+	 * the copy. The original assertion is not changed.
+	 * 
+	 * @param parent the test that the copy belongs to
+	 * @param assertion the assertion to copy
+	 * 
+	 * @return the copy of the assertion
+	 */
+	static ICxxTestAssertion copy(CxxTestMethod parent,
+			ICxxTestAssertion assertion)
+	{
+		if(assertion instanceof StackTraceAssertion)
+		{
+			return new StackTraceAssertion(parent,
+					(StackTraceAssertion)assertion);
+		}
+		else
+		{
+			Assertion original = (Assertion)assertion;
+
+			return new Assertion(parent, original.lineNumber,
+					original.status, original.message, original.args);
+		}
+	}
+
 	private static String[] getAttributeValues(Attributes attributes,
 			String... attrNames)
 	{
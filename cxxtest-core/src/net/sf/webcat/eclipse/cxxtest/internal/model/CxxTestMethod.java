@@ -46,6 +46,10 @@ public class CxxTestMethod implements ICxxTestMethod
 
 	private int line;
 
+	private long wallTime = -1;
+
+	private long cpuTime = -1;
+
 	public CxxTestMethod(CxxTestSuite suite, Attributes attributes)
 	{
 		this.suite = suite;
@@ -59,11 +63,36 @@ public class CxxTestMethod implements ICxxTestMethod
 		line = Integer.parseInt(lineStr);
 	}
 
+	/**
+	 * Creates a copy of a test, and of its assertions, that belongs to
+	 * another suite. The original test is not changed.
+	 */
+	CxxTestMethod(CxxTestSuite suite, CxxTestMethod test)
+	{
+		this.suite = suite;
+		assertions = new Vector<ICxxTestAssertion>();
+
+		suite.addChild(this);
+
+		name = test.name;
+		line = test.line;
+		wallTime = test.wallTime;
+		cpuTime = test.cpuTime;
+
+		for(int i = 0; i < test.assertions.size(); i++)
+			CxxTestAssertionFactory.copy(this, test.assertions.get(i));
+	}
+
 	public ICxxTestBase getParent()
 	{
 		return suite;
 	}
 
+	void setParent(CxxTestSuite suite)
+	{
+		this.suite = suite;
+	}
+
 	public String getName()
 	{
 		return name;
@@ -74,6 +103,22 @@ public class CxxTestMethod implements ICxxTestMethod
 		return line;
 	}
 
+	public long getWallTime()
+	{
+		return wallTime;
+	}
+
+	public long getCpuTime()
+	{
+		return cpuTime;
+	}
+
+	public void setTimes(long wallTime, long cpuTime)
+	{
+		this.wallTime = wallTime;
+		this.cpuTime = cpuTime;
+	}
+
 	public ICxxTestAssertion[] getFailedAssertions()
 	{
 		return assertions.toArray(new ICxxTestAssertion[assertions.size()]);
@@ -0,0 +1,216 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.internal.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestStackFrame;
+
+//--------------------------------------------------------------------------
+/**
+ * Shares the stack frames read from the logs of a test run. The same few
+ * frames usually appear in many stack traces, so each distinct frame is
+ * created only once, and the function names and file paths of the frames
+ * are interned so that frames in the same function or file share them too.
+ * Frames are immutable, so a shared frame can appear in any number of
+ * traces.
+ * <p>
+ * A pool can be shared by logs that are read on different threads.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class CxxTestStackFramePool
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new, empty pool.
+	 */
+	public CxxTestStackFramePool()
+	{
+		frames = new HashMap<FrameKey, ICxxTestStackFrame>();
+		strings = new HashMap<String, String>();
+		probe = new FrameKey();
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the stack frame for the specified function and location, creating
+	 * it the first time that they are seen.
+	 *
+	 * @param function the name of the function, or null if it is not known
+	 * @param location the location of the frame as "file:line" or as just
+	 *     the file, or null if it is not known
+	 *
+	 * @return the shared stack frame
+	 */
+	public synchronized ICxxTestStackFrame getFrame(String function,
+			String location)
+	{
+		probe.set(function, location);
+
+		ICxxTestStackFrame frame = frames.get(probe);
+
+		if (frame == null)
+		{
+			frame = createFrame(intern(function), location);
+
+			FrameKey key = new FrameKey();
+			key.set(frame.getFunction(), location);
+			frames.put(key, frame);
+		}
+
+		return frame;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the number of distinct frames in the pool.
+	 *
+	 * @return the number of distinct frames
+	 */
+	public synchronized int size()
+	{
+		return frames.size();
+	}
+
+
+	// ----------------------------------------------------------
+	private ICxxTestStackFrame createFrame(String function, String location)
+	{
+		String file = null;
+		int lineNumber = 0;
+
+		if (location != null)
+		{
+			int colonPos = location.lastIndexOf(':');
+
+			if (colonPos != -1)
+			{
+				try
+				{
+					lineNumber = Integer.parseInt(
+							location.substring(colonPos + 1));
+					file = location.substring(0, colonPos);
+				}
+				catch (NumberFormatException e)
+				{
+					file = location;
+					lineNumber = 0;
+				}
+			}
+			else
+			{
+				file = location;
+			}
+		}
+
+		return new CxxTestStackFrame(function, intern(file), lineNumber);
+	}
+
+
+	// ----------------------------------------------------------
+	private String intern(String string)
+	{
+		if (string == null)
+			return null;
+
+		String interned = strings.get(string);
+
+		if (interned == null)
+		{
+			interned = string;
+			strings.put(string, string);
+		}
+
+		return interned;
+	}
+
+
+	//~ Nested classes ........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * The (function, location) pair that identifies a frame. The pool looks
+	 * frames up with a single reusable key, so a frame that is already in
+	 * the pool costs no allocation.
+	 */
+	private static class FrameKey
+	{
+		// ----------------------------------------------------------
+		public void set(String function, String location)
+		{
+			this.function = function;
+			this.location = location;
+
+			hash = (function == null ? 0 : function.hashCode()) * 31
+				+ (location == null ? 0 : location.hashCode());
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+
+		// ----------------------------------------------------------
+		@Override
+		public boolean equals(Object other)
+		{
+			if (!(other instanceof FrameKey))
+				return false;
+
+			FrameKey key = (FrameKey) other;
+
+			return hash == key.hash
+				&& (function == null ? key.function == null
+						: function.equals(key.function))
+				&& (location == null ? key.location == null
+						: location.equals(key.location));
+		}
+
+
+		//~ Instance variables ................................................
+
+		private String function;
+		private String location;
+		private int hash;
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	private Map<FrameKey, ICxxTestStackFrame> frames;
+	private Map<String, String> strings;
+	private FrameKey probe;
+}
@@ -46,6 +46,12 @@ public class CxxTestSuite implements ICxxTestSuite
 	
 	private int line;
 
+	// The times of a suite that is still running are set on the thread that
+	// reads its log, and may be read on another thread to show the suite.
+	private volatile long wallTime = -1;
+
+	private volatile long cpuTime = -1;
+
 	public CxxTestSuite(Attributes attributes)
 	{
 		children = new Vector<ICxxTestSuiteChild>();
@@ -57,6 +63,70 @@ public class CxxTestSuite implements ICxxTestSuite
 		line = Integer.parseInt(lineStr);
 	}
 
+	private CxxTestSuite(CxxTestSuite suite)
+	{
+		children = new Vector<ICxxTestSuiteChild>();
+
+		name = suite.name;
+		file = suite.file;
+		line = suite.line;
+		wallTime = suite.wallTime;
+		cpuTime = suite.cpuTime;
+	}
+
+	/**
+	 * Creates a copy of the suite without any of its children. A suite that
+	 * is still being read on one thread can be shown on another through
+	 * such a copy, by moving each child into it with
+	 * {@link #adoptChild(ICxxTestSuiteChild)} once the child is complete.
+	 * 
+	 * @return the empty copy of the suite
+	 */
+	public CxxTestSuite copyWithoutChildren()
+	{
+		return new CxxTestSuite(this);
+	}
+
+	/**
+	 * Creates a copy of the suite and of each of its children. The suite and
+	 * its children are not changed, so they can still be shown while the
+	 * copy is changed.
+	 * 
+	 * @return the copy of the suite
+	 */
+	private CxxTestSuite copy()
+	{
+		CxxTestSuite copy = new CxxTestSuite(this);
+
+		for(int i = 0; i < children.size(); i++)
+		{
+			ICxxTestSuiteChild child = children.get(i);
+
+			if(child instanceof CxxTestMethod)
+				new CxxTestMethod(copy, (CxxTestMethod)child);
+			else if(child instanceof CxxTestSuiteError)
+				new CxxTestSuiteError(copy, (CxxTestSuiteError)child);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Adds a child of another suite to this suite, which becomes the
+	 * child's parent. The other suite still holds the child.
+	 * 
+	 * @param child the child to add
+	 */
+	public void adoptChild(ICxxTestSuiteChild child)
+	{
+		if(child instanceof CxxTestMethod)
+			((CxxTestMethod)child).setParent(this);
+		else if(child instanceof CxxTestSuiteError)
+			((CxxTestSuiteError)child).setParent(this);
+
+		children.add(child);
+	}
+
 	public String getName()
 	{
 		return name;
@@ -72,6 +142,22 @@ public class CxxTestSuite implements ICxxTestSuite
 		return line;
 	}
 
+	public long getWallTime()
+	{
+		return wallTime;
+	}
+
+	public long getCpuTime()
+	{
+		return cpuTime;
+	}
+
+	public void setTimes(long wallTime, long cpuTime)
+	{
+		this.wallTime = wallTime;
+		this.cpuTime = cpuTime;
+	}
+
 	public ICxxTestSuiteChild[] getChildren(boolean onlyTests)
 	{
 		if(!onlyTests)
@@ -91,11 +177,127 @@ public class CxxTestSuite implements ICxxTestSuite
 		}
 	}
 	
+	public int getChildCount()
+	{
+		return children.size();
+	}
+
+	public ICxxTestSuiteChild getChild(int index)
+	{
+		return children.get(index);
+	}
+	
 	public void addChild(ICxxTestSuiteChild child)
 	{
 		children.add(child);
 	}
 
+	/**
+	 * Merges the results of a run of some of the tests into the results of
+	 * an earlier run. The tests that were run again replace the earlier
+	 * results for the same tests, and any suite errors they report replace
+	 * the earlier errors of their suites; suites and tests that only appear
+	 * in the new results are added at the end.
+	 * <p>
+	 * The suites that have new results are copied rather than changed, so
+	 * the earlier results can still be shown while the merge is done in the
+	 * background.
+	 * 
+	 * @param previous the suites from the earlier run
+	 * @param rerun the suites from the run of some of the tests
+	 * 
+	 * @return the merged suites
+	 */
+	public static ICxxTestSuite[] mergeResults(ICxxTestSuite[] previous,
+			ICxxTestSuite[] rerun)
+	{
+		Vector<ICxxTestSuite> merged = new Vector<ICxxTestSuite>();
+
+		for(int i = 0; i < previous.length; i++)
+			merged.add(previous[i]);
+
+		for(int i = 0; i < rerun.length; i++)
+		{
+			CxxTestSuite newSuite = (CxxTestSuite)rerun[i];
+			CxxTestSuite oldSuite = null;
+
+			for(int j = 0; j < previous.length; j++)
+			{
+				if(previous[j].getName().equals(newSuite.getName()))
+				{
+					oldSuite = (CxxTestSuite)previous[j];
+					break;
+				}
+			}
+
+			if(oldSuite == null)
+			{
+				merged.add(newSuite);
+			}
+			else
+			{
+				CxxTestSuite mergedSuite = oldSuite.copy();
+				mergedSuite.mergeChildren(newSuite);
+				merged.set(merged.indexOf(oldSuite), mergedSuite);
+			}
+		}
+
+		return merged.toArray(new ICxxTestSuite[merged.size()]);
+	}
+
+	private void mergeChildren(CxxTestSuite rerun)
+	{
+		// The suite errors from the earlier run are replaced by those of
+		// the new run, if there are any.
+		boolean hasErrors = false;
+		for(int i = 0; i < rerun.children.size(); i++)
+		{
+			if(rerun.children.get(i) instanceof CxxTestSuiteError)
+				hasErrors = true;
+		}
+
+		if(hasErrors)
+		{
+			for(int i = children.size() - 1; i >= 0; i--)
+			{
+				if(children.get(i) instanceof CxxTestSuiteError)
+					children.remove(i);
+			}
+		}
+
+		for(int i = 0; i < rerun.children.size(); i++)
+		{
+			ICxxTestSuiteChild child = rerun.children.get(i);
+			int index = -1;
+
+			if(child instanceof CxxTestMethod)
+			{
+				CxxTestMethod test = (CxxTestMethod)child;
+				test.setParent(this);
+
+				for(int j = 0; j < children.size(); j++)
+				{
+					if(children.get(j) instanceof CxxTestMethod &&
+						((CxxTestMethod)children.get(j)).getName().equals(
+								test.getName()))
+					{
+						index = j;
+						break;
+					}
+				}
+			}
+			else if(child instanceof CxxTestSuiteError)
+			{
+				((CxxTestSuiteError)child).setParent(this);
+			}
+
+			if(index == -1)
+				children.add(child);
+			else
+				children.set(index, child);
+		}
+	}
+
 	public ICxxTestBase getParent()
 	{
 		return null;
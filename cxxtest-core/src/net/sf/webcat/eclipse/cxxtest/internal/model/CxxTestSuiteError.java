@@ -60,6 +60,22 @@ public class CxxTestSuiteError implements ICxxTestSuiteError
 		suite.addChild(this);
 	}
 
+	/**
+	 * Creates a copy of a suite error that belongs to another suite. The
+	 * stack frames are shared with the original, which is not changed.
+	 */
+	CxxTestSuiteError(CxxTestSuite suite, CxxTestSuiteError error)
+	{
+		this.suite = suite;
+		stackTrace = new Vector<ICxxTestStackFrame>(error.stackTrace);
+
+		errorType = error.errorType;
+		line = error.line;
+		msg = error.msg;
+
+		suite.addChild(this);
+	}
+
 	/* (non-Javadoc)
 	 * @see net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuiteChild#getLineNumber()
 	 */
@@ -116,6 +132,11 @@ public class CxxTestSuiteError implements ICxxTestSuiteError
 		return suite;
 	}
 
+	void setParent(CxxTestSuite suite)
+	{
+		this.suite = suite;
+	}
+
 	/* (non-Javadoc)
 	 * @see net.sf.webcat.eclipse.cxxtest.model.ICxxTestBase#getStatus()
 	 */
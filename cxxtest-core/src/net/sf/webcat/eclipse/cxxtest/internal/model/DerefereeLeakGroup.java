@@ -0,0 +1,144 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech 
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.internal.model;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestStackFrame;
+import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeak;
+import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeakGroup;
+
+/**
+ * The leaks that share an allocation stack trace.
+ * 
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class DerefereeLeakGroup implements IDerefereeLeakGroup
+{
+	private DerefereeLeakGroup(ICxxTestStackFrame[] stackTrace, boolean array)
+	{
+		this.stackTrace = stackTrace;
+		this.array = array;
+
+		leaks = new ArrayList<IDerefereeLeak>();
+	}
+
+	/**
+	 * Groups leaks by their allocation stack trace and by whether they are
+	 * arrays. The frames of a run are shared, so the traces are compared
+	 * frame by frame without looking at the frames' contents.
+	 * 
+	 * @param leaks the leaks to group
+	 * 
+	 * @return the groups, in the order that each one's first leak appears
+	 */
+	public static IDerefereeLeakGroup[] group(IDerefereeLeak[] leaks)
+	{
+		Map<List<Object>, DerefereeLeakGroup> groups =
+			new LinkedHashMap<List<Object>, DerefereeLeakGroup>();
+
+		for(int i = 0; i < leaks.length; i++)
+		{
+			IDerefereeLeak leak = leaks[i];
+			ICxxTestStackFrame[] frames = leak.getStackTrace();
+
+			List<Object> key = new ArrayList<Object>(frames.length + 1);
+			key.add(Boolean.valueOf(leak.isArray()));
+			key.addAll(Arrays.asList(frames));
+
+			DerefereeLeakGroup group = groups.get(key);
+
+			if(group == null)
+			{
+				group = new DerefereeLeakGroup(frames, leak.isArray());
+				groups.put(key, group);
+			}
+
+			group.leaks.add(leak);
+			group.totalSize += leak.getSize();
+		}
+
+		return groups.values().toArray(
+				new IDerefereeLeakGroup[groups.size()]);
+	}
+
+	public int getLeakCount()
+	{
+		return leaks.size();
+	}
+
+	public IDerefereeLeak getLeak(int index)
+	{
+		return leaks.get(index);
+	}
+
+	public long getTotalSize()
+	{
+		return totalSize;
+	}
+
+	public boolean isArray()
+	{
+		return array;
+	}
+
+	public ICxxTestStackFrame[] getStackTrace()
+	{
+		return stackTrace;
+	}
+
+	public String toString()
+	{
+		// The innermost frame with a function name is the place that
+		// allocated the memory.
+		for(int i = 0; i < stackTrace.length; i++)
+		{
+			String function = stackTrace[i].getFunction();
+
+			if(function != null)
+			{
+				return MessageFormat.format(
+						Messages.DerefereeLeakGroup_DescriptionWithFunction,
+						getLeakCount(), getTotalSize(), function);
+			}
+		}
+
+		return MessageFormat.format(Messages.DerefereeLeakGroup_Description,
+				getLeakCount(), getTotalSize());
+	}
+
+	private ICxxTestStackFrame[] stackTrace;
+
+	private boolean array;
+
+	private List<IDerefereeLeak> leaks;
+
+	private long totalSize;
+}
@@ -23,6 +23,7 @@ package net.sf.webcat.eclipse.cxxtest.internal.model;
 
 import net.sf.webcat.eclipse.cxxtest.model.IDerefereeSummary;
 import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeak;
+import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeakGroup;
 
 /**
  * 
@@ -41,6 +42,7 @@ public class DerefereeSummary implements IDerefereeSummary
 	private int callsArrayDelete;
 	private int callsDeleteNull;
 	private IDerefereeLeak[] leaks;
+	private IDerefereeLeakGroup[] leakGroups;
 
 	public DerefereeSummary(int totalBytes, int maxBytes,
 			int callsNew, int callsDelete, int callsArrayNew,
@@ -67,8 +69,16 @@ public class DerefereeSummary implements IDerefereeSummary
 		return leaks;
 	}
 
+	public IDerefereeLeakGroup[] getLeakGroups() {
+		return leakGroups;
+	}
+
 	public void setLeaks(IDerefereeLeak[] leaks) {
 		this.leaks = leaks;
+
+		// The summary is completed on the thread that reads the log, so the
+		// leaks are grouped there rather than when they are shown.
+		leakGroups = DerefereeLeakGroup.group(leaks);
 	}
 	
 	public int getActualLeakCount()
@@ -48,7 +48,39 @@ public class StackTraceAssertion implements ICxxTestAssertion
 		stackTrace = new Vector<ICxxTestStackFrame>();
 	}
 
+	/**
+	 * Creates a copy of an assertion that belongs to another test. The
+	 * stack frames are shared with the original, which is not changed.
+	 */
+	StackTraceAssertion(CxxTestMethod parent, StackTraceAssertion assertion)
+	{
+		this(parent, assertion.lineNumber, assertion.status);
+
+		message = assertion.message;
+		stackTrace.addAll(assertion.stackTrace);
+	}
+
 	public String getMessage(boolean includeLine)
+	{
+		// Like the other assertions, each variant of the message is only
+		// formatted the first time it is painted.
+		if(includeLine)
+		{
+			if(messageWithLine == null)
+				messageWithLine = formatMessage(true);
+
+			return messageWithLine;
+		}
+		else
+		{
+			if(messageWithoutLine == null)
+				messageWithoutLine = formatMessage(false);
+
+			return messageWithoutLine;
+		}
+	}
+
+	private String formatMessage(boolean includeLine)
 	{
 		String[] realArgs = new String[2];
 		realArgs[0] = Integer.toString(lineNumber);
@@ -56,7 +88,8 @@ public class StackTraceAssertion implements ICxxTestAssertion
 
 		if(includeLine && lineNumber > 0)
 		{
-			realArgs[0] = MessageFormat.format(Messages.StackTraceAssertion_LineNumber, realArgs[0]);
+			realArgs[0] = CxxTestAssertionFactory.format(MSG_LINE_NUMBER,
+					realArgs[0]);
 		}
 		else
 		{
@@ -65,17 +98,22 @@ public class StackTraceAssertion implements ICxxTestAssertion
 		
 		if(status == ICxxTestBase.STATUS_WARNING)
 		{
-			return MessageFormat.format(MSG_WARNING, (Object[]) realArgs);
+			return CxxTestAssertionFactory.format(MSG_WARNING,
+					(Object[]) realArgs);
 		}
 		else
 		{
-			return MessageFormat.format(MSG_FAILED_TEST, (Object[]) realArgs);
+			return CxxTestAssertionFactory.format(MSG_FAILED_TEST,
+					(Object[]) realArgs);
 		}
 	}
 
 	public void setMessage(String msg)
 	{
 		message = msg;
+
+		messageWithLine = null;
+		messageWithoutLine = null;
 	}
 
 	public void addStackFrame(ICxxTestStackFrame frame)
@@ -108,17 +146,24 @@ public class StackTraceAssertion implements ICxxTestAssertion
 	}
 
 
-	private static final String MSG_WARNING =
-		Messages.StackTraceAssertion_WarningMsg;
+	private static final MessageFormat MSG_LINE_NUMBER =
+		new MessageFormat(Messages.StackTraceAssertion_LineNumber);
+
+	private static final MessageFormat MSG_WARNING =
+		new MessageFormat(Messages.StackTraceAssertion_WarningMsg);
 
-	private static final String MSG_FAILED_TEST =
-		Messages.StackTraceAssertion_FailureMsg;
+	private static final MessageFormat MSG_FAILED_TEST =
+		new MessageFormat(Messages.StackTraceAssertion_FailureMsg);
 
 	private CxxTestMethod parent;
 	
 	private int status;
 	
 	private String message;
+
+	private String messageWithLine;
+
+	private String messageWithoutLine;
 	
 	private Vector<ICxxTestStackFrame> stackTrace;
 	
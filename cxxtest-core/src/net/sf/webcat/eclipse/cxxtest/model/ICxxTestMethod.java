@@ -43,4 +43,18 @@ public interface ICxxTestMethod extends ICxxTestSuiteChild
 	 * @return an array of ICxxTestAssertion objects.
 	 */
 	ICxxTestAssertion[] getFailedAssertions();
+
+	/**
+	 * Gets the wall-clock time that this method took to run.
+	 * 
+	 * @return the elapsed time in microseconds, or -1 if it is not known.
+	 */
+	long getWallTime();
+
+	/**
+	 * Gets the processor time that this method used while it ran.
+	 * 
+	 * @return the processor time in microseconds, or -1 if it is not known.
+	 */
+	long getCpuTime();
 }
@@ -57,4 +57,38 @@ public interface ICxxTestSuite extends ICxxTestBase
 	 * @return an array of ICxxTestMethod objects.
 	 */
 	ICxxTestSuiteChild[] getChildren(boolean onlyTests);
+
+	/**
+	 * Gets the number of tests and suite errors contained in this suite.
+	 * 
+	 * @return the number of children of this suite.
+	 */
+	int getChildCount();
+
+	/**
+	 * Gets one of the tests or suite errors contained in this suite, in the
+	 * same order as {@link #getChildren(boolean)} returns them, without
+	 * copying the children into a new array.
+	 * 
+	 * @param index the index of the child, from 0 to getChildCount() - 1.
+	 * 
+	 * @return the child at the specified index.
+	 */
+	ICxxTestSuiteChild getChild(int index);
+
+	/**
+	 * Gets the wall-clock time that this suite took to run, including the
+	 * time spent setting it up and tearing it down.
+	 * 
+	 * @return the elapsed time in microseconds, or -1 if it is not known.
+	 */
+	long getWallTime();
+
+	/**
+	 * Gets the processor time that this suite used while it ran, including
+	 * the time spent setting it up and tearing it down.
+	 * 
+	 * @return the processor time in microseconds, or -1 if it is not known.
+	 */
+	long getCpuTime();
 }
@@ -0,0 +1,74 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech 
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.model;
+
+/**
+ * The leaks that were allocated from the same place. A test that leaks in a
+ * loop leaves many blocks behind with the same allocation stack trace, so
+ * the leaks are shown one group for each place instead of one by one.
+ * 
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public interface IDerefereeLeakGroup
+{
+	/**
+	 * Gets the number of leaks in this group.
+	 * 
+	 * @return the number of leaks.
+	 */
+	int getLeakCount();
+
+	/**
+	 * Gets one of the leaks in this group, in the order that they were
+	 * reported.
+	 * 
+	 * @param index the index of the leak, from 0 to getLeakCount() - 1.
+	 * 
+	 * @return the leak at the specified index.
+	 */
+	IDerefereeLeak getLeak(int index);
+
+	/**
+	 * Gets the total size of the leaks in this group.
+	 * 
+	 * @return the total number of bytes leaked.
+	 */
+	long getTotalSize();
+
+	/**
+	 * Gets a value indicating whether the leaks in this group are arrays.
+	 * 
+	 * @return true if the leaks were allocated with new[].
+	 */
+	boolean isArray();
+
+	/**
+	 * Gets the stack trace at the point of allocation that all of the leaks
+	 * in this group share.
+	 * 
+	 * @return an array of ICxxTestStackFrame objects describing the
+	 * stack trace.
+	 */
+	ICxxTestStackFrame[] getStackTrace();
+}
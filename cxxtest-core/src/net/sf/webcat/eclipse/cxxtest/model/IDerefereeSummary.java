@@ -34,6 +34,14 @@ public interface IDerefereeSummary
 	int getMaxBytesInUse();
 
 	IDerefereeLeak[] getLeaks();
+
+	/**
+	 * Gets the leaks grouped by the stack trace at their point of
+	 * allocation, in the order that each place first leaked.
+	 * 
+	 * @return an array of IDerefereeLeakGroup objects.
+	 */
+	IDerefereeLeakGroup[] getLeakGroups();
 	
 	int getActualLeakCount();
 	
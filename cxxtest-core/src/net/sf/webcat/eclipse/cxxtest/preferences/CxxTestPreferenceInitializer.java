@@ -54,6 +54,25 @@ public class CxxTestPreferenceInitializer extends AbstractPreferenceInitializer
 		store.setDefault(CxxTestPlugin.CXXTEST_PREF_TRACK_HEAP, true);
 		store.setDefault(CxxTestPlugin.CXXTEST_PREF_TRACE_STACK, true);
 
+		// Generate a single monolithic test runner by default.
+		store.setDefault(CxxTestPlugin.CXXTEST_PREF_SUITES_PER_PART, 0);
+		store.setDefault(CxxTestPlugin.CXXTEST_PREF_RUN_AFFECTED_ONLY, false);
+
+		// Run at most one test executable per processor at a time.
+		store.setDefault(CxxTestPlugin.CXXTEST_PREF_MAX_CONCURRENT_RUNS,
+				Runtime.getRuntime().availableProcessors());
+
+		// Run the tests in a single process by default.
+		store.setDefault(CxxTestPlugin.CXXTEST_PREF_SHARD_COUNT, 1);
+
+		// Run the tests in the order they are declared, and run all of them
+		// even if some fail, by default.
+		store.setDefault(CxxTestPlugin.CXXTEST_PREF_FAILURES_FIRST, false);
+		store.setDefault(CxxTestPlugin.CXXTEST_PREF_FAIL_FAST, false);
+
+		// Write the results as XML by default.
+		store.setDefault(CxxTestPlugin.CXXTEST_PREF_BINARY_RESULTS_LOG, false);
+
 		// Assume the system doesn't have the required libraries by default;
 		// we'll find out when we check during initialization, or whenever the
 		// user toggles the stack trace setting.
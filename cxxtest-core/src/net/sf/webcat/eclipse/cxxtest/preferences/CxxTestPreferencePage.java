@@ -28,6 +28,7 @@ import net.sf.webcat.eclipse.cxxtest.internal.StackTraceDependencyChecker;
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.jface.preference.StringFieldEditor;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
@@ -93,6 +94,39 @@ public class CxxTestPreferencePage extends FieldEditorPreferencePage
         });
 
         addField(editor);
+
+        IntegerFieldEditor suitesPerPart = new IntegerFieldEditor(
+            CxxTestPlugin.CXXTEST_PREF_SUITES_PER_PART,
+            Messages.CxxTestPreferencePage_SuitesPerPart,
+            getFieldEditorParent());
+        suitesPerPart.setValidRange(0, Integer.MAX_VALUE);
+        addField(suitesPerPart);
+
+		addField(new BooleanFieldEditor(CxxTestPlugin.CXXTEST_PREF_RUN_AFFECTED_ONLY,
+            Messages.CxxTestPreferencePage_RunAffectedOnly, getFieldEditorParent()));
+
+        IntegerFieldEditor maxConcurrentRuns = new IntegerFieldEditor(
+            CxxTestPlugin.CXXTEST_PREF_MAX_CONCURRENT_RUNS,
+            Messages.CxxTestPreferencePage_MaxConcurrentRuns,
+            getFieldEditorParent());
+        maxConcurrentRuns.setValidRange(1, Integer.MAX_VALUE);
+        addField(maxConcurrentRuns);
+
+        IntegerFieldEditor shardCount = new IntegerFieldEditor(
+            CxxTestPlugin.CXXTEST_PREF_SHARD_COUNT,
+            Messages.CxxTestPreferencePage_ShardCount,
+            getFieldEditorParent());
+        shardCount.setValidRange(1, Integer.MAX_VALUE);
+        addField(shardCount);
+
+		addField(new BooleanFieldEditor(CxxTestPlugin.CXXTEST_PREF_FAILURES_FIRST,
+            Messages.CxxTestPreferencePage_FailuresFirst, getFieldEditorParent()));
+
+		addField(new BooleanFieldEditor(CxxTestPlugin.CXXTEST_PREF_FAIL_FAST,
+            Messages.CxxTestPreferencePage_FailFast, getFieldEditorParent()));
+
+		addField(new BooleanFieldEditor(CxxTestPlugin.CXXTEST_PREF_BINARY_RESULTS_LOG,
+            Messages.CxxTestPreferencePage_BinaryResultsLog, getFieldEditorParent()));
 	}
 
 	
@@ -21,29 +21,25 @@
 
 package net.sf.webcat.eclipse.cxxtest.ui;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Map;
 
 import net.sf.webcat.eclipse.cxxtest.ICxxTestConstants;
 import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
-import net.sf.webcat.eclipse.cxxtest.model.ICxxTestAssertion;
+import net.sf.webcat.eclipse.cxxtest.internal.TestRunResult;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestBase;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestMethod;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuite;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuiteChild;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuiteError;
-import net.sf.webcat.eclipse.cxxtest.xml.ContextualSAXHandler;
-import net.sf.webcat.eclipse.cxxtest.xml.testresults.DocumentContext;
 
 import org.eclipse.cdt.core.model.CModelException;
 import org.eclipse.cdt.core.model.ICProject;
 import org.eclipse.cdt.internal.ui.util.EditorUtility;
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IMarker;
-import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.debug.core.ILaunch;
 import org.eclipse.jface.action.Action;
@@ -56,11 +52,11 @@ import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.util.OpenStrategy;
 import org.eclipse.jface.viewers.IFontProvider;
+import org.eclipse.jface.viewers.ILazyTreeContentProvider;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.ISelectionProvider;
 import org.eclipse.jface.viewers.IStructuredSelection;
-import org.eclipse.jface.viewers.ITreeContentProvider;
 import org.eclipse.jface.viewers.LabelProvider;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.jface.viewers.StructuredSelection;
@@ -92,11 +88,7 @@ import org.eclipse.ui.forms.events.HyperlinkEvent;
 import org.eclipse.ui.forms.widgets.FormToolkit;
 import org.eclipse.ui.forms.widgets.ScrolledFormText;
 import org.eclipse.ui.texteditor.ITextEditor;
-import org.eclipse.ui.texteditor.MarkerUtilities;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXParseException;
-import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 /**
  * A tab that displays a hierarchical view of the test suites that were
@@ -122,10 +114,17 @@ public class TestHierarchyTab extends TestRunTab
 
 	private TestSuiteContentProvider viewerContent;
 
-	private ICProject project;
-	
 	private ICxxTestSuite[] suites;
 
+	/*
+	 * The number of children and the wall time of each suite when the
+	 * results of a run that is still going were last shown, so that only
+	 * the suites that have changed since then are updated.
+	 */
+	private int[] shownChildCounts;
+
+	private long[] shownWallTimes;
+
 	private ListenerList selectionListeners= new ListenerList();
 	
 	private TestRunnerViewPart testRunnerView;
@@ -141,14 +140,38 @@ public class TestHierarchyTab extends TestRunTab
 	private final Image suiteWarnIcon = TestRunnerViewPart.createImage("obj16/tsuitewarn.gif"); //$NON-NLS-1$
 	private final Image testIcon = TestRunnerViewPart.createImage("obj16/test.gif"); //$NON-NLS-1$
 	
-	private class TestSuiteContentProvider implements ITreeContentProvider
+	/**
+	 * Supplies the suites and their children to the virtual tree one row at
+	 * a time, by their index in the results, so that only the rows that are
+	 * visible are ever created. A lazy tree can't be sorted by the viewer,
+	 * so the children are sorted here when they are shown slowest first.
+	 * The top-level rows are always the current suites, which can outgrow
+	 * the array that was given to the viewer as its input while a run is
+	 * still going.
+	 */
+	private class TestSuiteContentProvider implements ILazyTreeContentProvider
 	{
-		public Object[] getChildren(Object parent)
+		private boolean sortedByTime;
+
+		private Map<Object, Object[]> sortedChildren =
+			new HashMap<Object, Object[]>();
+
+		public void updateElement(Object parent, int index)
 		{
-			if(parent instanceof ICxxTestSuite)
-				return ((ICxxTestSuite)parent).getChildren(false);
-			else
-				return null;
+			if(index >= getChildCount(parent))
+				return;
+
+			Object element = getChild(parent, index);
+			viewer.replace(parent, index, element);
+			updateChildCount(element, -1);
+		}
+
+		public void updateChildCount(Object element, int currentChildCount)
+		{
+			int count = getChildCount(element);
+
+			if(count != currentChildCount)
+				viewer.setChildCount(element, count);
 		}
 
 		public Object getParent(Object element)
@@ -156,30 +179,96 @@ public class TestHierarchyTab extends TestRunTab
 			return ((ICxxTestBase)element).getParent();
 		}
 
-		public boolean hasChildren(Object element)
+		public int getChildCount(Object parent)
 		{
-			if(element instanceof ICxxTestSuite)
-				return true;
+			if(parent instanceof ICxxTestSuite[])
+				return suites.length;
+			else if(parent instanceof ICxxTestSuite)
+				return ((ICxxTestSuite)parent).getChildCount();
 			else
-				return false;
+				return 0;
+		}
+
+		public Object getChild(Object parent, int index)
+		{
+			if(sortedByTime)
+				return getSortedChildren(parent)[index];
+			else if(parent instanceof ICxxTestSuite[])
+				return suites[index];
+			else
+				return ((ICxxTestSuite)parent).getChild(index);
+		}
+
+		public int indexOf(Object parent, Object child)
+		{
+			int count = getChildCount(parent);
+
+			for(int i = 0; i < count; i++)
+			{
+				if(getChild(parent, i) == child)
+					return i;
+			}
+
+			return -1;
+		}
+
+		public boolean isSortedByTime()
+		{
+			return sortedByTime;
+		}
+
+		public void setSortedByTime(boolean value)
+		{
+			sortedByTime = value;
+			sortedChildren.clear();
+		}
+
+		public void clearSortedChildren()
+		{
+			sortedChildren.clear();
 		}
 
-		public Object[] getElements(Object inputElement)
+		private Object[] getSortedChildren(Object parent)
 		{
-			return (Object[])inputElement;
+			// The suites of a run that is still going gain children, so
+			// a sorted copy is only reused while it is still complete.
+			Object[] children = sortedChildren.get(parent);
+			int count = getChildCount(parent);
+
+			if(children == null || children.length != count)
+			{
+				if(parent instanceof ICxxTestSuite[])
+					children = suites.clone();
+				else
+					children = ((ICxxTestSuite)parent).getChildren(false);
+
+				Arrays.sort(children, new SlowestFirstComparator());
+				sortedChildren.put(parent, children);
+			}
+
+			return children;
 		}
 
 		public void dispose() { }
 
 		public void inputChanged(
-				Viewer viewer, Object oldInput, Object newInput) { }
+				Viewer viewer, Object oldInput, Object newInput)
+		{
+			sortedChildren.clear();
+		}
 	}
 
 	private class TestSuiteLabelProvider extends LabelProvider implements IFontProvider
 	{
 		public String getText(Object element)
 		{
-			return element.toString();
+			long wallTime = getWallTime(element);
+
+			if(wallTime < 0)
+				return element.toString();
+			else
+				return MessageFormat.format(Messages.TestHierarchyTab_TimedLabel,
+						element.toString(), wallTime / 1000000.0);
 		}
 		
 		public Image getImage(Object element)
@@ -239,6 +328,41 @@ public class TestHierarchyTab extends TestRunTab
 		}
 	}
 
+	/**
+	 * Sorts the suites, and the tests within each suite, from the slowest to
+	 * the fastest. Elements with no timing information, such as suite
+	 * errors, keep their order after the ones that have it.
+	 */
+	private static class SlowestFirstComparator implements Comparator<Object>
+	{
+		public int compare(Object e1, Object e2)
+		{
+			long time1 = getWallTime(e1);
+			long time2 = getWallTime(e2);
+
+			if(time1 == time2)
+				return 0;
+			else
+				return (time1 > time2) ? -1 : 1;
+		}
+	}
+
+	private class SortByTimeAction extends Action
+	{
+		public SortByTimeAction()
+		{
+			super(Messages.TestHierarchyTab_SortByTimeLabel, AS_CHECK_BOX);
+			setToolTipText(Messages.TestHierarchyTab_SortByTimeTooltip);
+			setChecked(viewerContent.isSortedByTime());
+		}
+
+		public void run()
+		{
+			viewerContent.setSortedByTime(isChecked());
+			viewer.refresh();
+		}
+	}
+
 	private class ExpandAllAction extends Action
 	{
 		public ExpandAllAction()
@@ -271,11 +395,15 @@ public class TestHierarchyTab extends TestRunTab
 		hierarchyTab.setControl(testTreePanel);
 		hierarchyTab.setToolTipText(Messages.TestHierarchyTab_TabTooltip); 
 
-		viewer = new TreeViewer(testTreePanel, SWT.V_SCROLL | SWT.SINGLE);
+		// The tree is virtual, since a run can have tens of thousands of
+		// tests and only the visible rows need to be created.
+		viewer = new TreeViewer(testTreePanel,
+				SWT.V_SCROLL | SWT.SINGLE | SWT.VIRTUAL);
 		gridData = new GridData(GridData.FILL_BOTH |
 				GridData.GRAB_HORIZONTAL | GridData.GRAB_VERTICAL);
 		viewerContent = new TestSuiteContentProvider();
 		viewer.setContentProvider(viewerContent);
+		viewer.setUseHashlookup(true);
 		viewer.setLabelProvider(new TestSuiteLabelProvider());
 
 		viewer.getTree().setLayoutData(gridData);
@@ -312,6 +440,7 @@ public class TestHierarchyTab extends TestRunTab
 
 	private void openLink(String link)
 	{
+		// Only the XML log can be shown in an editor; the binary log can't.
 		if(link.startsWith(ICxxTestConstants.TEST_RESULTS_FILE))
 		{
 			String[] parts = link.split(":"); //$NON-NLS-1$
@@ -390,6 +519,31 @@ public class TestHierarchyTab extends TestRunTab
 	
 	public void setSelectedTest(ICxxTestBase testObject)
 	{
+		// Create the rows on the way to the test by their index, rather than
+		// letting the viewer search the virtual tree for it.
+		if(suites != null && testObject instanceof ICxxTestSuiteChild)
+		{
+			Object suite = testObject.getParent();
+			int suiteIndex = viewerContent.indexOf(viewer.getInput(), suite);
+
+			if(suiteIndex != -1)
+			{
+				expandSuite(suiteIndex);
+
+				int index = viewerContent.indexOf(suite, testObject);
+
+				if(index != -1)
+					viewer.replace(suite, index, testObject);
+			}
+		}
+		else if(suites != null)
+		{
+			int index = viewerContent.indexOf(viewer.getInput(), testObject);
+
+			if(index != -1)
+				viewer.replace(viewer.getInput(), index, testObject);
+		}
+
 		viewer.setSelection(new StructuredSelection(testObject));
 	}
 
@@ -400,11 +554,26 @@ public class TestHierarchyTab extends TestRunTab
 
 		for(int i = 0; i < suites.length; i++)
 		{
-			boolean expand = (suites[i].getStatus() != ICxxTestBase.STATUS_OK); 
-			viewer.setExpandedState(suites[i], expand);
+			Object suite = viewerContent.getChild(viewer.getInput(), i);
+
+			if(((ICxxTestBase)suite).getStatus() != ICxxTestBase.STATUS_OK)
+				expandSuite(i);
 		}
 	}
 
+	/**
+	 * Expands the suite in the specified row. Only the row of the suite is
+	 * created; the rows of its children are created when they are shown.
+	 */
+	private void expandSuite(int index)
+	{
+		Object suite = viewerContent.getChild(viewer.getInput(), index);
+
+		viewer.replace(viewer.getInput(), index, suite);
+		viewerContent.updateChildCount(suite, -1);
+		viewer.setExpandedState(suite, true);
+	}
+
 	public void activate()
 	{
 		testRunnerView.handleObjectSelected(getSelectedObject());
@@ -465,6 +634,8 @@ public class TestHierarchyTab extends TestRunTab
 			manager.add(new ExpandAllAction());
 		}
 
+		manager.add(new SortByTimeAction());
+
 		manager.add(new Separator(IWorkbenchActionConstants.MB_ADDITIONS));
 		manager.add(new Separator(IWorkbenchActionConstants.MB_ADDITIONS + "-end")); //$NON-NLS-1$
 	}	
@@ -472,9 +643,13 @@ public class TestHierarchyTab extends TestRunTab
 	private void setSuites(ICxxTestSuite[] suites)
 	{
 		this.suites = suites;
+		shownChildCounts = null;
+		shownWallTimes = null;
 
+		viewer.getControl().setRedraw(false);
 		viewer.setInput(suites);
 		expandFailedTests();
+		viewer.getControl().setRedraw(true);
 
 		errorMsgField.setText(""); //$NON-NLS-1$
 		stackLayout.topControl = viewer.getControl();
@@ -503,7 +678,7 @@ public class TestHierarchyTab extends TestRunTab
 		return buf.toString();
 	}
 
-	private void setParseError(Exception e)
+	private void setParseError(Exception e, String logName)
 	{
 		StringBuffer msg = new StringBuffer();
 		msg.append("<form>"); //$NON-NLS-1$
@@ -517,13 +692,13 @@ public class TestHierarchyTab extends TestRunTab
 			SAXParseException spe = (SAXParseException) e;
 			msg.append(MessageFormat.format(
 					Messages.TestHierarchyTab_ErrorDescriptionWithLineNumber,
-					ICxxTestConstants.TEST_RESULTS_FILE, spe.getLineNumber(), escapeXMLString(e.getMessage())));
+					logName, spe.getLineNumber(), escapeXMLString(e.getMessage())));
 		}
 		else
 		{
 			msg.append(MessageFormat.format(
 					Messages.TestHierarchyTab_ErrorDescription,
-					ICxxTestConstants.TEST_RESULTS_FILE, escapeXMLString(e.getMessage())));
+					logName, escapeXMLString(e.getMessage())));
 		}
 
 		msg.append("</form>"); //$NON-NLS-1$
@@ -536,7 +711,15 @@ public class TestHierarchyTab extends TestRunTab
 
 	protected void expandAll()
 	{
-		viewer.expandAll();
+		if(suites == null)
+			return;
+
+		viewer.getControl().setRedraw(false);
+
+		for(int i = 0; i < suites.length; i++)
+			expandSuite(i);
+
+		viewer.getControl().setRedraw(true);
 	}
 	
 	public void addSelectionChangedListener(ISelectionChangedListener listener)
@@ -572,106 +755,123 @@ public class TestHierarchyTab extends TestRunTab
 
 	public void testRunStarted(ICProject project, ILaunch launch)
 	{
-		this.project = project;
-		
-		setSuites(null);
+		// When only some of the tests are being run again, the previous
+		// results stay visible until the new ones are merged into them.
+		if(!testRunnerView.isMergingResults())
+			setSuites(null);
 	}
 
-	@SuppressWarnings("deprecation")
-	public void testRunEnded()
+	public void testRunProgress(ICxxTestSuite[] suites)
 	{
-		try
+		// The results being merged stay as they are until the run ends.
+		if(testRunnerView.isMergingResults())
+			return;
+
+		// The suites of a run that is still going are the same objects each
+		// time, and new ones are only added after the others, so the rows
+		// already in the tree are kept, along with their expansion, the
+		// selection and the scroll position. Only the suites that have
+		// changed since the last update are updated.
+		if(viewer.getInput() == null || !isContinuedBy(suites))
 		{
-			IFile resultsFile = project.getProject().getFile(
-					ICxxTestConstants.TEST_RESULTS_FILE);
-			File resultsPath = resultsFile.getLocation().toFile();
-	
-			// When the CxxTest results file is generated, Eclipse
-			// autodetects this change in the project contents and
-			// attempts to run the managed make process again
-			// (which has no effect because there's nothing new to
-			// make, but it does delete warning markers). But it
-			// appears setting the derived flag (which does apply
-			// here, as it's derived from the runner) will prevent
-			// managed make from doing an extraneous run.
-			try
-			{
-				resultsFile.setDerived(true);
-			}
-			catch (CoreException e1) { }
+			setSuites(suites);
+		}
+		else
+		{
+			ICxxTestSuite[] oldSuites = this.suites;
+			this.suites = suites;
 
-			FileInputStream stream = new FileInputStream(resultsPath);
-			InputSource source = new InputSource(stream);
-			
-			DocumentContext docContext = new DocumentContext();
-			final ContextualSAXHandler handler = new ContextualSAXHandler(docContext);
-	
-			try
-			{
-				XMLReader reader = XMLReaderFactory.createXMLReader();
-				reader.setContentHandler(handler);
-				reader.parse(source);
-			}
-			catch (Exception e)
+			viewer.getControl().setRedraw(false);
+
+			if(viewerContent.isSortedByTime())
 			{
-				setParseError(e);
-				return;
+				// The order of the rows changes as the suites finish.
+				viewerContent.clearSortedChildren();
+				viewer.setChildCount(viewer.getInput(), suites.length);
+				viewer.refresh();
 			}
-			finally
+			else
 			{
-				stream.close();
+				if(suites.length != oldSuites.length)
+					viewer.setChildCount(viewer.getInput(), suites.length);
+
+				for(int i = 0; i < suites.length; i++)
+				{
+					if(i < oldSuites.length && !hasChangedSinceShown(i))
+						continue;
+
+					if(i < oldSuites.length)
+					{
+						viewer.update(suites[i], null);
+						viewerContent.updateChildCount(suites[i], -1);
+					}
+
+					if(suites[i].getStatus() != ICxxTestBase.STATUS_OK)
+						expandSuite(i);
+				}
 			}
-	
-			ICxxTestSuite[] suiteArray = docContext.getSuites();
-			setSuites(suiteArray);
-			testRunnerView.setSummary(suiteArray);
-			setFailureMarkers(suiteArray);
+
+			viewer.getControl().setRedraw(true);
 		}
-		catch(IOException e)
+
+		shownChildCounts = new int[suites.length];
+		shownWallTimes = new long[suites.length];
+
+		for(int i = 0; i < suites.length; i++)
 		{
-			setParseError(e);
+			shownChildCounts[i] = suites[i].getChildCount();
+			shownWallTimes[i] = suites[i].getWallTime();
 		}
 	}
 
-	private void setFailureMarkers(ICxxTestSuite[] suites)
+	/**
+	 * Gets a value indicating whether the specified suites start with the
+	 * ones that are being shown, as they do while a run is still going.
+	 */
+	private boolean isContinuedBy(ICxxTestSuite[] newSuites)
 	{
+		if(suites == null || shownChildCounts == null
+				|| shownChildCounts.length != suites.length
+				|| newSuites.length < suites.length)
+			return false;
+
 		for(int i = 0; i < suites.length; i++)
 		{
-			ICxxTestSuite suite = suites[i];
-			ICxxTestSuiteChild[] children = suite.getChildren(true);
+			if(newSuites[i] != suites[i])
+				return false;
+		}
 
-			for(int j = 0; j < children.length; j++)
-			{
-				ICxxTestMethod test = (ICxxTestMethod)children[j];
-				IFile file = project.getProject().getFile(suite.getFile());
+		return true;
+	}
 
-				for(int k = 0; k < test.getFailedAssertions().length; k++)
-				{
-					ICxxTestAssertion assertion = test.getFailedAssertions()[k];
-					setAssertionMarker(file, assertion);
-				}
-			}
-		}
+	private boolean hasChangedSinceShown(int index)
+	{
+		return suites[index].getChildCount() != shownChildCounts[index]
+			|| suites[index].getWallTime() != shownWallTimes[index];
 	}
-	
-	private void setAssertionMarker(IFile file, ICxxTestAssertion assertion)
+
+	public void testRunEnded()
 	{
-		try
-		{
-			HashMap<String, Object> attrs = new HashMap<String, Object>();
+	}
 
-			attrs.put(IMarker.MESSAGE, assertion.getMessage(false));
-			attrs.put(IMarker.LINE_NUMBER,
-					new Integer(assertion.getLineNumber()));
-			attrs.put(IMarker.SEVERITY, new Integer(IMarker.SEVERITY_INFO));
-			attrs.put(ICxxTestConstants.ATTR_ASSERTIONTYPE,
-					new Integer(assertion.getStatus()));
+	public void testRunResultAvailable(TestRunResult result)
+	{
+		if(result.getResultsError() != null)
+			setParseError(result.getResultsError(),
+					result.getResultsLogName());
+		else
+			setSuites(result.getSuites());
+	}
 
-			MarkerUtilities.createMarker(file, attrs,
-					ICxxTestConstants.MARKER_FAILED_TEST);
-		}
-		catch(CoreException e) { }
+	private static long getWallTime(Object element)
+	{
+		if(element instanceof ICxxTestSuite)
+			return ((ICxxTestSuite)element).getWallTime();
+		else if(element instanceof ICxxTestMethod)
+			return ((ICxxTestMethod)element).getWallTime();
+		else
+			return -1;
 	}
-	
+
 	private static final String ERROR_COLOR_KEY = "error"; //$NON-NLS-1$
 }
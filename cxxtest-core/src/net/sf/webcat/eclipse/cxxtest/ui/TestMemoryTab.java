@@ -21,34 +21,30 @@
 
 package net.sf.webcat.eclipse.cxxtest.ui;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.text.MessageFormat;
 
 import net.sf.webcat.eclipse.cxxtest.ICxxTestConstants;
 import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
+import net.sf.webcat.eclipse.cxxtest.internal.TestRunResult;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestBase;
 import net.sf.webcat.eclipse.cxxtest.model.IDerefereeSummary;
 import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeak;
-import net.sf.webcat.eclipse.cxxtest.xml.ContextualSAXHandler;
-import net.sf.webcat.eclipse.cxxtest.xml.memstats.DocumentContext;
+import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeakGroup;
 
 import org.eclipse.cdt.core.model.CModelException;
 import org.eclipse.cdt.core.model.ICProject;
 import org.eclipse.cdt.internal.ui.util.EditorUtility;
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.debug.core.ILaunch;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.util.OpenStrategy;
+import org.eclipse.jface.viewers.ILazyTreeContentProvider;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.ISelectionProvider;
 import org.eclipse.jface.viewers.IStructuredSelection;
-import org.eclipse.jface.viewers.ITreeContentProvider;
 import org.eclipse.jface.viewers.LabelProvider;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.jface.viewers.StructuredSelection;
@@ -73,10 +69,7 @@ import org.eclipse.ui.forms.events.HyperlinkEvent;
 import org.eclipse.ui.forms.widgets.FormToolkit;
 import org.eclipse.ui.forms.widgets.ScrolledFormText;
 import org.eclipse.ui.texteditor.ITextEditor;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXParseException;
-import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 /**
  * A tab that displays a summary of memory allocation and leaks that occurred
@@ -95,8 +88,6 @@ public class TestMemoryTab extends TestRunTab implements ISelectionProvider
 
 	private MemWatchContentProvider viewerContent;
 
-	private ICProject project;
-	
 	private ListenerList selectionListeners= new ListenerList();
 	
 	private TestRunnerViewPart testRunnerView;
@@ -124,14 +115,29 @@ public class TestMemoryTab extends TestRunTab implements ISelectionProvider
 		}
 	}
 
-	private class MemWatchContentProvider implements ITreeContentProvider
+	/**
+	 * Supplies the summary, the groups of leaks and the leaks in each group
+	 * to the virtual tree one row at a time, so that only the visible rows
+	 * are created no matter how many times the same place leaked.
+	 */
+	private class MemWatchContentProvider implements ILazyTreeContentProvider
 	{
-		public Object[] getChildren(Object parent)
+		public void updateElement(Object parent, int index)
 		{
-			if(parent instanceof IDerefereeSummary)
-				return ((IDerefereeSummary)parent).getLeaks();
-			else
-				return null;
+			if(index >= getChildCount(parent))
+				return;
+
+			Object element = getChild(parent, index);
+			viewer.replace(parent, index, element);
+			updateChildCount(element, -1);
+		}
+
+		public void updateChildCount(Object element, int currentChildCount)
+		{
+			int count = getChildCount(element);
+
+			if(count != currentChildCount)
+				viewer.setChildCount(element, count);
 		}
 
 		public Object getParent(Object element)
@@ -139,22 +145,26 @@ public class TestMemoryTab extends TestRunTab implements ISelectionProvider
 			return null;
 		}
 
-		public boolean hasChildren(Object element)
+		public int getChildCount(Object parent)
 		{
-			if(element instanceof IDerefereeSummary)
-				return true;
+			if(parent instanceof MemWatchInfoInput)
+				return (((MemWatchInfoInput)parent).info == null) ? 0 : 1;
+			else if(parent instanceof IDerefereeSummary)
+				return ((IDerefereeSummary)parent).getLeakGroups().length;
+			else if(parent instanceof IDerefereeLeakGroup)
+				return ((IDerefereeLeakGroup)parent).getLeakCount();
 			else
-				return false;
+				return 0;
 		}
 
-		public Object[] getElements(Object inputElement)
+		public Object getChild(Object parent, int index)
 		{
-			MemWatchInfoInput input = (MemWatchInfoInput)inputElement;
-			
-			if(input.info == null)
-				return new Object[0];
+			if(parent instanceof MemWatchInfoInput)
+				return ((MemWatchInfoInput)parent).info;
+			else if(parent instanceof IDerefereeSummary)
+				return ((IDerefereeSummary)parent).getLeakGroups()[index];
 			else
-				return new Object[] { input.info };
+				return ((IDerefereeLeakGroup)parent).getLeak(index);
 		}
 
 		public void dispose() { }
@@ -194,6 +204,11 @@ public class TestMemoryTab extends TestRunTab implements ISelectionProvider
 				IDerefereeLeak leak = (IDerefereeLeak)element;
 				return leak.toString();
 			}
+			else if(element instanceof IDerefereeLeakGroup)
+			{
+				IDerefereeLeakGroup group = (IDerefereeLeakGroup)element;
+				return group.toString();
+			}
 			else
 				return element.toString();
 		}
@@ -213,6 +228,15 @@ public class TestMemoryTab extends TestRunTab implements ISelectionProvider
 				else
 					return leakNoArrayIcon;
 			}
+			else if(element instanceof IDerefereeLeakGroup)
+			{
+				IDerefereeLeakGroup group = (IDerefereeLeakGroup)element;
+				
+				if(group.isArray())
+					return leakArrayIcon;
+				else
+					return leakNoArrayIcon;
+			}
 
 			return null;
 		}
@@ -237,11 +261,13 @@ public class TestMemoryTab extends TestRunTab implements ISelectionProvider
 		memoryTab.setControl(testTreePanel);
 		memoryTab.setToolTipText(Messages.TestMemoryTab_MemoryUsageTooltip); 
 		
-		viewer = new TreeViewer(testTreePanel, SWT.V_SCROLL | SWT.SINGLE);
+		viewer = new TreeViewer(testTreePanel,
+				SWT.V_SCROLL | SWT.SINGLE | SWT.VIRTUAL);
 		gridData= new GridData(GridData.FILL_BOTH |
 				GridData.GRAB_HORIZONTAL | GridData.GRAB_VERTICAL);
 		viewerContent = new MemWatchContentProvider();
 		viewer.setContentProvider(viewerContent);
+		viewer.setUseHashlookup(true);
 		viewer.setLabelProvider(new MemWatchLabelProvider());
 
 		viewer.getTree().setLayoutData(gridData);
@@ -370,8 +396,17 @@ public class TestMemoryTab extends TestRunTab implements ISelectionProvider
 	{
 		this.memWatchInfo = mwInfo;
 
-		viewer.setInput(new MemWatchInfoInput(mwInfo));
-		viewer.expandAll();
+		MemWatchInfoInput input = new MemWatchInfoInput(mwInfo);
+		viewer.setInput(input);
+
+		// Only the groups are shown at first; the leaks in a group are
+		// created when it is expanded.
+		if(mwInfo != null)
+		{
+			viewer.replace(input, 0, mwInfo);
+			viewerContent.updateChildCount(mwInfo, -1);
+			viewer.setExpandedState(mwInfo, true);
+		}
 
 		errorMsgField.setText(""); //$NON-NLS-1$
 		stackLayout.topControl = viewer.getControl();
@@ -380,7 +415,22 @@ public class TestMemoryTab extends TestRunTab implements ISelectionProvider
 	
 	protected void expandAll()
 	{
-		viewer.expandAll();
+		if(memWatchInfo == null)
+			return;
+
+		IDerefereeLeakGroup[] groups = memWatchInfo.getLeakGroups();
+
+		viewer.getControl().setRedraw(false);
+		viewer.setExpandedState(memWatchInfo, true);
+
+		for(int i = 0; i < groups.length; i++)
+		{
+			viewer.replace(memWatchInfo, i, groups[i]);
+			viewerContent.updateChildCount(groups[i], -1);
+			viewer.setExpandedState(groups[i], true);
+		}
+
+		viewer.getControl().setRedraw(true);
 	}
 	
 	public void addSelectionChangedListener(ISelectionChangedListener listener)
@@ -471,57 +521,21 @@ public class TestMemoryTab extends TestRunTab implements ISelectionProvider
 
 	public void testRunStarted(ICProject project, ILaunch launch)
 	{
-		this.project = project;
-		
 		setMemWatchInfo(null);
 	}
 
-	@SuppressWarnings("deprecation")
 	public void testRunEnded()
 	{
-		try
-		{
-			IFile resultsFile = project.getProject().getFile(
-					ICxxTestConstants.DEREFEREE_RESULTS_FILE);
-			File resultsPath = resultsFile.getLocation().toFile();
-	
-			// When the CxxTest results file is generated, Eclipse
-			// autodetects this change in the project contents and
-			// attempts to run the managed make process again
-			// (which has no effect because there's nothing new to
-			// make, but it does delete warning markers). But it
-			// appears setting the derived flag (which does apply
-			// here, as it's derived from the runner) will prevent
-			// managed make from doing an extraneous run.
-			try { resultsFile.setDerived(true); }
-			catch (CoreException e1) { }
-	
-			FileInputStream stream = new FileInputStream(resultsPath);
-			InputSource source = new InputSource(stream);
+	}
 
-			DocumentContext docContext = new DocumentContext();
-			final ContextualSAXHandler handler = new ContextualSAXHandler(docContext);
-	
-			try
-			{
-				XMLReader reader = XMLReaderFactory.createXMLReader();
-				reader.setContentHandler(handler);
-				reader.parse(source);
-			}
-			catch (Exception e)
-			{
-				setParseError(e);
-				return;
-			}
-			finally
-			{
-				stream.close();
-			}
-	
-			IDerefereeSummary mwInfo = docContext.getSummary();
-			setMemWatchInfo(mwInfo);
-		}
-		catch(IOException e) { }
+	public void testRunResultAvailable(TestRunResult result)
+	{
+		// A missing log just means that memory usage wasn't tracked, so
+		// nothing is shown for it.
+		if(result.getMemoryError() != null)
+			setParseError(result.getMemoryError());
+		else if(result.getMemorySummary() != null)
+			setMemWatchInfo(result.getMemorySummary());
 	}
 	
 	
@@ -22,6 +22,9 @@
 package net.sf.webcat.eclipse.cxxtest.ui;
 
 import net.sf.webcat.eclipse.cxxtest.ICxxTestRunListener;
+import net.sf.webcat.eclipse.cxxtest.internal.TestRunResult;
+import net.sf.webcat.eclipse.cxxtest.internal.TestRunResultService;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuite;
 
 import org.eclipse.swt.custom.CTabFolder;
 import org.eclipse.swt.dnd.Clipboard;
@@ -36,7 +39,8 @@ import org.eclipse.swt.dnd.Clipboard;
  * @author  latest changes by: $Author$
  * @version $Revision$ $Date$
  */
-public abstract class TestRunTab implements ICxxTestRunListener
+public abstract class TestRunTab
+	implements ICxxTestRunListener, TestRunResultService.IListener
 {	
 	/**
 	 * Create the tab control
@@ -71,6 +75,25 @@ public abstract class TestRunTab implements ICxxTestRunListener
 	 */
 	public abstract String getName();
 
+	/**
+	 * Shows the results that have been read so far while the tests are still
+	 * running. The suites are replaced by the complete results when the run
+	 * ends.
+	 * @param suites the suites that have been read so far
+	 */
+	public void testRunProgress(ICxxTestSuite[] suites)
+	{
+	}
+
+	/**
+	 * Shows the results of a test run once its logs have been read. The
+	 * results are shared by all of the tabs, so they must not be changed.
+	 * @param result the results of the run
+	 */
+	public void testRunResultAvailable(TestRunResult result)
+	{
+	}
+
 	/**
 	 * Select next test failure.
 	 */
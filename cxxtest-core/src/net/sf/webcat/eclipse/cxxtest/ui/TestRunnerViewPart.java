@@ -27,8 +27,13 @@ import java.text.MessageFormat;
 import java.util.Enumeration;
 import java.util.Vector;
 
+import net.sf.webcat.eclipse.cxxtest.CxxTestDriverRunner;
 import net.sf.webcat.eclipse.cxxtest.CxxTestPlugin;
 import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
+import net.sf.webcat.eclipse.cxxtest.internal.TestRunResult;
+import net.sf.webcat.eclipse.cxxtest.internal.TestRunResultService;
+import net.sf.webcat.eclipse.cxxtest.internal.TestSelection;
+import net.sf.webcat.eclipse.cxxtest.internal.generator.TestSuiteIndex;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestAssertion;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestBase;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestMethod;
@@ -38,11 +43,13 @@ import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuiteChild;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuiteError;
 import net.sf.webcat.eclipse.cxxtest.model.IDerefereeSummary;
 import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeak;
+import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeakGroup;
 
 import org.eclipse.cdt.core.model.ICProject;
 import org.eclipse.cdt.debug.core.ICDTLaunchConfigurationConstants;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.ILaunch;
 import org.eclipse.jface.action.Action;
@@ -153,6 +160,11 @@ public class TestRunnerViewPart extends ViewPart
 				IDerefereeLeak mwl = (IDerefereeLeak)parentElement;
 				return mwl.getStackTrace();
 			}
+			else if(parentElement instanceof IDerefereeLeakGroup)
+			{
+				IDerefereeLeakGroup group = (IDerefereeLeakGroup)parentElement;
+				return group.getStackTrace();
+			}
 			else
 			{
 				return null;
@@ -181,6 +193,11 @@ public class TestRunnerViewPart extends ViewPart
 				IDerefereeLeak leak = (IDerefereeLeak)element;
 				return leak.getStackTrace() != null;
 			}
+			else if(element instanceof IDerefereeLeakGroup)
+			{
+				IDerefereeLeakGroup group = (IDerefereeLeakGroup)element;
+				return group.getStackTrace().length > 0;
+			}
 			else
 				return false;
 		}
@@ -214,6 +231,20 @@ public class TestRunnerViewPart extends ViewPart
 					return leak.toString();
 				}
 			}
+			else if(element instanceof IDerefereeLeakGroup)
+			{
+				IDerefereeLeakGroup group = (IDerefereeLeakGroup)element;
+
+				if(group.getStackTrace().length > 0)
+				{
+					return group.toString() +
+						Messages.TestRunnerViewPart_AllocatedUsingSuffix;
+				}
+				else
+				{
+					return group.toString();
+				}
+			}
 			else if(element instanceof ICxxTestStackFrame)
 			{
 				ICxxTestStackFrame ste = (ICxxTestStackFrame)element;
@@ -251,7 +282,8 @@ public class TestRunnerViewPart extends ViewPart
 				}
 			}
 			else if(element instanceof ICxxTestStackFrame ||
-					element instanceof IDerefereeLeak)	
+					element instanceof IDerefereeLeak ||
+					element instanceof IDerefereeLeakGroup)
 			{
 				return stackFrameIcon;
 			}
@@ -294,13 +326,23 @@ public class TestRunnerViewPart extends ViewPart
 
 	private ICProject launchedProject;
 
+	// True if the results of the current run should be merged into the
+	// results of the previous one instead of replacing them.
+	private boolean mergingResults;
+
+	// The suites whose results are currently shown.
+	private ICxxTestSuite[] currentSuites;
+
 	protected Vector<TestRunTab> testRunTabs = new Vector<TestRunTab>();
 
 	private TestRunTab activeRunTab;
+
+	private TestRunResultService.IListener resultListener;
 	
 	private Clipboard clipboard;
 
 	private StopAction stopAction;
+	private RerunFailuresAction rerunFailuresAction;
 	private ToggleOrientationAction[] toggleOrientationActions;
 
 	private static final int VIEW_ORIENTATION_VERTICAL= 0;
@@ -325,6 +367,22 @@ public class TestRunnerViewPart extends ViewPart
 		}
 	}
 
+	private class RerunFailuresAction extends Action
+	{
+		public RerunFailuresAction()
+		{
+			setText(Messages.TestRunnerViewPart_RerunFailuresLabel);
+			setToolTipText(Messages.TestRunnerViewPart_RerunFailuresTooltip);
+			
+			setImageDescriptor(CxxTestPlugin.getImageDescriptor("obj16/failures.gif")); //$NON-NLS-1$
+		}
+
+		public void run()
+		{
+			rerunFailures();
+		}
+	}
+
 	private class ToggleOrientationAction extends Action
 	{
 		private final int actionOrientation;
@@ -460,6 +518,10 @@ public class TestRunnerViewPart extends ViewPart
 		stopAction = new StopAction();
 		stopAction.setEnabled(false);
 
+		rerunFailuresAction = new RerunFailuresAction();
+		rerunFailuresAction.setEnabled(false);
+
+		toolBar.add(rerunFailuresAction);
 		toolBar.add(stopAction);
 
 		for(int i = 0; i < toggleOrientationActions.length; ++i)
@@ -471,6 +533,13 @@ public class TestRunnerViewPart extends ViewPart
 
 	public void dispose()
 	{
+		TestRunResultService service = TestRunResultService.getDefault();
+
+		for(Enumeration<TestRunTab> e = testRunTabs.elements(); e.hasMoreElements(); )
+			service.removeListener(e.nextElement());
+
+		service.removeListener(resultListener);
+
 		disposeIcons();
 	}
 
@@ -499,6 +568,25 @@ public class TestRunnerViewPart extends ViewPart
 		memoryTab.createTabControl(tabFolder, clipboard, this);
 		testRunTabs.addElement(memoryTab);
 
+		// The tabs are given the results of each run once its logs have been
+		// read, and then the summary is updated from the same results.
+		TestRunResultService service = TestRunResultService.getDefault();
+
+		for(Enumeration<TestRunTab> e = testRunTabs.elements(); e.hasMoreElements(); )
+			service.addListener(e.nextElement());
+
+		resultListener = new TestRunResultService.IListener() {
+			public void testRunResultAvailable(TestRunResult result)
+			{
+				if(result.getResultsError() == null)
+				{
+					setSummary(result.getSuites(), result.getTotalTests(),
+							result.getFailedTests(), result.getErrorTests());
+				}
+			}
+		};
+		service.addListener(resultListener);
+
 		if(tabFolder.getItemCount() > 0)
 		{
 			tabFolder.setSelection(0);				
@@ -594,6 +682,11 @@ public class TestRunnerViewPart extends ViewPart
 			}
 			catch (DebugException e) { }
 
+			// If the run was split into shards, canceling the job that
+			// launched them terminates the rest of them.
+			if(launchedProject != null)
+				Job.getJobManager().cancel(launchedProject.getProject());
+
 			currentLaunch = null;
 		}
 		
@@ -601,6 +694,62 @@ public class TestRunnerViewPart extends ViewPart
 		stopAction.setEnabled(false);
 	}
 
+	/**
+	 * Runs the tests that failed or had errors in the last run again,
+	 * without rebuilding the project, and merges their new results into
+	 * the results that are currently shown. A suite that reported an error
+	 * outside of its tests is run again in its entirety.
+	 */
+	public void rerunFailures()
+	{
+		if(launchedProject == null || currentSuites == null)
+			return;
+
+		Vector<String> failures = getFailedTestPatterns();
+		if(failures.isEmpty())
+			return;
+
+		rerunFailuresAction.setEnabled(false);
+		CxxTestDriverRunner.runTests(launchedProject.getProject(),
+				new TestSelection(failures, null));
+	}
+
+	private Vector<String> getFailedTestPatterns()
+	{
+		Vector<String> patterns = new Vector<String>();
+
+		for(int i = 0; i < currentSuites.length; i++)
+		{
+			ICxxTestSuite suite = currentSuites[i];
+			ICxxTestSuiteChild[] children = suite.getChildren(false);
+			Vector<String> suitePatterns = new Vector<String>();
+			boolean suiteError = false;
+
+			for(int j = 0; j < children.length; j++)
+			{
+				if(children[j].getStatus() < ICxxTestBase.STATUS_FAILED)
+					continue;
+
+				if(children[j] instanceof ICxxTestMethod)
+				{
+					suitePatterns.add(suite.getName() + "::" + //$NON-NLS-1$
+							((ICxxTestMethod)children[j]).getName());
+				}
+				else
+				{
+					suiteError = true;
+				}
+			}
+
+			if(suiteError)
+				patterns.add(suite.getName());
+			else
+				patterns.addAll(suitePatterns);
+		}
+
+		return patterns;
+	}
+
 	public void handleObjectSelected(Object obj)
 	{
 		showDetails(obj);
@@ -628,6 +777,11 @@ public class TestRunnerViewPart extends ViewPart
 				IDerefereeLeak leak = (IDerefereeLeak)obj;
 				detailViewer.setInput(new Object[] { leak });
 			}
+			else if(obj instanceof IDerefereeLeakGroup)
+			{
+				IDerefereeLeakGroup group = (IDerefereeLeakGroup)obj;
+				detailViewer.setInput(new Object[] { group });
+			}
 			else if(obj instanceof IDerefereeSummary)
 			{
 				detailViewer.setInput(obj);
@@ -657,8 +811,34 @@ public class TestRunnerViewPart extends ViewPart
 
 	public void testRunStarted(ICProject project, ILaunch launch)
 	{
+		testRunStarted(project, launch, false);
+	}
+
+	/**
+	 * Called when a test run is about to begin.
+	 * 
+	 * @param project the project whose tests are being run
+	 * @param launch the launch of the test executable
+	 * @param mergeResults true if the results of the run should be merged
+	 *     into the results of the previous run of the same project instead
+	 *     of replacing them
+	 */
+	public void testRunStarted(ICProject project, ILaunch launch,
+			boolean mergeResults)
+	{
+		mergingResults = mergeResults && project.equals(launchedProject)
+			&& currentSuites != null;
 		launchedProject = project;
 
+		if(!mergingResults)
+			currentSuites = null;
+
+		// The results of an earlier run that haven't been shown yet are no
+		// longer wanted.
+		TestRunResultService.getDefault().cancel();
+
+		rerunFailuresAction.setEnabled(false);
+
 		for(Enumeration<TestRunTab> e = testRunTabs.elements(); e.hasMoreElements(); )
 		{
 			TestRunTab v = e.nextElement();
@@ -690,7 +870,67 @@ public class TestRunnerViewPart extends ViewPart
 		return launchedProject;
 	}
 
-	public void testRunEnded()
+	/**
+	 * Gets a value indicating whether the results of the current run are
+	 * being merged into the results of the previous one.
+	 * 
+	 * @return true if the results are being merged
+	 */
+	public boolean isMergingResults()
+	{
+		return mergingResults;
+	}
+
+	/**
+	 * Called while a test run is still going on to show the results that
+	 * have been read so far. The results shown are replaced by the
+	 * complete ones when the run ends.
+	 *
+	 * @param project the project whose tests are being run
+	 * @param suites the suites that have been read so far
+	 * @param completedTests the number of tests that have finished
+	 * @param expectedTests the number of tests that are expected to run
+	 */
+	public void testRunProgress(ICProject project, ICxxTestSuite[] suites,
+			int completedTests, int expectedTests)
+	{
+		// Ignore progress from a run that is no longer the one being shown.
+		if(currentLaunch == null || !project.equals(launchedProject))
+			return;
+
+		for(Enumeration<TestRunTab> e = testRunTabs.elements(); e.hasMoreElements(); )
+		{
+			TestRunTab v = e.nextElement();
+			v.testRunProgress(suites);
+		}
+
+		int[] counts = countTests(suites);
+		int failedTests = counts[1], errorTests = counts[2];
+
+		counterPanel.setRunValue(completedTests);
+		counterPanel.setFailureValue(failedTests);
+		counterPanel.setErrorValue(errorTests);
+
+		progressBar.reset();
+		progressBar.setMaximum(Math.max(completedTests, expectedTests));
+
+		if(completedTests > 0)
+			progressBar.step(completedTests);
+
+		progressBar.refresh(failedTests + errorTests > 0);
+	}
+
+	/**
+	 * Called when a test run has ended, to read its results.
+	 * 
+	 * @param testedIndex the suite index of the project if the run was
+	 *     meant to run every test, so that the changes the runner was
+	 *     generated from are marked as tested if they all pass, or null
+	 * @param driverGeneration the generation of the test runner that was
+	 *     run
+	 */
+	public void testRunEnded(TestSuiteIndex testedIndex,
+			long driverGeneration)
 	{
 		currentLaunch = null;
 		stopTest();
@@ -700,32 +940,38 @@ public class TestRunnerViewPart extends ViewPart
 			TestRunTab v = e.nextElement();
 			v.testRunEnded();
 		}
+
+		TestRunResultService.getDefault().readResults(launchedProject,
+				mergingResults ? currentSuites : null, testedIndex,
+				driverGeneration);
 	}
 	
 	public void setSummary(ICxxTestSuite[] suites)
 	{
+		int[] counts = countTests(suites);
+		setSummary(suites, counts[0], counts[1], counts[2]);
+	}
+
+	/**
+	 * Shows the results of a test run whose tests have already been counted,
+	 * so that the counting can be done outside the UI thread.
+	 * 
+	 * @param suites the suites that were run
+	 * @param totalTests the number of tests that were run
+	 * @param failedTests the number of tests that failed
+	 * @param errorTests the number of tests that had errors
+	 */
+	public void setSummary(ICxxTestSuite[] suites, int totalTests,
+			int failedTests, int errorTests)
+	{
+		currentSuites = suites;
+
 		if(suites == null)
 			return;
 
 		if(suites.length > 0)
 			getViewSite().getPage().activate(this);
 
-		int totalTests = 0, failedTests = 0, errorTests = 0;
-
-		for(int i = 0; i < suites.length; i++)
-		{
-			ICxxTestSuiteChild[] tests = suites[i].getChildren(true);			
-			totalTests += tests.length;
-			
-			for(int j = 0; j < tests.length; j++)
-			{
-				if(tests[j].getStatus() == ICxxTestBase.STATUS_ERROR)
-					errorTests++;
-				else if(tests[j].getStatus() == ICxxTestBase.STATUS_FAILED)
-					failedTests++;
-			}
-		}
-
 		counterPanel.reset();
 		counterPanel.setRunValue(totalTests);
 		counterPanel.setFailureValue(failedTests);
@@ -735,5 +981,39 @@ public class TestRunnerViewPart extends ViewPart
 		progressBar.setMaximum(totalTests);
 		progressBar.step(failedTests + errorTests);
 		progressBar.refresh(failedTests + errorTests > 0);
+
+		rerunFailuresAction.setEnabled(!getFailedTestPatterns().isEmpty());
+	}
+
+	/**
+	 * Counts the tests in the specified suites.
+	 * 
+	 * @param suites the suites whose tests should be counted, or null
+	 * 
+	 * @return an array holding the number of tests, the number that failed
+	 *     and the number that had errors
+	 */
+	public static int[] countTests(ICxxTestSuite[] suites)
+	{
+		int totalTests = 0, failedTests = 0, errorTests = 0;
+
+		if(suites != null)
+		{
+			for(int i = 0; i < suites.length; i++)
+			{
+				ICxxTestSuiteChild[] tests = suites[i].getChildren(true);			
+				totalTests += tests.length;
+				
+				for(int j = 0; j < tests.length; j++)
+				{
+					if(tests[j].getStatus() == ICxxTestBase.STATUS_ERROR)
+						errorTests++;
+					else if(tests[j].getStatus() == ICxxTestBase.STATUS_FAILED)
+						failedTests++;
+				}
+			}
+		}
+
+		return new int[] { totalTests, failedTests, errorTests };
 	}
 }
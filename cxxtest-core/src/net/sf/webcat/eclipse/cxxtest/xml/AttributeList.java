@@ -0,0 +1,169 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.xml;
+
+import org.xml.sax.Attributes;
+
+//--------------------------------------------------------------------------
+/**
+ * The attributes of an element, held in arrays that the log readers reuse
+ * for every element they read. Only the qualified names are kept; every
+ * attribute is in the default namespace and has the type CDATA.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+class AttributeList implements Attributes
+{
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	public void clear()
+	{
+		for (int i = 0; i < length; i++)
+			values[i] = null;
+
+		length = 0;
+	}
+
+
+	// ----------------------------------------------------------
+	public void add(String name, String value)
+	{
+		if (length == names.length)
+		{
+			String[] newNames = new String[length * 2];
+			String[] newValues = new String[length * 2];
+			System.arraycopy(names, 0, newNames, 0, length);
+			System.arraycopy(values, 0, newValues, 0, length);
+			names = newNames;
+			values = newValues;
+		}
+
+		names[length] = name;
+		values[length] = value;
+		length++;
+	}
+
+
+	// ----------------------------------------------------------
+	public int getLength()
+	{
+		return length;
+	}
+
+
+	// ----------------------------------------------------------
+	public String getURI(int index)
+	{
+		return (index >= 0 && index < length) ? "" : null; //$NON-NLS-1$
+	}
+
+
+	// ----------------------------------------------------------
+	public String getLocalName(int index)
+	{
+		return (index >= 0 && index < length) ? names[index] : null;
+	}
+
+
+	// ----------------------------------------------------------
+	public String getQName(int index)
+	{
+		return getLocalName(index);
+	}
+
+
+	// ----------------------------------------------------------
+	public String getType(int index)
+	{
+		return (index >= 0 && index < length) ? TYPE_CDATA : null;
+	}
+
+
+	// ----------------------------------------------------------
+	public String getValue(int index)
+	{
+		return (index >= 0 && index < length) ? values[index] : null;
+	}
+
+
+	// ----------------------------------------------------------
+	public int getIndex(String uri, String localName)
+	{
+		if (uri != null && uri.length() > 0)
+			return -1;
+		else
+			return getIndex(localName);
+	}
+
+
+	// ----------------------------------------------------------
+	public int getIndex(String qName)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			if (names[i].equals(qName))
+				return i;
+		}
+
+		return -1;
+	}
+
+
+	// ----------------------------------------------------------
+	public String getType(String uri, String localName)
+	{
+		return getType(getIndex(uri, localName));
+	}
+
+
+	// ----------------------------------------------------------
+	public String getType(String qName)
+	{
+		return getType(getIndex(qName));
+	}
+
+
+	// ----------------------------------------------------------
+	public String getValue(String uri, String localName)
+	{
+		return getValue(getIndex(uri, localName));
+	}
+
+
+	// ----------------------------------------------------------
+	public String getValue(String qName)
+	{
+		return getValue(getIndex(qName));
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	private static final String TYPE_CDATA = "CDATA"; //$NON-NLS-1$
+
+	private String[] names = new String[8];
+	private String[] values = new String[8];
+	private int length;
+}
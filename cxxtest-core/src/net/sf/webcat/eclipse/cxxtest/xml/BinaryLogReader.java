@@ -0,0 +1,529 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+//--------------------------------------------------------------------------
+/**
+ * Reads the binary results log written by the CxxTest BinaryFormatter and
+ * hands its elements to a stack of {@link ElementContext}s, exactly as a
+ * {@link ContextualPullParser} does for the XML results log. The binary log
+ * holds the same elements and attributes as the XML log, so the same
+ * contexts build the same model from either one.
+ * <p>
+ * Every record in the binary log is prefixed by its type and every string
+ * by its length, so nothing needs to be unescaped. Element names, attribute
+ * names, file names and function names are written once and then referred
+ * to by their index in a string table, so each of them is only decoded
+ * once.
+ * <p>
+ * A binary log may hold the logs of several shards one after another, each
+ * starting with its own header. Their root elements are combined, so that
+ * the contexts see a single world containing the suites of every shard.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class BinaryLogReader
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new reader.
+	 *
+	 * @param initialContext the context for the document itself, which
+	 *     receives the root element
+	 */
+	public BinaryLogReader(ElementContext initialContext)
+	{
+		this.initialContext = initialContext;
+
+		buffer = new byte[BUFFER_SIZE];
+		stringBytes = new byte[INITIAL_STRING_SIZE];
+		text = new char[INITIAL_STRING_SIZE];
+		strings = new ArrayList<String>();
+		attributes = new AttributeList();
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Determines whether a binary log is complete, that is, whether every
+	 * element that was started in it was also ended. A log is incomplete if
+	 * the test runner that was writing it crashed.
+	 *
+	 * @param stream the stream to read the log from
+	 *
+	 * @return true if the log is complete, otherwise false
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static boolean isComplete(InputStream stream) throws IOException
+	{
+		try
+		{
+			new BinaryLogReader(new AnyElementContext()).parse(stream);
+			return true;
+		}
+		catch (SAXException e)
+		{
+			return false;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads a binary log from the specified stream. The stream is not
+	 * closed.
+	 *
+	 * @param stream the stream to read the log from
+	 *
+	 * @throws IOException if an I/O error occurs
+	 * @throws SAXException if the log is malformed or one of the contexts
+	 *     rejects it
+	 */
+	public void parse(InputStream stream) throws IOException, SAXException
+	{
+		this.stream = stream;
+		pos = 0;
+		limit = 0;
+
+		ElementContext[] contexts = new ElementContext[INITIAL_DEPTH];
+		String[] names = new String[INITIAL_DEPTH];
+		int depth = 0;
+
+		contexts[0] = initialContext;
+		names[0] = ""; //$NON-NLS-1$
+
+		// The number of elements open in the current shard's log, and
+		// whether the end of the root element has been put off until it is
+		// known that no other shard's log follows.
+		int segmentDepth = 0;
+		boolean rootEnded = false;
+		boolean started = false;
+
+		int record;
+
+		while ((record = readRecordType()) != -1)
+		{
+			if (record == HEADER[0])
+			{
+				if (segmentDepth != 0)
+				{
+					throw new SAXException(MessageFormat.format(
+							Messages.ContextualSAXHandler_StackNotEmptyAtEnd,
+							new Object[] { getContextPath(names, depth) }));
+				}
+
+				readHeader();
+				strings.clear();
+				started = true;
+				continue;
+			}
+			else if (!started)
+			{
+				throw new SAXException(
+						Messages.BinaryLogReader_MissingHeader);
+			}
+
+			switch (record)
+			{
+			case RECORD_START:
+				String name = readRef();
+				readAttributes();
+
+				segmentDepth++;
+
+				if (rootEnded && segmentDepth == 1)
+				{
+					// The root element of a later shard's log continues the
+					// root element that is already open.
+					rootEnded = false;
+					break;
+				}
+
+				ElementContext newContext = contexts[depth].startElement(
+						"", name, name, attributes); //$NON-NLS-1$
+
+				if (newContext == null)
+				{
+					throw new SAXException(MessageFormat.format(
+							Messages.ContextualSAXHandler_UnrecognizedTag,
+							new Object[] { name,
+									getContextPath(names, depth) }));
+				}
+
+				if (++depth == contexts.length)
+				{
+					ElementContext[] newContexts =
+						new ElementContext[depth * 2];
+					String[] newNames = new String[depth * 2];
+					System.arraycopy(contexts, 0, newContexts, 0, depth);
+					System.arraycopy(names, 0, newNames, 0, depth);
+					contexts = newContexts;
+					names = newNames;
+				}
+
+				contexts[depth] = newContext;
+				names[depth] = name;
+				break;
+
+			case RECORD_TEXT:
+				int length = readText();
+
+				if (depth > 0 && !rootEnded)
+					contexts[depth].characters(text, 0, length);
+				break;
+
+			case RECORD_END:
+				if (segmentDepth == 0)
+				{
+					throw new SAXException(
+						Messages.ContextualSAXHandler_StackPrematurelyEmpty);
+				}
+
+				if (--segmentDepth == 0)
+				{
+					rootEnded = true;
+					break;
+				}
+
+				contexts[depth].endElement("", names[depth], //$NON-NLS-1$
+						names[depth]);
+				contexts[depth] = null;
+				depth--;
+				break;
+
+			default:
+				throw new SAXException(MessageFormat.format(
+						Messages.BinaryLogReader_UnknownRecord,
+						new Object[] { record }));
+			}
+		}
+
+		if (segmentDepth != 0)
+		{
+			throw new SAXException(MessageFormat.format(
+					Messages.ContextualSAXHandler_StackNotEmptyAtEnd,
+					new Object[] { getContextPath(names, depth) }));
+		}
+
+		if (rootEnded)
+			contexts[depth].endElement("", names[depth], names[depth]); //$NON-NLS-1$
+	}
+
+
+	// ----------------------------------------------------------
+	private void readHeader() throws IOException, SAXException
+	{
+		for (int i = 1; i < HEADER.length; i++)
+		{
+			if (readByte() != HEADER[i])
+			{
+				throw new SAXException(
+						Messages.BinaryLogReader_MissingHeader);
+			}
+		}
+
+		int version = readByte();
+
+		if (version != VERSION)
+		{
+			throw new SAXException(MessageFormat.format(
+					Messages.BinaryLogReader_UnsupportedVersion,
+					new Object[] { version }));
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private void readAttributes() throws IOException, SAXException
+	{
+		attributes.clear();
+
+		long count = readNumber();
+
+		for (long i = 0; i < count; i++)
+		{
+			String name = readRef();
+			int kind = readByte();
+			String value;
+
+			switch (kind)
+			{
+			case VALUE_INLINE:
+				value = readString();
+				break;
+
+			case VALUE_REF:
+				value = readRef();
+				break;
+
+			case VALUE_NUMBER:
+				value = Long.toString(readNumber());
+				break;
+
+			case VALUE_LOCATION:
+				String file = readRef();
+				value = file + ":" + readNumber(); //$NON-NLS-1$
+				break;
+
+			default:
+				throw new SAXException(MessageFormat.format(
+						Messages.BinaryLogReader_UnknownValue,
+						new Object[] { kind }));
+			}
+
+			attributes.add(name, value);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads a reference to the string table, which is followed by the
+	 * string itself the first time it is used.
+	 */
+	private String readRef() throws IOException, SAXException
+	{
+		long index = readNumber();
+
+		if (index < strings.size())
+		{
+			return strings.get((int) index);
+		}
+		else if (index == strings.size())
+		{
+			String value = readString();
+			strings.add(value);
+			return value;
+		}
+		else
+		{
+			throw new SAXException(MessageFormat.format(
+					Messages.BinaryLogReader_BadStringReference,
+					new Object[] { index }));
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private String readString() throws IOException, SAXException
+	{
+		int length = readStringBytes();
+
+		return new String(stringBytes, 0, length, "UTF-8"); //$NON-NLS-1$
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads a string into the reusable text buffer.
+	 *
+	 * @return the number of characters in the buffer
+	 */
+	private int readText() throws IOException, SAXException
+	{
+		String value = readString();
+		int length = value.length();
+
+		if (length > text.length)
+			text = new char[Math.max(length, text.length * 2)];
+
+		value.getChars(0, length, text, 0);
+		return length;
+	}
+
+
+	// ----------------------------------------------------------
+	private int readStringBytes() throws IOException, SAXException
+	{
+		long length = readNumber();
+
+		if (length > Integer.MAX_VALUE)
+			throw new SAXException(Messages.BinaryLogReader_NumberTooLarge);
+
+		if (length > stringBytes.length)
+		{
+			stringBytes = new byte[
+					Math.max((int) length, stringBytes.length * 2)];
+		}
+
+		int offset = 0;
+
+		while (offset < length)
+		{
+			if (pos == limit && !fill())
+			{
+				throw new SAXException(
+						Messages.BinaryLogReader_UnexpectedEndOfFile);
+			}
+
+			int count = Math.min(limit - pos, (int) length - offset);
+			System.arraycopy(buffer, pos, stringBytes, offset, count);
+			pos += count;
+			offset += count;
+		}
+
+		return (int) length;
+	}
+
+
+	// ----------------------------------------------------------
+	private long readNumber() throws IOException, SAXException
+	{
+		long value = 0;
+
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0)
+				return value;
+		}
+
+		throw new SAXException(Messages.BinaryLogReader_NumberTooLarge);
+	}
+
+
+	// ----------------------------------------------------------
+	private int readByte() throws IOException, SAXException
+	{
+		if (pos == limit && !fill())
+		{
+			throw new SAXException(
+					Messages.BinaryLogReader_UnexpectedEndOfFile);
+		}
+
+		return buffer[pos++] & 0xFF;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads the type of the next record, or returns -1 if the log ends
+	 * cleanly between records.
+	 */
+	private int readRecordType() throws IOException
+	{
+		if (pos == limit && !fill())
+			return -1;
+
+		return buffer[pos++] & 0xFF;
+	}
+
+
+	// ----------------------------------------------------------
+	private boolean fill() throws IOException
+	{
+		int count = stream.read(buffer, 0, buffer.length);
+
+		if (count <= 0)
+			return false;
+
+		pos = 0;
+		limit = count;
+		return true;
+	}
+
+
+	// ----------------------------------------------------------
+	private static String getContextPath(String[] names, int depth)
+	{
+		StringBuilder path = new StringBuilder();
+
+		for (int i = 0; i <= depth; i++)
+		{
+			if (i > 0)
+				path.append('/');
+
+			path.append(names[i]);
+		}
+
+		return path.toString();
+	}
+
+
+	//~ Nested classes ........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * A context that accepts any element, used to check the structure of a
+	 * log without building anything from it.
+	 */
+	private static class AnyElementContext extends ElementContext
+	{
+		// ----------------------------------------------------------
+		@Override
+		public ElementContext startElement(String uri, String localName,
+				String qName, Attributes attributes)
+		{
+			return this;
+		}
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	private static final int[] HEADER = { 'C', 'X', 'T', 'B' };
+	private static final int VERSION = 1;
+
+	private static final int RECORD_START = 1;
+	private static final int RECORD_TEXT = 2;
+	private static final int RECORD_END = 3;
+
+	private static final int VALUE_INLINE = 0;
+	private static final int VALUE_REF = 1;
+	private static final int VALUE_NUMBER = 2;
+	private static final int VALUE_LOCATION = 3;
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int INITIAL_STRING_SIZE = 256;
+	private static final int INITIAL_DEPTH = 16;
+
+	private ElementContext initialContext;
+	private InputStream stream;
+	private byte[] buffer;
+	private int pos;
+	private int limit;
+
+	private byte[] stringBytes;
+	private char[] text;
+	private List<String> strings;
+	private AttributeList attributes;
+}
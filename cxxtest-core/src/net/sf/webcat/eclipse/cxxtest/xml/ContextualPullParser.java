@@ -0,0 +1,200 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.MessageFormat;
+
+import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+//--------------------------------------------------------------------------
+/**
+ * Reads a document with an {@link XmlPullReader} and hands its elements to
+ * a stack of {@link ElementContext}s, exactly as a
+ * {@link ContextualSAXHandler} does for a SAX parser. The same contexts can
+ * be used with either one; this class is the cheaper of the two for reading
+ * a complete log, since it doesn't go through a general purpose parser.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class ContextualPullParser
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new parser.
+	 *
+	 * @param initialContext the context for the document itself, which
+	 *     receives the root element
+	 */
+	public ContextualPullParser(ElementContext initialContext)
+	{
+		this.initialContext = initialContext;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Parses a UTF-8 encoded document from the specified stream. The stream
+	 * is not closed.
+	 *
+	 * @param stream the stream to read the document from
+	 *
+	 * @throws IOException if an I/O error occurs
+	 * @throws SAXException if the document is malformed or one of the
+	 *     contexts rejects it
+	 */
+	public void parse(InputStream stream) throws IOException, SAXException
+	{
+		XmlPullReader reader = new XmlPullReader(
+				new InputStreamReader(stream, "UTF-8")); //$NON-NLS-1$
+
+		ElementContext[] contexts = new ElementContext[INITIAL_DEPTH];
+		String[] names = new String[INITIAL_DEPTH];
+		int depth = 0;
+
+		contexts[0] = initialContext;
+		names[0] = ""; //$NON-NLS-1$
+
+		int event;
+
+		while ((event = reader.next()) != XmlPullReader.END_DOCUMENT)
+		{
+			String name = reader.getName();
+
+			try
+			{
+				switch (event)
+				{
+				case XmlPullReader.START_ELEMENT:
+					ElementContext newContext = contexts[depth].startElement(
+							"", name, name, reader.getAttributes()); //$NON-NLS-1$
+
+					if (newContext == null)
+					{
+						throw reader.createException(MessageFormat.format(
+								Messages.ContextualSAXHandler_UnrecognizedTag,
+								new Object[] { name,
+										getContextPath(names, depth) }));
+					}
+
+					if (++depth == contexts.length)
+					{
+						ElementContext[] newContexts =
+							new ElementContext[depth * 2];
+						String[] newNames = new String[depth * 2];
+						System.arraycopy(contexts, 0, newContexts, 0, depth);
+						System.arraycopy(names, 0, newNames, 0, depth);
+						contexts = newContexts;
+						names = newNames;
+					}
+
+					contexts[depth] = newContext;
+					names[depth] = name;
+					break;
+
+				case XmlPullReader.END_ELEMENT:
+					if (depth == 0)
+					{
+						throw reader.createException(
+							Messages.ContextualSAXHandler_StackPrematurelyEmpty);
+					}
+
+					// Names are interned by the reader, so they can be
+					// compared by identity.
+					if (names[depth] != name)
+					{
+						throw reader.createException(MessageFormat.format(
+								Messages.ContextualPullParser_MismatchedEndTag,
+								new Object[] { name, names[depth] }));
+					}
+
+					contexts[depth].endElement("", name, name); //$NON-NLS-1$
+					contexts[depth] = null;
+					depth--;
+					break;
+
+				case XmlPullReader.TEXT:
+					// Like a SAX parser, ignore the whitespace around the
+					// root element.
+					if (depth > 0)
+					{
+						contexts[depth].characters(
+								reader.getTextCharacters(), 0,
+								reader.getTextLength());
+					}
+					break;
+				}
+			}
+			catch (SAXParseException e)
+			{
+				throw e;
+			}
+			catch (SAXException e)
+			{
+				throw new SAXParseException(e.getMessage(), null, null,
+						reader.getLineNumber(), reader.getColumnNumber(), e);
+			}
+		}
+
+		if (depth != 0)
+		{
+			throw reader.createException(MessageFormat.format(
+					Messages.ContextualSAXHandler_StackNotEmptyAtEnd,
+					new Object[] { getContextPath(names, depth) }));
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private static String getContextPath(String[] names, int depth)
+	{
+		StringBuilder buffer = new StringBuilder();
+
+		for (int i = 0; i <= depth; i++)
+		{
+			if (i > 0)
+				buffer.append('/');
+
+			buffer.append(names[i]);
+		}
+
+		return buffer.toString();
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	private static final int INITIAL_DEPTH = 16;
+
+	private ElementContext initialContext;
+}
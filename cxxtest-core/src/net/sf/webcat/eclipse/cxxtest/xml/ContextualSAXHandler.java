@@ -22,8 +22,6 @@
 package net.sf.webcat.eclipse.cxxtest.xml;
 
 import java.text.MessageFormat;
-import java.util.Enumeration;
-import java.util.Stack;
 
 import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
 
@@ -46,29 +44,11 @@ import org.xml.sax.helpers.DefaultHandler;
  */
 public class ContextualSAXHandler extends DefaultHandler
 {
-	private class ContextEntry
-	{
-		private ElementContext context;
-		private String localName;
-		
-		public ContextEntry(ElementContext context, String localName)
-		{
-			this.context = context;
-			this.localName = localName;
-		}
-		
-		public ElementContext getContext()
-		{
-			return context;
-		}
-		
-		public String getLocalName()
-		{
-			return localName;
-		}
-	}
-
-	private Stack<ContextEntry> contextStack;
+	private ElementContext[] contexts;
+	
+	private String[] localNames;
+	
+	private int depth;
 	
 	private Locator locator;
 	
@@ -78,7 +58,8 @@ public class ContextualSAXHandler extends DefaultHandler
 	{
 		this.initialContext = initialContext;
 
-		contextStack = new Stack<ContextEntry>();
+		contexts = new ElementContext[INITIAL_DEPTH];
+		localNames = new String[INITIAL_DEPTH];
 	}
 
 	public void setDocumentLocator(Locator locator)
@@ -88,13 +69,14 @@ public class ContextualSAXHandler extends DefaultHandler
 
 	public void startDocument()
 	{
-		ContextEntry entry = new ContextEntry(initialContext, ""); //$NON-NLS-1$
-		contextStack.push(entry);
+		depth = 0;
+		contexts[0] = initialContext;
+		localNames[0] = ""; //$NON-NLS-1$
 	}
 
 	public void endDocument() throws SAXException
 	{
-		if(contextStack.size() != 1)
+		if(depth != 0)
 		{
 			String ctxPath = getCurrentContextPath();
 
@@ -109,12 +91,11 @@ public class ContextualSAXHandler extends DefaultHandler
 	public void startElement(String uri, String localName, String qName,
 			Attributes attributes) throws SAXException
 	{
-		ContextEntry entry = contextStack.peek();
 		ElementContext newContext = null;
 		
 		try
 		{
-			newContext = entry.getContext().startElement(
+			newContext = contexts[depth].startElement(
 					uri, localName, qName, attributes);
 		}
 		catch(SAXException e)
@@ -133,27 +114,30 @@ public class ContextualSAXHandler extends DefaultHandler
 			throw new SAXParseException(msg, locator);
 		}
 
-		ContextEntry newEntry = new ContextEntry(newContext, localName);
-		contextStack.push(newEntry);
+		if(++depth == contexts.length)
+		{
+			ElementContext[] newContexts = new ElementContext[depth * 2];
+			String[] newLocalNames = new String[depth * 2];
+			System.arraycopy(contexts, 0, newContexts, 0, depth);
+			System.arraycopy(localNames, 0, newLocalNames, 0, depth);
+			contexts = newContexts;
+			localNames = newLocalNames;
+		}
+
+		contexts[depth] = newContext;
+		localNames[depth] = localName;
 	}
 
 	private String getCurrentContextPath()
 	{
-		StringBuffer buf = new StringBuffer();
-
-		boolean first = true;
+		StringBuilder buf = new StringBuilder();
 
-		Enumeration<ContextEntry> e = contextStack.elements();
-		while(e.hasMoreElements())
+		for(int i = 0; i <= depth; i++)
 		{
-			ContextEntry entry = e.nextElement();
-			
-			if(first)
-				first = false;
-			else
+			if(i > 0)
 				buf.append('/');
 
-			buf.append(entry.getLocalName());
+			buf.append(localNames[i]);
 		}
 		
 		return buf.toString();
@@ -162,18 +146,20 @@ public class ContextualSAXHandler extends DefaultHandler
 	public void endElement(String uri, String localName, String qName)
 	throws SAXException
 	{
-		if(contextStack.size() == 1)
+		if(depth == 0)
 		{
 			throw new SAXParseException(
 					Messages.ContextualSAXHandler_StackPrematurelyEmpty,
 					locator);
 		}
 
-		ContextEntry entry = contextStack.pop();
+		ElementContext context = contexts[depth];
+		contexts[depth] = null;
+		depth--;
 		
 		try
 		{
-			entry.getContext().endElement(uri, localName, qName);
+			context.endElement(uri, localName, qName);
 		}
 		catch(SAXException e)
 		{
@@ -184,15 +170,15 @@ public class ContextualSAXHandler extends DefaultHandler
 	public void characters(char[] chars, int start, int length)
 	throws SAXException
 	{
-		ContextEntry entry = contextStack.peek();
-		
 		try
 		{
-			entry.getContext().characters(chars, start, length);
+			contexts[depth].characters(chars, start, length);
 		}
 		catch(SAXException e)
 		{
 			throw new SAXParseException(null, locator, e);
 		}
 	}
+	
+	private static final int INITIAL_DEPTH = 16;
 }
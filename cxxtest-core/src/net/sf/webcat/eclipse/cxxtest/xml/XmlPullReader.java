@@ -0,0 +1,713 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.MessageFormat;
+
+import net.sf.webcat.eclipse.cxxtest.i18n.Messages;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXParseException;
+
+//--------------------------------------------------------------------------
+/**
+ * A small pull parser for the XML logs written by the test runner. The
+ * caller asks for one event at a time with {@link #next()}, and the reader
+ * allocates as little as it can while doing so: the input and text buffers
+ * are reused from one event to the next, element and attribute names are
+ * interned in a table owned by the reader so that each distinct name is
+ * created only once, and the attributes of an element are held in a single
+ * reusable {@link Attributes} object.
+ * <p>
+ * The reader understands the subset of XML that the logs use: elements,
+ * attributes, character data, CDATA sections, the predefined entities and
+ * character references. Processing instructions, comments and document type
+ * declarations are skipped. Line endings are normalized and whitespace in
+ * attribute values is replaced by spaces, as a SAX parser would do.
+ * <p>
+ * The name, attributes and text of an event are only valid until the next
+ * call to {@link #next()}.
+ *
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class XmlPullReader
+{
+	//~ Constructors ..........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates a new reader.
+	 *
+	 * @param reader the source of the XML document
+	 */
+	public XmlPullReader(Reader reader)
+	{
+		this.reader = reader;
+
+		input = new char[INPUT_BUFFER_SIZE];
+		text = new char[INITIAL_TEXT_SIZE];
+		nameBuffer = new char[INITIAL_NAME_SIZE];
+		names = new NameTable();
+		attributes = new AttributeList();
+		line = 1;
+	}
+
+
+	//~ Methods ...............................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads the next event from the document.
+	 *
+	 * @return {@link #START_ELEMENT}, {@link #END_ELEMENT}, {@link #TEXT} or
+	 *     {@link #END_DOCUMENT}
+	 *
+	 * @throws IOException if an I/O error occurs
+	 * @throws SAXParseException if the document is malformed
+	 */
+	public int next() throws IOException, SAXParseException
+	{
+		attributes.clear();
+		textLength = 0;
+
+		if (pendingEnd)
+		{
+			pendingEnd = false;
+			return END_ELEMENT;
+		}
+
+		if (tagPending)
+		{
+			tagPending = false;
+			return readTag();
+		}
+
+		while (true)
+		{
+			int ch = read();
+
+			if (ch == -1)
+			{
+				return (textLength > 0) ? TEXT : END_DOCUMENT;
+			}
+			else if (ch == '&')
+			{
+				appendCodePoint(readReference());
+			}
+			else if (ch != '<')
+			{
+				appendText((char) ch);
+			}
+			else if (peek() == '?')
+			{
+				skipPast("?>"); //$NON-NLS-1$
+			}
+			else if (peek() == '!')
+			{
+				// Comments and CDATA sections don't end the current text.
+				read();
+				readDeclaration();
+			}
+			else if (textLength > 0)
+			{
+				// Report the text before the tag first.
+				tagPending = true;
+				return TEXT;
+			}
+			else
+			{
+				return readTag();
+			}
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the name of the element that the current event starts or ends.
+	 * Names are interned by the reader, so equal names are the same object.
+	 *
+	 * @return the name of the element
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the attributes of the element that the current event starts.
+	 *
+	 * @return the attributes, which are empty for other events
+	 */
+	public Attributes getAttributes()
+	{
+		return attributes;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the buffer that holds the text of the current event. The text
+	 * starts at the beginning of the buffer.
+	 *
+	 * @return the text buffer
+	 */
+	public char[] getTextCharacters()
+	{
+		return text;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the length of the text of the current event.
+	 *
+	 * @return the number of characters of text in the buffer
+	 */
+	public int getTextLength()
+	{
+		return textLength;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the line that the reader has reached in the document.
+	 *
+	 * @return the current line number, starting from 1
+	 */
+	public int getLineNumber()
+	{
+		return line;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Gets the column that the reader has reached on the current line.
+	 *
+	 * @return the current column number, starting from 1
+	 */
+	public int getColumnNumber()
+	{
+		return column + 1;
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Creates an exception that reports an error at the reader's current
+	 * position in the document.
+	 *
+	 * @param message the message describing the error
+	 *
+	 * @return the exception
+	 */
+	public SAXParseException createException(String message)
+	{
+		return new SAXParseException(message, null, null, line,
+				getColumnNumber());
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads a start or end tag, whose opening '<' has already been read.
+	 */
+	private int readTag() throws IOException, SAXParseException
+	{
+		if (peek() == '/')
+		{
+			read();
+			name = readName();
+			skipWhitespace();
+			expect('>');
+			return END_ELEMENT;
+		}
+		else
+		{
+			name = readName();
+			readAttributes();
+
+			if (peek() == '/')
+			{
+				read();
+				pendingEnd = true;
+			}
+
+			expect('>');
+			return START_ELEMENT;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private void readDeclaration() throws IOException, SAXParseException
+	{
+		if (peek() == '-')
+		{
+			read();
+			expect('-');
+			skipPast("-->"); //$NON-NLS-1$
+		}
+		else if (peek() == '[')
+		{
+			for (int i = 0; i < CDATA_START.length(); i++)
+				expect(CDATA_START.charAt(i));
+
+			// The contents of the section are added to the text until the
+			// terminator is found, which is then removed again.
+			int start = textLength;
+
+			while (textLength - start < 3
+					|| text[textLength - 3] != ']'
+					|| text[textLength - 2] != ']'
+					|| text[textLength - 1] != '>')
+			{
+				appendText(readRequired());
+			}
+
+			textLength -= 3;
+		}
+		else
+		{
+			// A document type declaration; the logs don't use internal
+			// subsets, so it ends at the first '>'.
+			skipPast(">"); //$NON-NLS-1$
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private void readAttributes() throws IOException, SAXParseException
+	{
+		while (true)
+		{
+			skipWhitespace();
+
+			int ch = peek();
+
+			if (ch == '/' || ch == '>')
+				return;
+
+			String attributeName = readName();
+
+			skipWhitespace();
+			expect('=');
+			skipWhitespace();
+
+			char quote = readRequired();
+
+			if (quote != '"' && quote != '\'')
+				throw unexpected(quote);
+
+			int start = textLength;
+
+			while (true)
+			{
+				char valueChar = readRequired();
+
+				if (valueChar == quote)
+					break;
+				else if (valueChar == '&')
+					appendCodePoint(readReference());
+				else if (valueChar == '<')
+					throw unexpected(valueChar);
+				else if (valueChar == '\n' || valueChar == '\t')
+					appendText(' ');
+				else
+					appendText(valueChar);
+			}
+
+			attributes.add(attributeName,
+					new String(text, start, textLength - start));
+			textLength = start;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private String readName() throws IOException, SAXParseException
+	{
+		int length = 0;
+
+		while (true)
+		{
+			int ch = peek();
+
+			if (ch == -1)
+				throw createException(Messages.XmlPullReader_UnexpectedEndOfFile);
+
+			if (isWhitespace(ch) || ch == '/' || ch == '>' || ch == '='
+					|| ch == '<')
+				break;
+
+			if (length == nameBuffer.length)
+			{
+				char[] newBuffer = new char[length * 2];
+				System.arraycopy(nameBuffer, 0, newBuffer, 0, length);
+				nameBuffer = newBuffer;
+			}
+
+			nameBuffer[length++] = (char) read();
+		}
+
+		if (length == 0)
+			throw unexpected(readRequired());
+
+		return names.intern(nameBuffer, length);
+	}
+
+
+	// ----------------------------------------------------------
+	private int readReference() throws IOException, SAXParseException
+	{
+		int length = 0;
+		char ch;
+
+		while ((ch = readRequired()) != ';')
+		{
+			if (length == nameBuffer.length || isWhitespace(ch) || ch == '<')
+				throw unexpected(ch);
+
+			nameBuffer[length++] = ch;
+		}
+
+		String reference = new String(nameBuffer, 0, length);
+
+		if (reference.equals("lt")) //$NON-NLS-1$
+			return '<';
+		else if (reference.equals("gt")) //$NON-NLS-1$
+			return '>';
+		else if (reference.equals("amp")) //$NON-NLS-1$
+			return '&';
+		else if (reference.equals("quot")) //$NON-NLS-1$
+			return '"';
+		else if (reference.equals("apos")) //$NON-NLS-1$
+			return '\'';
+
+		try
+		{
+			if (reference.startsWith("#x")) //$NON-NLS-1$
+				return Integer.parseInt(reference.substring(2), 16);
+			else if (reference.startsWith("#")) //$NON-NLS-1$
+				return Integer.parseInt(reference.substring(1));
+		}
+		catch (NumberFormatException e)
+		{
+			// Reported below.
+		}
+
+		throw createException(MessageFormat.format(
+				Messages.XmlPullReader_UnknownEntity, reference));
+	}
+
+
+	// ----------------------------------------------------------
+	private void skipPast(String terminator)
+		throws IOException, SAXParseException
+	{
+		int length = terminator.length();
+		char[] window = new char[length];
+		int count = 0;
+
+		while (true)
+		{
+			System.arraycopy(window, 1, window, 0, length - 1);
+			window[length - 1] = readRequired();
+			count++;
+
+			if (count >= length
+					&& terminator.equals(new String(window)))
+				return;
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private void skipWhitespace() throws IOException
+	{
+		while (isWhitespace(peek()))
+			read();
+	}
+
+
+	// ----------------------------------------------------------
+	private void expect(char expected) throws IOException, SAXParseException
+	{
+		char ch = readRequired();
+
+		if (ch != expected)
+			throw unexpected(ch);
+	}
+
+
+	// ----------------------------------------------------------
+	private SAXParseException unexpected(char ch)
+	{
+		return createException(MessageFormat.format(
+				Messages.XmlPullReader_UnexpectedCharacter,
+				String.valueOf(ch)));
+	}
+
+
+	// ----------------------------------------------------------
+	private static boolean isWhitespace(int ch)
+	{
+		return ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t';
+	}
+
+
+	// ----------------------------------------------------------
+	private void appendText(char ch)
+	{
+		if (textLength == text.length)
+		{
+			char[] newText = new char[textLength * 2];
+			System.arraycopy(text, 0, newText, 0, textLength);
+			text = newText;
+		}
+
+		text[textLength++] = ch;
+	}
+
+
+	// ----------------------------------------------------------
+	private void appendCodePoint(int codePoint)
+	{
+		if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT)
+		{
+			char[] chars = Character.toChars(codePoint);
+			appendText(chars[0]);
+			appendText(chars[1]);
+		}
+		else
+		{
+			appendText((char) codePoint);
+		}
+	}
+
+
+	// ----------------------------------------------------------
+	private int peek() throws IOException
+	{
+		if (pos == limit)
+		{
+			limit = reader.read(input, 0, input.length);
+			pos = 0;
+
+			if (limit <= 0)
+			{
+				limit = 0;
+				return -1;
+			}
+		}
+
+		return input[pos];
+	}
+
+
+	// ----------------------------------------------------------
+	/**
+	 * Reads the next character, turning each line ending into a single
+	 * '\n'.
+	 */
+	private int read() throws IOException
+	{
+		int ch = peek();
+
+		if (ch == -1)
+			return -1;
+
+		pos++;
+
+		if (ch == '\r')
+		{
+			if (peek() == '\n')
+				pos++;
+
+			ch = '\n';
+		}
+
+		if (ch == '\n')
+		{
+			line++;
+			column = 0;
+		}
+		else
+		{
+			column++;
+		}
+
+		return ch;
+	}
+
+
+	// ----------------------------------------------------------
+	private char readRequired() throws IOException, SAXParseException
+	{
+		int ch = read();
+
+		if (ch == -1)
+			throw createException(Messages.XmlPullReader_UnexpectedEndOfFile);
+
+		return (char) ch;
+	}
+
+
+	//~ Nested classes ........................................................
+
+	// ----------------------------------------------------------
+	/**
+	 * A table of the names the reader has seen, which returns the same
+	 * String for every occurrence of a name without creating a new one to
+	 * look it up.
+	 */
+	private static class NameTable
+	{
+		// ----------------------------------------------------------
+		public String intern(char[] chars, int length)
+		{
+			int hash = 0;
+
+			for (int i = 0; i < length; i++)
+				hash = 31 * hash + chars[i];
+
+			int mask = table.length - 1;
+			int index = hash & mask;
+
+			while (table[index] != null)
+			{
+				if (matches(table[index], chars, length))
+					return table[index];
+
+				index = (index + 1) & mask;
+			}
+
+			String name = new String(chars, 0, length).intern();
+			table[index] = name;
+
+			if (++count * 4 > table.length * 3)
+				grow();
+
+			return name;
+		}
+
+
+		// ----------------------------------------------------------
+		private static boolean matches(String name, char[] chars, int length)
+		{
+			if (name.length() != length)
+				return false;
+
+			for (int i = 0; i < length; i++)
+			{
+				if (name.charAt(i) != chars[i])
+					return false;
+			}
+
+			return true;
+		}
+
+
+		// ----------------------------------------------------------
+		private void grow()
+		{
+			String[] oldTable = table;
+			table = new String[oldTable.length * 2];
+			int mask = table.length - 1;
+
+			for (String name : oldTable)
+			{
+				if (name == null)
+					continue;
+
+				// String.hashCode uses the same function as intern() above.
+				int index = name.hashCode() & mask;
+
+				while (table[index] != null)
+					index = (index + 1) & mask;
+
+				table[index] = name;
+			}
+		}
+
+
+		//~ Static/instance variables .........................................
+
+		private String[] table = new String[64];
+		private int count;
+	}
+
+
+	//~ Static/instance variables .............................................
+
+	/**
+	 * The event that starts an element.
+	 */
+	public static final int START_ELEMENT = 1;
+
+	/**
+	 * The event that ends an element. An empty element is reported as a
+	 * start event followed by an end event.
+	 */
+	public static final int END_ELEMENT = 2;
+
+	/**
+	 * The event that reports character data between markup.
+	 */
+	public static final int TEXT = 3;
+
+	/**
+	 * The event that reports the end of the document.
+	 */
+	public static final int END_DOCUMENT = 4;
+
+	private static final int INPUT_BUFFER_SIZE = 8192;
+	private static final int INITIAL_TEXT_SIZE = 256;
+	private static final int INITIAL_NAME_SIZE = 64;
+
+	private static final String CDATA_START = "[CDATA["; //$NON-NLS-1$
+
+	private Reader reader;
+	private char[] input;
+	private int pos;
+	private int limit;
+	private int line;
+	private int column;
+
+	private char[] text;
+	private int textLength;
+	private char[] nameBuffer;
+	private NameTable names;
+
+	private String name;
+	private AttributeList attributes;
+	private boolean pendingEnd;
+	private boolean tagPending;
+}
@@ -21,7 +21,7 @@
 
 package net.sf.webcat.eclipse.cxxtest.xml.common;
 
-import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFrame;
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
 import net.sf.webcat.eclipse.cxxtest.xml.ElementContext;
 
 import org.xml.sax.Attributes;
@@ -34,39 +34,14 @@ import org.xml.sax.Attributes;
  */
 public class StackFrameContext extends ElementContext
 {
-	public StackFrameContext(IStackFrameConsumer frameConsumer, Attributes attributes)
+	public StackFrameContext(IStackFrameConsumer frameConsumer,
+			CxxTestStackFramePool framePool, Attributes attributes)
 	{
-		String function = attributes.getValue(ATTR_FUNCTION); //$NON-NLS-1$
-		String file = null;
-		int lineNumber = 0;
-		
-		String fileLine = attributes.getValue(ATTR_LOCATION); //$NON-NLS-1$
-		if(fileLine != null)
-		{
-			int colonPos = fileLine.lastIndexOf(':');
-			
-			if(colonPos != -1)
-			{
-				file = fileLine.substring(0, colonPos);
-
-				try
-				{
-					lineNumber = Integer.parseInt(fileLine.substring(colonPos + 1));
-				}
-				catch(NumberFormatException e)
-				{
-					file = fileLine;
-					lineNumber = 0;
-				}
-			}
-			else
-			{
-				file = fileLine;
-			}
-		}
-			
-		CxxTestStackFrame frame = new CxxTestStackFrame(function, file, lineNumber);
-		frameConsumer.addStackFrame(frame);
+		// Repeated frames are shared, so the location is only split into
+		// the file and line number the first time a frame is seen.
+		frameConsumer.addStackFrame(framePool.getFrame(
+				attributes.getValue(ATTR_FUNCTION),
+				attributes.getValue(ATTR_LOCATION)));
 	}
 	
 	
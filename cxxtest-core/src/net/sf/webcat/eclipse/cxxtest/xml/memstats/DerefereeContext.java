@@ -21,6 +21,7 @@
 
 package net.sf.webcat.eclipse.cxxtest.xml.memstats;
 
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
 import net.sf.webcat.eclipse.cxxtest.internal.model.DerefereeSummary;
 import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeak;
 import net.sf.webcat.eclipse.cxxtest.xml.ElementContext;
@@ -64,6 +65,11 @@ public class DerefereeContext extends ElementContext
 	{
 		document.setSummary(info);
 	}
+
+	public CxxTestStackFramePool getStackFramePool()
+	{
+		return document.getStackFramePool();
+	}
 	
 	private int getAttrInt(Attributes attributes, String name)
 	{
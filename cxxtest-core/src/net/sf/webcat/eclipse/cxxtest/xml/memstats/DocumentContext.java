@@ -23,6 +23,7 @@ package net.sf.webcat.eclipse.cxxtest.xml.memstats;
 
 import java.util.Vector;
 
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
 import net.sf.webcat.eclipse.cxxtest.internal.model.DerefereeSummary;
 import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeak;
 import net.sf.webcat.eclipse.cxxtest.model.IDerefereeSummary;
@@ -43,10 +44,22 @@ public class DocumentContext extends ElementContext
 	private DerefereeSummary summary;
 
 	private int actualLeakCount;
+
+	private CxxTestStackFramePool framePool;
 	
 	public DocumentContext()
+	{
+		this(new CxxTestStackFramePool());
+	}
+
+	/**
+	 * Creates a document context whose stack frames are shared through the
+	 * specified pool, which can also be used by the other logs of the run.
+	 */
+	public DocumentContext(CxxTestStackFramePool framePool)
 	{
 		leaks = new Vector<IDerefereeLeak>();
+		this.framePool = framePool;
 	}
 
 	public ElementContext startElement(String uri, String localName,
@@ -85,6 +98,11 @@ public class DocumentContext extends ElementContext
 		actualLeakCount = value;
 	}
 
+	public CxxTestStackFramePool getStackFramePool()
+	{
+		return framePool;
+	}
+
 
 	private static final String TAG_DEREFEREE = "dereferee"; //$NON-NLS-1$
 }
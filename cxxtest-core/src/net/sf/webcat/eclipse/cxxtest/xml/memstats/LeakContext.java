@@ -21,6 +21,7 @@
 
 package net.sf.webcat.eclipse.cxxtest.xml.memstats;
 
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
 import net.sf.webcat.eclipse.cxxtest.internal.model.DerefereeLeak;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestStackFrame;
 import net.sf.webcat.eclipse.cxxtest.xml.ElementContext;
@@ -40,8 +41,11 @@ public class LeakContext extends ElementContext implements
 {
 	private DerefereeLeak leak;
 
+	private CxxTestStackFramePool framePool;
+
 	public LeakContext(DerefereeContext memStats, Attributes attributes)
 	{
+		framePool = memStats.getStackFramePool();
 		leak = new DerefereeLeak(attributes);
 		memStats.addLeak(leak);
 	}
@@ -50,7 +54,7 @@ public class LeakContext extends ElementContext implements
 			String qName, Attributes attributes)
 	{
 		if(TAG_STACK_FRAME.equals(localName))
-			return new StackFrameContext(this, attributes);
+			return new StackFrameContext(this, framePool, attributes);
 		else
 			return null;
 	}
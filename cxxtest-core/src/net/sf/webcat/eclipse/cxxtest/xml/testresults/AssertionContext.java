@@ -23,6 +23,7 @@ package net.sf.webcat.eclipse.cxxtest.xml.testresults;
 
 import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestAssertionFactory;
 import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestMethod;
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
 import net.sf.webcat.eclipse.cxxtest.internal.model.StackTraceAssertion;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestAssertion;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestStackFrame;
@@ -43,11 +44,15 @@ public class AssertionContext extends ElementContext implements
 {
 	private ICxxTestAssertion assertion;
 
-	private StringBuffer contents;
+	private StringBuilder contents;
 
-	public AssertionContext(CxxTestMethod test, String name, Attributes attributes)
+	private CxxTestStackFramePool framePool;
+
+	public AssertionContext(CxxTestMethod test, CxxTestStackFramePool framePool,
+			String name, Attributes attributes)
 	{
-		contents = new StringBuffer();
+		this.framePool = framePool;
+		contents = new StringBuilder();
 
 		assertion = CxxTestAssertionFactory.create(test, name, attributes);
 	}
@@ -55,7 +60,7 @@ public class AssertionContext extends ElementContext implements
 	public ElementContext startElement(String uri, String localName, String qName, Attributes attributes)
 	{
 		if(TAG_STACK_FRAME.equals(localName))
-			return new StackFrameContext(this, attributes);
+			return new StackFrameContext(this, framePool, attributes);
 		
 		return null;
 	}
@@ -71,9 +76,20 @@ public class AssertionContext extends ElementContext implements
 	
 	public void characters(char[] chars, int start, int length)
 	{
-		for(int i = start; i < start + length; i++)
-			if(chars[i] != '\r' && chars[i] != '\n')
-				contents.append(chars[i]);
+		// Append each run of characters between line breaks at once.
+		int end = start + length;
+		int runStart = start;
+
+		for(int i = start; i < end; i++)
+		{
+			if(chars[i] == '\r' || chars[i] == '\n')
+			{
+				contents.append(chars, runStart, i - runStart);
+				runStart = i + 1;
+			}
+		}
+
+		contents.append(chars, runStart, end - runStart);
 	}
 
 	public void addStackFrame(ICxxTestStackFrame frame)
@@ -23,6 +23,7 @@ package net.sf.webcat.eclipse.cxxtest.xml.testresults;
 
 import java.util.Vector;
 
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuite;
 import net.sf.webcat.eclipse.cxxtest.xml.ElementContext;
 
@@ -37,10 +38,22 @@ import org.xml.sax.Attributes;
 public class DocumentContext extends ElementContext
 {
 	private Vector<ICxxTestSuite> suites;
+
+	private CxxTestStackFramePool framePool;
 	
 	public DocumentContext()
+	{
+		this(new CxxTestStackFramePool());
+	}
+
+	/**
+	 * Creates a document context whose stack frames are shared through the
+	 * specified pool, which can also be used by the other logs of the run.
+	 */
+	public DocumentContext(CxxTestStackFramePool framePool)
 	{
 		suites = new Vector<ICxxTestSuite>();
+		this.framePool = framePool;
 	}
 
 	public ElementContext startElement(String uri, String localName,
@@ -61,6 +74,11 @@ public class DocumentContext extends ElementContext
 	{
 		return suites.toArray(new ICxxTestSuite[suites.size()]);
 	}
+
+	public CxxTestStackFramePool getStackFramePool()
+	{
+		return framePool;
+	}
 	
 	
 	private static final String TAG_WORLD = "world"; //$NON-NLS-1$
@@ -21,6 +21,7 @@
 
 package net.sf.webcat.eclipse.cxxtest.xml.testresults;
 
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
 import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestSuite;
 import net.sf.webcat.eclipse.cxxtest.xml.ElementContext;
 
@@ -36,8 +37,11 @@ public class SuiteContext extends ElementContext
 {
 	private CxxTestSuite suite;
 
+	private CxxTestStackFramePool framePool;
+
 	public SuiteContext(WorldContext world, Attributes attributes)
 	{
+		framePool = world.getStackFramePool();
 		suite = new CxxTestSuite(attributes);
 		world.addSuite(suite);
 	}
@@ -46,9 +50,11 @@ public class SuiteContext extends ElementContext
 			String qName, Attributes attributes)
 	{
 		if(TAG_SUITE_ERROR.equals(localName))
-			return new SuiteErrorContext(suite, attributes);
+			return new SuiteErrorContext(suite, framePool, attributes);
 		else if(TAG_TEST.equals(localName))
-			return new TestContext(suite, attributes);
+			return new TestContext(suite, framePool, attributes);
+		else if(TAG_TIMING.equals(localName))
+			return new TimingContext(suite, attributes);
 		else
 			return null;
 	}
@@ -57,4 +63,6 @@ public class SuiteContext extends ElementContext
 	private static final String TAG_SUITE_ERROR = "suite-error"; //$NON-NLS-1$
 
 	private static final String TAG_TEST = "test"; //$NON-NLS-1$
+
+	private static final String TAG_TIMING = "timing"; //$NON-NLS-1$
 }
@@ -21,6 +21,7 @@
 
 package net.sf.webcat.eclipse.cxxtest.xml.testresults;
 
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
 import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestSuite;
 import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestSuiteError;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestStackFrame;
@@ -41,11 +42,15 @@ public class SuiteErrorContext extends ElementContext
 {
 	private CxxTestSuiteError suiteError;
 
-	private StringBuffer contents;
+	private StringBuilder contents;
 
-	public SuiteErrorContext(CxxTestSuite suite, Attributes attributes)
+	private CxxTestStackFramePool framePool;
+
+	public SuiteErrorContext(CxxTestSuite suite,
+			CxxTestStackFramePool framePool, Attributes attributes)
 	{
-		contents = new StringBuffer();
+		this.framePool = framePool;
+		contents = new StringBuilder();
 		
 		suiteError = new CxxTestSuiteError(suite, attributes);
 	}
@@ -54,7 +59,7 @@ public class SuiteErrorContext extends ElementContext
 			String qName, Attributes attributes)
 	{
 		if(TAG_STACK_FRAME.equals(localName))
-			return new StackFrameContext(this, attributes);
+			return new StackFrameContext(this, framePool, attributes);
 		
 		return null;
 	}
@@ -66,9 +71,20 @@ public class SuiteErrorContext extends ElementContext
 	
 	public void characters(char[] chars, int start, int length)
 	{
-		for(int i = start; i < start + length; i++)
-			if(chars[i] != '\r' && chars[i] != '\n')
-				contents.append(chars[i]);
+		// Append each run of characters between line breaks at once.
+		int end = start + length;
+		int runStart = start;
+
+		for(int i = start; i < end; i++)
+		{
+			if(chars[i] == '\r' || chars[i] == '\n')
+			{
+				contents.append(chars, runStart, i - runStart);
+				runStart = i + 1;
+			}
+		}
+
+		contents.append(chars, runStart, end - runStart);
 	}
 
 	public void addStackFrame(ICxxTestStackFrame frame)
@@ -24,6 +24,7 @@ package net.sf.webcat.eclipse.cxxtest.xml.testresults;
 import org.xml.sax.Attributes;
 
 import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestMethod;
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
 import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestSuite;
 import net.sf.webcat.eclipse.cxxtest.xml.ElementContext;
 
@@ -37,13 +38,23 @@ public class TestContext extends ElementContext
 {
 	private CxxTestMethod test;
 
-	public TestContext(CxxTestSuite suite, Attributes attributes)
+	private CxxTestStackFramePool framePool;
+
+	public TestContext(CxxTestSuite suite, CxxTestStackFramePool framePool,
+			Attributes attributes)
 	{
+		this.framePool = framePool;
 		test = new CxxTestMethod(suite, attributes);
 	}
 	
 	public ElementContext startElement(String uri, String localName, String qName, Attributes attributes)
 	{
-		return new AssertionContext(test, localName, attributes);
+		if(TAG_TIMING.equals(localName))
+			return new TimingContext(test, attributes);
+		else
+			return new AssertionContext(test, framePool, localName, attributes);
 	}
+
+
+	private static final String TAG_TIMING = "timing"; //$NON-NLS-1$
 }
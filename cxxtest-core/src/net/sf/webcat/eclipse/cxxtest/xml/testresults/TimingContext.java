@@ -0,0 +1,61 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2006-2009 Virginia Tech 
+ |
+ |	This file is part of Web-CAT Eclipse Plugins.
+ |
+ |	Web-CAT is free software; you can redistribute it and/or modify
+ |	it under the terms of the GNU General Public License as published by
+ |	the Free Software Foundation; either version 2 of the License, or
+ |	(at your option) any later version.
+ |
+ |	Web-CAT is distributed in the hope that it will be useful,
+ |	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |	GNU General Public License for more details.
+ |
+ |	You should have received a copy of the GNU General Public License
+ |	along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package net.sf.webcat.eclipse.cxxtest.xml.testresults;
+
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestMethod;
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestSuite;
+import net.sf.webcat.eclipse.cxxtest.xml.ElementContext;
+
+import org.xml.sax.Attributes;
+
+/**
+ * Reads the wall-clock and processor time that a test or suite took to run,
+ * which the runner writes in microseconds as the last child of the test or
+ * suite element.
+ * 
+ * @author  Tony Allevato (Virginia Tech Computer Science)
+ * @author  latest changes by: $Author$
+ * @version $Revision$ $Date$
+ */
+public class TimingContext extends ElementContext
+{
+	public TimingContext(CxxTestMethod test, Attributes attributes)
+	{
+		test.setTimes(getAttrLong(attributes, ATTR_WALL_USEC),
+				getAttrLong(attributes, ATTR_CPU_USEC));
+	}
+
+	public TimingContext(CxxTestSuite suite, Attributes attributes)
+	{
+		suite.setTimes(getAttrLong(attributes, ATTR_WALL_USEC),
+				getAttrLong(attributes, ATTR_CPU_USEC));
+	}
+
+	private long getAttrLong(Attributes attributes, String name)
+	{
+		return Long.parseLong(attributes.getValue(name));
+	}
+
+
+	private static final String ATTR_WALL_USEC = "wall-usec"; //$NON-NLS-1$
+	private static final String ATTR_CPU_USEC = "cpu-usec"; //$NON-NLS-1$
+}
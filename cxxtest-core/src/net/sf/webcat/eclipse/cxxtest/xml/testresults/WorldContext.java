@@ -21,6 +21,7 @@
 
 package net.sf.webcat.eclipse.cxxtest.xml.testresults;
 
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
 import net.sf.webcat.eclipse.cxxtest.model.ICxxTestSuite;
 import net.sf.webcat.eclipse.cxxtest.xml.ElementContext;
 
@@ -60,6 +61,11 @@ public class WorldContext extends ElementContext
 		return document.getSuites();
 	}
 
+	public CxxTestStackFramePool getStackFramePool()
+	{
+		return document.getStackFramePool();
+	}
+
 
 	private static final String TAG_SUITE = "suite"; //$NON-NLS-1$
 }
@@ -0,0 +1,709 @@
+#ifndef __cxxtest__BinaryFormatter_h__
+#define __cxxtest__BinaryFormatter_h__
+
+//
+// The BinaryFormatter is a TestListener that writes the same report as the
+// XmlFormatter, but in a compact binary form that is much cheaper to write
+// and to read back when a run produces a large number of traces and
+// assertions. The report is the same tree of elements and attributes; it is
+// just encoded differently:
+//
+//   log       ::= header record*
+//   header    ::= 'C' 'X' 'T' 'B' version
+//   record    ::= START name count (name value){count}
+//               | TEXT string
+//               | END
+//   value     ::= INLINE string | REF ref | NUMBER varint
+//               | LOCATION ref varint
+//   string    ::= varint (byte){varint}
+//   ref       ::= varint [string]
+//
+// Numbers and lengths are unsigned variable-length integers, seven bits to a
+// byte with the low-order group first. Element names, attribute names, file
+// names and function names are written through a string table: a ref is the
+// index of a string in the table, and the string itself follows the index
+// the first time it is used (when the index is the size of the table). No
+// escaping is needed, since every string is prefixed by its length.
+//
+// A header may appear again later in the log, which starts a new table.
+// The logs written by separate runs can therefore be concatenated into one.
+//
+
+#include <cxxtest/TestRunner.h>
+#include <cxxtest/TestListener.h>
+#include <cxxtest/TestTracker.h>
+#include <cxxtest/ValueTraits.h>
+#include <cxxtest/Stopwatch.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+namespace CxxTest
+{
+    //----------------------------------------------------------------------
+    class BinaryFormatter : public TestListener
+    {
+    public:
+        // ------------------------------------------------------
+        BinaryFormatter( FILE *o, bool own = false ) :
+            _o(o), _own(own), _strings(0), _stringCount(0), _capacity(0)
+        {
+        }
+
+
+        // ------------------------------------------------------
+        virtual ~BinaryFormatter()
+        {
+            for ( unsigned i = 0; i < _capacity; ++ i )
+            {
+                if ( _strings[i].str )
+                    free( _strings[i].str );
+            }
+
+            free( _strings );
+
+            if ( _own && _o )
+                fclose( _o );
+        }
+
+
+        // ------------------------------------------------------
+        void enterWorld( const WorldDescription & /*desc*/ )
+        {
+            if ( !_o )
+                return;
+
+            fputs( "CXTB", _o );
+            putc( VERSION, _o );
+
+            startElement( "world", 0 );
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void enterSuite( const SuiteDescription& desc )
+        {
+            startElement( "suite", 3 );
+            attribute( "name", desc.suiteName() );
+            attributeRef( "file", desc.file() );
+            attribute( "line", desc.line() );
+            flush();
+
+            _suiteStopwatch.start();
+        }
+
+
+        // ------------------------------------------------------
+        void leaveSuite( const SuiteDescription & )
+        {
+            timing( _suiteStopwatch );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void enterTest( const TestDescription & desc )
+        {
+            startElement( "test", 2 );
+            attribute( "name", desc.testName() );
+            attribute( "line", desc.line() );
+            flush();
+
+            _testStopwatch.start();
+        }
+
+
+        // ------------------------------------------------------
+        void leaveTest( const TestDescription & )
+        {
+            timing( _testStopwatch );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void leaveWorld( const WorldDescription & )
+        {
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void trace( const char *file, unsigned line, const char *expression )
+        {
+            startElement( "trace", 2 );
+            attribute( "line", line );
+            attribute( "message", expression );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void suiteInitError( const char *file, unsigned line,
+                             const char *expression )
+        {
+            startElement( "suite-error", 2 );
+            attribute( "type", "init" );
+            attribute( "line", line );
+            text( expression );
+            walkLastBacktrace();
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void warning( const char *file, unsigned line,
+                      const char *expression )
+        {
+            startElement( "warning", 1 );
+            attribute( "line", line );
+            text( expression );
+            walkLastBacktrace();
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedTest( const char *file, unsigned line,
+                         const char *expression )
+        {
+            startElement( "failed-test", 1 );
+            attribute( "line", line );
+            text( expression );
+            walkLastBacktrace();
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedAssert( const char *file, unsigned line,
+                           const char *expression )
+        {
+            startAssertion( "failed-assert", line, 1 );
+            attribute( "expression", expression );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedAssertEquals( const char *file, unsigned line,
+                                 const char *xStr, const char *yStr,
+                                 const char *x, const char *y )
+        {
+            startAssertion( "failed-assert-eq", line, 4 );
+            attribute( "lhs-desc", xStr );
+            attribute( "lhs-value", x );
+            attribute( "rhs-desc", yStr );
+            attribute( "rhs-value", y );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedAssertSameData( const char *file, unsigned line,
+                                   const char *xStr, const char *yStr,
+                                   const char *sizeStr, const void *x,
+                                   const void *y, unsigned size )
+        {
+            startAssertion( "failed-assert-same-data", line, 6 );
+            attribute( "lhs-desc", xStr );
+            attributeBinary( "lhs-value", x, size );
+            attribute( "rhs-desc", yStr );
+            attributeBinary( "rhs-value", y, size );
+            attribute( "size-desc", sizeStr );
+            attribute( "size-value", size );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedAssertDelta( const char *file, unsigned line,
+                                const char *xStr, const char *yStr,
+                                const char *dStr, const char *x,
+                                const char *y, const char *d )
+        {
+            startAssertion( "failed-assert-delta", line, 6 );
+            attribute( "lhs-desc", xStr );
+            attribute( "lhs-value", x );
+            attribute( "rhs-desc", yStr );
+            attribute( "rhs-value", y );
+            attribute( "delta-desc", dStr );
+            attribute( "delta-value", d );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedAssertDiffers( const char *file, unsigned line,
+                                  const char *xStr, const char *yStr,
+                                  const char *value )
+        {
+            startAssertion( "failed-assert-ne", line, 3 );
+            attribute( "lhs-desc", xStr );
+            attribute( "rhs-desc", yStr );
+            attribute( "value", value );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedAssertLessThan( const char *file, unsigned line,
+                                   const char *xStr, const char *yStr,
+                                   const char *x, const char *y )
+        {
+            startAssertion( "failed-assert-lt", line, 4 );
+            attribute( "lhs-desc", xStr );
+            attribute( "lhs-value", x );
+            attribute( "rhs-desc", yStr );
+            attribute( "rhs-value", y );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedAssertLessThanEquals( const char *file, unsigned line,
+                                         const char *xStr, const char *yStr,
+                                         const char *x, const char *y )
+        {
+            startAssertion( "failed-assert-le", line, 4 );
+            attribute( "lhs-desc", xStr );
+            attribute( "lhs-value", x );
+            attribute( "rhs-desc", yStr );
+            attribute( "rhs-value", y );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedAssertRelation( const char *file, unsigned line,
+                                   const char *relation, const char *xStr,
+                                   const char *yStr, const char *x,
+                                   const char *y )
+        {
+            startAssertion( "failed-assert-relation", line, 5 );
+            attribute( "relation", relation );
+            attribute( "lhs-desc", xStr );
+            attribute( "lhs-value", x );
+            attribute( "rhs-desc", yStr );
+            attribute( "rhs-value", y );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedAssertPredicate( const char *file, unsigned line,
+                                    const char *predicate, const char *xStr,
+                                    const char *x )
+        {
+            startAssertion( "failed-assert-predicate", line, 3 );
+            attribute( "predicate", predicate );
+            attribute( "arg-desc", xStr );
+            attribute( "arg-value", x );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedAssertThrows( const char *file, unsigned line,
+                                 const char *expression, const char *type,
+                                 bool otherThrown )
+        {
+            startAssertion( "failed-assert-throws", line, 3 );
+            attribute( "expression", expression );
+            attribute( "type", type );
+            attribute( "threw", otherThrown ? "other" : "none" );
+            endElement();
+            flush();
+        }
+
+
+        // ------------------------------------------------------
+        void failedAssertThrowsNot( const char *file, unsigned line,
+                                    const char *expression )
+        {
+            startAssertion( "failed-assert-nothrow", line, 1 );
+            attribute( "expression", expression );
+            endElement();
+            flush();
+        }
+
+
+    protected:
+        // ------------------------------------------------------
+        FILE* outputFile() const
+        {
+            return _o;
+        }
+
+
+    private:
+        // ------------------------------------------------------
+        BinaryFormatter( const BinaryFormatter& );
+
+
+        // ------------------------------------------------------
+        BinaryFormatter& operator=( const BinaryFormatter& );
+
+
+        // ------------------------------------------------------
+        enum
+        {
+            VERSION = 1,
+
+            RECORD_START = 1,
+            RECORD_TEXT = 2,
+            RECORD_END = 3,
+
+            VALUE_INLINE = 0,
+            VALUE_REF = 1,
+            VALUE_NUMBER = 2,
+            VALUE_LOCATION = 3
+        };
+
+
+        // ------------------------------------------------------
+        struct TableEntry
+        {
+            char *str;
+            unsigned hash;
+            unsigned index;
+        };
+
+
+        // ------------------------------------------------------
+        void flush()
+        {
+            if ( _o )
+                fflush( _o );
+        }
+
+
+        // ------------------------------------------------------
+        void startElement( const char *name, unsigned attributeCount )
+        {
+            if ( !_o )
+                return;
+
+            putc( RECORD_START, _o );
+            writeRef( name );
+            writeNumber( attributeCount );
+        }
+
+
+        // ------------------------------------------------------
+        // Assertions carry their line number as an extra attribute, as in
+        // the XML report.
+        void startAssertion( const char *name, unsigned line,
+                             unsigned attributeCount )
+        {
+            startElement( name, attributeCount + 1 );
+            attribute( "line", line );
+        }
+
+
+        // ------------------------------------------------------
+        void endElement()
+        {
+            if ( _o )
+                putc( RECORD_END, _o );
+        }
+
+
+        // ------------------------------------------------------
+        void text( const char *value )
+        {
+            if ( !_o )
+                return;
+
+            putc( RECORD_TEXT, _o );
+            writeString( value );
+        }
+
+
+        // ------------------------------------------------------
+        void attribute( const char *name, const char *value )
+        {
+            if ( !_o )
+                return;
+
+            writeRef( name );
+            putc( VALUE_INLINE, _o );
+            writeString( value );
+        }
+
+
+        // ------------------------------------------------------
+        void attribute( const char *name, unsigned value )
+        {
+            if ( !_o )
+                return;
+
+            writeRef( name );
+            putc( VALUE_NUMBER, _o );
+            writeNumber( value );
+        }
+
+
+        // ------------------------------------------------------
+        void attributeRef( const char *name, const char *value )
+        {
+            if ( !_o )
+                return;
+
+            writeRef( name );
+            putc( VALUE_REF, _o );
+            writeRef( value );
+        }
+
+
+        // ------------------------------------------------------
+        void attributeLocation( const char *name, const char *file,
+                                unsigned line )
+        {
+            if ( !_o )
+                return;
+
+            writeRef( name );
+            putc( VALUE_LOCATION, _o );
+            writeRef( file );
+            writeNumber( line );
+        }
+
+
+        // ------------------------------------------------------
+        void attributeBinary( const char *name, const void *value,
+                              unsigned size )
+        {
+            if ( !_o )
+                return;
+
+            writeRef( name );
+            putc( VALUE_INLINE, _o );
+
+            if ( !value )
+            {
+                writeString( "(null)" );
+                return;
+            }
+
+            unsigned dumpSize = size;
+            if ( maxDumpSize() && dumpSize > maxDumpSize() )
+            {
+                dumpSize = maxDumpSize();
+            }
+
+            // Each byte is written as two hex digits and a space, followed
+            // by an ellipsis if the dump was cut short.
+            writeNumber( dumpSize * 3 + ( dumpSize < size ? 4 : 0 ) );
+
+            const unsigned char *p = (const unsigned char *)value;
+            for ( unsigned i = 0; i < dumpSize; ++ i )
+            {
+                fputs( byteToHex( *p++ ), _o );
+                putc( ' ', _o );
+            }
+
+            if ( dumpSize < size )
+            {
+                fputs( "... ", _o );
+            }
+        }
+
+
+        // ------------------------------------------------------
+        // Writes the wall-clock and processor time, in microseconds, that
+        // the current test or suite took to run.
+        void timing( const Stopwatch& stopwatch )
+        {
+            unsigned wall = stopwatch.wallElapsed();
+            unsigned cpu = stopwatch.cpuElapsed();
+
+            startElement( "timing", 2 );
+            attribute( "wall-usec", wall );
+            attribute( "cpu-usec", cpu );
+            endElement();
+        }
+
+
+        // ------------------------------------------------------
+        bool visitBacktraceFrame(int index, void* frame, const char* function,
+                                 const char* filename, int lineNumber)
+        {
+            startElement( "stack-frame", lineNumber ? 2 : 1 );
+            attributeRef( "function", function );
+
+            if(lineNumber)
+            {
+                attributeLocation( "location", filename, lineNumber );
+            }
+
+            endElement();
+
+            if (strcmp(function, "main") == 0 ||
+                strstr(function, "CxxTestMain") == function)
+            {
+                return false;
+            }
+            else
+            {
+                return true;
+            }
+        }
+
+
+        // ------------------------------------------------------
+        void writeNumber( unsigned value )
+        {
+            while ( value >= 0x80 )
+            {
+                putc( (int)( ( value & 0x7F ) | 0x80 ), _o );
+                value >>= 7;
+            }
+
+            putc( (int)value, _o );
+        }
+
+
+        // ------------------------------------------------------
+        void writeString( const char *value )
+        {
+            if ( !value )
+                value = "";
+
+            unsigned length = (unsigned)strlen( value );
+            writeNumber( length );
+            fwrite( value, 1, length, _o );
+        }
+
+
+        // ------------------------------------------------------
+        // Writes the index of a string in the string table, adding the
+        // string to the table (and writing it out after its index) if it
+        // hasn't been seen before.
+        void writeRef( const char *value )
+        {
+            if ( !value )
+                value = "";
+
+            unsigned hash = hashString( value );
+
+            if ( _capacity )
+            {
+                unsigned slot = hash & ( _capacity - 1 );
+
+                while ( _strings[slot].str )
+                {
+                    if ( _strings[slot].hash == hash &&
+                         strcmp( _strings[slot].str, value ) == 0 )
+                    {
+                        writeNumber( _strings[slot].index );
+                        return;
+                    }
+
+                    slot = ( slot + 1 ) & ( _capacity - 1 );
+                }
+            }
+
+            unsigned index = _stringCount;
+            addString( value, hash );
+
+            writeNumber( index );
+            writeString( value );
+        }
+
+
+        // ------------------------------------------------------
+        void addString( const char *value, unsigned hash )
+        {
+            if ( ( _stringCount + 1 ) * 4 > _capacity * 3 )
+            {
+                growTable();
+            }
+
+            unsigned slot = hash & ( _capacity - 1 );
+
+            while ( _strings[slot].str )
+            {
+                slot = ( slot + 1 ) & ( _capacity - 1 );
+            }
+
+            unsigned length = (unsigned)strlen( value );
+            _strings[slot].str = (char *)malloc( length + 1 );
+            memcpy( _strings[slot].str, value, length + 1 );
+            _strings[slot].hash = hash;
+            _strings[slot].index = _stringCount++;
+        }
+
+
+        // ------------------------------------------------------
+        void growTable()
+        {
+            unsigned oldCapacity = _capacity;
+            TableEntry *oldStrings = _strings;
+
+            _capacity = oldCapacity ? oldCapacity * 2 : 64;
+            _strings = (TableEntry *)calloc( _capacity, sizeof(TableEntry) );
+
+            for ( unsigned i = 0; i < oldCapacity; ++ i )
+            {
+                if ( !oldStrings[i].str )
+                    continue;
+
+                unsigned slot = oldStrings[i].hash & ( _capacity - 1 );
+
+                while ( _strings[slot].str )
+                {
+                    slot = ( slot + 1 ) & ( _capacity - 1 );
+                }
+
+                _strings[slot] = oldStrings[i];
+            }
+
+            free( oldStrings );
+        }
+
+
+        // ------------------------------------------------------
+        static unsigned hashString( const char *value )
+        {
+            unsigned hash = 5381;
+
+            while ( *value )
+            {
+                hash = hash * 33 + (unsigned char)*value++;
+            }
+
+            return hash;
+        }
+
+
+        //~ Static/instance variables ........................................
+
+        FILE *_o;
+        bool _own;
+        TableEntry *_strings;
+        unsigned _stringCount;
+        unsigned _capacity;
+        Stopwatch _suiteStopwatch;
+        Stopwatch _testStopwatch;
+    };
+};
+
+#endif // __cxxtest__BinaryFormatter_h__
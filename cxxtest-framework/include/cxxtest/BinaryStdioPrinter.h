@@ -0,0 +1,44 @@
+#ifndef __cxxtest__BinaryStdioPrinter_h__
+#define __cxxtest__BinaryStdioPrinter_h__
+
+//
+// The BinaryStdioPrinter is a BinaryFormatter that writes to ".cxxtest.bin",
+// or to the file named by the CXXTEST_BINARY_RESULTS_FILE environment
+// variable when the runner is split into shards.
+//
+
+#include <cxxtest/BinaryFormatter.h>
+#include <stdio.h>
+#include <stdlib.h>
+
+namespace CxxTest
+{
+    //----------------------------------------------------------------------
+    class BinaryStdioPrinter : public BinaryFormatter
+    {
+    public:
+        // ------------------------------------------------------
+        BinaryStdioPrinter() :
+            BinaryFormatter( fopen(resultsFileName(), "wb"), true )
+        {
+        }
+
+
+        // ------------------------------------------------------
+        BinaryStdioPrinter(FILE* file) :
+            BinaryFormatter( file )
+        {
+        }
+
+
+    private:
+        // ------------------------------------------------------
+        static const char* resultsFileName()
+        {
+            const char* name = getenv("CXXTEST_BINARY_RESULTS_FILE");
+            return (name && *name) ? name : ".cxxtest.bin";
+        }
+    };
+}
+
+#endif // __cxxtest__BinaryStdioPrinter_h__
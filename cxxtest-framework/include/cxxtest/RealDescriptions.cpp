@@ -335,6 +335,226 @@ namespace CxxTest
         }
         return false;
     }
+
+    //
+    // Returns true if the name is one of the names in a comma-separated list.
+    //
+    static bool nameInList( const char *name, const char *list )
+    {
+        while ( *list ) {
+            const char *n = name;
+            while ( *n && *list == *n ) {
+                ++ n;
+                ++ list;
+            }
+            if ( !*n && ( !*list || *list == ',' ) )
+                return true;
+            while ( *list && *list != ',' )
+                ++ list;
+            if ( *list == ',' )
+                ++ list;
+        }
+        return false;
+    }
+
+    //
+    // Deactivates every suite whose name is not in the comma-separated list
+    // of suite names, so that a single test runner can be split into shards
+    // that each run a disjoint subset of the suites. A null list leaves all
+    // of the suites active. Returns true if any suite is still active.
+    //
+    bool RealWorldDescription::leaveOnlySuites( const char *suiteNames )
+    {
+        if ( !suiteNames )
+            return true;
+
+        bool found = false;
+        for ( SuiteDescription *sd = firstSuite(); sd != 0; sd = sd->next() ) {
+            if ( nameInList( sd->suiteName(), suiteNames ) )
+                found = true;
+            else
+                sd->setActive( false );
+        }
+        return found;
+    }
+
+    //
+    // Returns true if the text matches the part of a wildcard pattern that
+    // ends at patternEnd. A '*' matches any sequence of characters and a '?'
+    // matches any single character.
+    //
+    static bool wildcardMatch( const char *pattern, const char *patternEnd, const char *text )
+    {
+        if ( pattern == patternEnd )
+            return !*text;
+        if ( *pattern == '*' )
+            return wildcardMatch( pattern + 1, patternEnd, text ) ||
+                ( *text && wildcardMatch( pattern, patternEnd, text + 1 ) );
+        if ( !*text )
+            return false;
+        if ( *pattern == '?' || *pattern == *text )
+            return wildcardMatch( pattern + 1, patternEnd, text + 1 );
+        return false;
+    }
+
+    //
+    // Returns the end of the pattern that starts a comma-separated list.
+    //
+    static const char *patternEnd( const char *pattern )
+    {
+        while ( *pattern && *pattern != ',' )
+            ++ pattern;
+        return pattern;
+    }
+
+    //
+    // Returns the "::" that separates the suite and test parts of a pattern,
+    // or the end of the pattern if it has no test part.
+    //
+    static const char *patternSeparator( const char *pattern, const char *end )
+    {
+        const char *separator = pattern;
+        while ( separator + 1 < end && !( separator[0] == ':' && separator[1] == ':' ) )
+            ++ separator;
+        return ( separator + 1 < end ) ? separator : end;
+    }
+
+    //
+    // Returns true if a test matches a pattern, which is either "Suite", which
+    // matches every test in the matching suites, or "Suite::test".
+    //
+    static bool testMatches( const char *suiteName, const char *testName, const char *pattern, const char *end )
+    {
+        const char *separator = patternSeparator( pattern, end );
+        if ( separator == end )
+            return wildcardMatch( pattern, end, suiteName );
+        return wildcardMatch( pattern, separator, suiteName ) &&
+            wildcardMatch( separator + 2, end, testName );
+    }
+
+    //
+    // Returns true if a test matches any of the patterns in a comma-separated
+    // list.
+    //
+    static bool testInPatternList( const char *suiteName, const char *testName, const char *list )
+    {
+        while ( *list ) {
+            const char *end = patternEnd( list );
+            if ( testMatches( suiteName, testName, list, end ) )
+                return true;
+            list = *end ? end + 1 : end;
+        }
+        return false;
+    }
+
+    static bool hasPrefix( const char *str, const char *prefix )
+    {
+        while ( *prefix )
+            if ( *str ++ != *prefix ++ )
+                return false;
+        return true;
+    }
+
+    //
+    // Deactivates every test that doesn't match one of the include patterns
+    // or that matches one of the exclude patterns (see testInPatternList for
+    // the form of the patterns), and every suite left with no active tests.
+    // A null list of patterns is ignored; an empty list of include patterns
+    // matches nothing. Calling this more than once narrows the selection
+    // further, so that the test runner can select tests at run time instead
+    // of being regenerated and recompiled.
+    //
+    void RealWorldDescription::filterTests( const char *includes, const char *excludes )
+    {
+        if ( !includes && !excludes )
+            return;
+
+        for ( SuiteDescription *sd = firstSuite(); sd != 0; sd = sd->next() ) {
+            bool hasTests = false;
+            bool anyActive = false;
+
+            for ( TestDescription *td = sd->firstTest(); td != 0; td = td->next() ) {
+                hasTests = true;
+                if ( ( !includes || testInPatternList( sd->suiteName(), td->testName(), includes ) ) &&
+                     ( !excludes || !testInPatternList( sd->suiteName(), td->testName(), excludes ) ) )
+                    anyActive = true;
+                else
+                    td->setActive( false );
+            }
+
+            if ( !hasTests )
+                anyActive = ( !includes || testInPatternList( sd->suiteName(), "", includes ) );
+
+            if ( !anyActive )
+                sd->setActive( false );
+        }
+    }
+
+    //
+    // Moves the links in a list that match each pattern in a comma-separated
+    // list to the front, in the order of the patterns; links that match none
+    // of the patterns follow in their original order. The suite part of a
+    // pattern is matched against suites, and the whole pattern against tests.
+    //
+    static void orderList( List &list, const char *order, bool suites )
+    {
+        List ordered;
+        ordered.initialize();
+
+        while ( *order ) {
+            const char *end = patternEnd( order );
+
+            for ( Link *l = list._head; l != 0; ) {
+                Link *next = l->justNext();
+                bool matches;
+
+                if ( suites ) {
+                    const SuiteDescription *sd = (const SuiteDescription *)l;
+                    matches = wildcardMatch( order, patternSeparator( order, end ), sd->suiteName() );
+                }
+                else {
+                    const TestDescription *td = (const TestDescription *)l;
+                    matches = testMatches( td->suiteName(), td->testName(), order, end );
+                }
+
+                if ( matches ) {
+                    l->detach( list );
+                    l->attach( ordered );
+                }
+                l = next;
+            }
+
+            order = *end ? end + 1 : end;
+        }
+
+        for ( Link *l = list._head; l != 0; ) {
+            Link *next = l->justNext();
+            l->detach( list );
+            l->attach( ordered );
+            l = next;
+        }
+
+        list = ordered;
+    }
+
+    //
+    // Reorders the suites, and the tests within each suite, so that those
+    // matching the patterns in a comma-separated list (see testMatches for
+    // the form of the patterns) run first, in the order of the patterns.
+    // This lets the plug-in run the tests that failed recently before the
+    // rest, so that a regression is reported as early as possible. A null
+    // list leaves the order unchanged.
+    //
+    void RealWorldDescription::orderTests( const char *order )
+    {
+        if ( !order )
+            return;
+
+        orderList( suites(), order, true );
+
+        for ( Link *l = suites()._head; l != 0; l = l->justNext() )
+            orderList( *((RealSuiteDescription *)l)->_tests, order, false );
+    }
         
     bool RealWorldDescription::setUp()
     {
@@ -416,6 +636,38 @@ namespace CxxTest
     {
         return RealWorldDescription().leaveOnly( suiteName, testName );
     }
+
+    bool leaveOnlySuites( const char *suiteNames )
+    {
+        return RealWorldDescription().leaveOnlySuites( suiteNames );
+    }
+
+    void filterTests( const char *includes, const char *excludes )
+    {
+        RealWorldDescription().filterTests( includes, excludes );
+    }
+
+    void orderTests( const char *order )
+    {
+        RealWorldDescription().orderTests( order );
+    }
+
+    //
+    // Applies the "--include=PATTERNS" and "--exclude=PATTERNS" arguments on
+    // the test runner's command line.
+    //
+    void filterTests( int argc, char *argv[] )
+    {
+        static const char INCLUDE[] = "--include=";
+        static const char EXCLUDE[] = "--exclude=";
+
+        for ( int i = 1; i < argc; ++ i ) {
+            if ( hasPrefix( argv[i], INCLUDE ) )
+                filterTests( argv[i] + sizeof( INCLUDE ) - 1, 0 );
+            else if ( hasPrefix( argv[i], EXCLUDE ) )
+                filterTests( 0, argv[i] + sizeof( EXCLUDE ) - 1 );
+        }
+    }
 }
 
 #endif // __cxxtest__RealDescriptions_cpp__
@@ -230,6 +230,9 @@ namespace CxxTest
         const SuiteDescription &suiteDescription( unsigned i ) const;
         void activateAllTests();
         bool leaveOnly( const char *suiteName, const char *testName = 0 );
+        bool leaveOnlySuites( const char *suiteNames );
+        void filterTests( const char *includes, const char *excludes );
+        void orderTests( const char *order );
         
         bool setUp();
         bool tearDown();
@@ -238,6 +241,10 @@ namespace CxxTest
 
     void activateAllTests();
     bool leaveOnly( const char *suiteName, const char *testName = 0 );
+    bool leaveOnlySuites( const char *suiteNames );
+    void filterTests( const char *includes, const char *excludes );
+    void filterTests( int argc, char *argv[] );
+    void orderTests( const char *order );
 }
 
 #endif // __cxxtest__RealDescriptions_h__
@@ -0,0 +1,114 @@
+#ifndef __cxxtest__Stopwatch_h__
+#define __cxxtest__Stopwatch_h__
+
+//
+// A Stopwatch measures the wall-clock time and the processor time that have
+// elapsed since it was started, in microseconds. The times are kept in
+// unsigned integers, so they wrap around after about 71 minutes; the
+// elapsed times are still correct as long as the interval is shorter.
+//
+
+#if defined(_WIN32)
+#   include <windows.h>
+#else
+#   include <sys/time.h>
+#   include <sys/resource.h>
+#endif
+
+namespace CxxTest 
+{
+    //----------------------------------------------------------------------
+    class Stopwatch
+    {
+    public:
+        // ------------------------------------------------------
+        Stopwatch()
+        {
+            start();
+        }
+
+
+        // ------------------------------------------------------
+        void start()
+        {
+            _wallStart = wallTime();
+            _cpuStart = cpuTime();
+        }
+
+
+        // ------------------------------------------------------
+        unsigned wallElapsed() const
+        {
+            return wallTime() - _wallStart;
+        }
+
+
+        // ------------------------------------------------------
+        unsigned cpuElapsed() const
+        {
+            return cpuTime() - _cpuStart;
+        }
+
+
+    private:
+#if defined(_WIN32)
+        // ------------------------------------------------------
+        static unsigned wallTime()
+        {
+            LARGE_INTEGER frequency, counter;
+            if ( !QueryPerformanceFrequency( &frequency ) ||
+                 !QueryPerformanceCounter( &counter ) )
+                return (unsigned)GetTickCount() * 1000u;
+
+            return (unsigned)( counter.QuadPart / frequency.QuadPart ) * 1000000u +
+                (unsigned)( ( counter.QuadPart % frequency.QuadPart ) * 1000000 /
+                            frequency.QuadPart );
+        }
+
+
+        // ------------------------------------------------------
+        static unsigned cpuTime()
+        {
+            // The process times are reported in 100-nanosecond units.
+            FILETIME creation, exit, kernel, user;
+            if ( !GetProcessTimes( GetCurrentProcess(), &creation, &exit,
+                                   &kernel, &user ) )
+                return 0;
+
+            ULARGE_INTEGER k, u;
+            k.LowPart = kernel.dwLowDateTime;
+            k.HighPart = kernel.dwHighDateTime;
+            u.LowPart = user.dwLowDateTime;
+            u.HighPart = user.dwHighDateTime;
+            return (unsigned)( ( k.QuadPart + u.QuadPart ) / 10 );
+        }
+#else
+        // ------------------------------------------------------
+        static unsigned wallTime()
+        {
+            struct timeval now;
+            gettimeofday( &now, 0 );
+            return (unsigned)now.tv_sec * 1000000u + (unsigned)now.tv_usec;
+        }
+
+
+        // ------------------------------------------------------
+        static unsigned cpuTime()
+        {
+            struct rusage usage;
+            if ( getrusage( RUSAGE_SELF, &usage ) != 0 )
+                return 0;
+
+            return (unsigned)usage.ru_utime.tv_sec * 1000000u +
+                (unsigned)usage.ru_utime.tv_usec +
+                (unsigned)usage.ru_stime.tv_sec * 1000000u +
+                (unsigned)usage.ru_stime.tv_usec;
+        }
+#endif
+
+        unsigned _wallStart;
+        unsigned _cpuStart;
+    };
+}
+
+#endif // __cxxtest__Stopwatch_h__
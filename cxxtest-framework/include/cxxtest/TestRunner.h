@@ -53,7 +53,7 @@ namespace CxxTest
             
             tracker().enterWorld( wd );
             if ( wd.setUp() ) {
-                for ( SuiteDescription *sd = wd.firstSuite(); sd; sd = sd->next() )
+                for ( SuiteDescription *sd = wd.firstSuite(); sd && !stopping(); sd = sd->next() )
                     if ( sd->active() )
                         runSuite( *sd );
             
@@ -85,7 +85,7 @@ namespace CxxTest
             }
 
             if ( sd.setUp() ) {
-                for ( TestDescription *td = sd.firstTest(); td; td = td->next() )
+                for ( TestDescription *td = sd.firstTest(); td && !stopping(); td = td->next() )
                     if ( td->active() )
                         runTest( *td );
 
@@ -95,6 +95,15 @@ namespace CxxTest
             tracker().leaveSuite( sd );
         }
 
+        //
+        // Returns true if the remaining tests should be skipped because
+        // the run should stop after the first failed test.
+        //
+        static bool stopping()
+        {
+            return stopOnFailure() && tracker().failedTests() > 0;
+        }
+
         void runTest( TestDescription &td )
         {
             StateGuard sg;
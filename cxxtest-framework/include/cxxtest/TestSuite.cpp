@@ -50,6 +50,21 @@ namespace CxxTest
         currentMaxDumpSize = value;
     }
 
+    //
+    // Stopping the run after the first failed test
+    //
+    static bool currentStopOnFailure = false;
+
+    bool stopOnFailure()
+    {
+        return currentStopOnFailure;
+    }
+
+    void setStopOnFailure( bool value )
+    {
+        currentStopOnFailure = value;
+    }
+
     //
     // Some non-template functions
     //
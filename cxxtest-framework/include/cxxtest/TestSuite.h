@@ -36,6 +36,9 @@ namespace CxxTest
     unsigned maxDumpSize();
     void setMaxDumpSize( unsigned value = CXXTEST_MAX_DUMP_SIZE );
 
+    bool stopOnFailure();
+    void setStopOnFailure( bool value = true );
+
     void doTrace( const char *file, unsigned line, const char *message );
     void doWarn( const char *file, unsigned line, const char *message );
     void doFailTest( const char *file, unsigned line, const char *message );
@@ -14,6 +14,7 @@
 #include <cxxtest/ValueTraits.h>
 #include <cxxtest/SafeString.h>
 #include <cxxtest/OutputStream.h>
+#include <cxxtest/Stopwatch.h>
 
 namespace CxxTest
 {
@@ -63,12 +64,15 @@ namespace CxxTest
             (*_o) << "line=\"" << desc.line() << "\" ";
             (*_o) << ">"<< endl;
             _o->flush();
+
+            _suiteStopwatch.start();
         }
 
 
         // ------------------------------------------------------
         void leaveSuite( const SuiteDescription & )
         {
+            timing( "        ", _suiteStopwatch );
             (*_o) << "    </suite>" << endl;
             _o->flush();
         }
@@ -82,12 +86,15 @@ namespace CxxTest
             (*_o) << "line=\"" << desc.line() << "\" ";
             (*_o) << ">" << endl;
             _o->flush();
+
+            _testStopwatch.start();
         }
 
 
         // ------------------------------------------------------
         void leaveTest( const TestDescription & )
         {
+            timing( "            ", _testStopwatch );
             (*_o) << "        </test>" << endl;
             _o->flush();
         }
@@ -380,6 +387,21 @@ namespace CxxTest
         }
 
 
+        // ------------------------------------------------------
+        // Writes the wall-clock and processor time, in microseconds, that
+        // the current test or suite took to run.
+        void timing( const char* indent, const Stopwatch& stopwatch )
+        {
+            unsigned wall = stopwatch.wallElapsed();
+            unsigned cpu = stopwatch.cpuElapsed();
+
+            (*_o) << indent << "<timing ";
+            attribute( "wall-usec", wall );
+            attribute( "cpu-usec", cpu );
+            endTag();
+        }
+
+
         // ------------------------------------------------------
         OutputStream& endTag()
         {
@@ -469,6 +491,8 @@ namespace CxxTest
         //~ Static/instance variables ........................................
 
         OutputStream *_o;
+        Stopwatch _suiteStopwatch;
+        Stopwatch _testStopwatch;
     };
 };
 
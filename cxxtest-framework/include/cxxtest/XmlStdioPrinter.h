@@ -4,10 +4,15 @@
 //
 // The XmlStdioPrinter is an XmlFormatter which defaults to stdout.
 //
+// When the runner is split into shards, each shard writes its results to
+// the file named by the CXXTEST_RESULTS_FILE environment variable instead of
+// the default ".cxxtest.log".
+//
 
 #include <cxxtest/XmlFormatter.h>
 #include <cxxtest/OutputStream.h>
 #include <stdio.h>
+#include <stdlib.h>
 
 namespace CxxTest 
 {
@@ -18,7 +23,7 @@ namespace CxxTest
         // ------------------------------------------------------
         XmlStdioPrinter() :
             XmlFormatter( new FileOutputStream(
-                fopen(".cxxtest.log", "w"), true ))
+                fopen(resultsFileName(), "w"), true ))
         {
         }
         
@@ -35,6 +40,15 @@ namespace CxxTest
         {
             delete outputStream();
         }
+
+
+    private:
+        // ------------------------------------------------------
+        static const char* resultsFileName()
+        {
+            const char* name = getenv("CXXTEST_RESULTS_FILE");
+            return (name && *name) ? name : ".cxxtest.log";
+        }
     };
 }
 
@@ -159,8 +159,14 @@ public:
 cxxtest_xml_listener::cxxtest_xml_listener(
 	const Dereferee::option* options, Dereferee::platform* platform)
 {
-	// Initialize defaults.
-	memory_log = fopen(".dereferee.log", "w");
+	// Initialize defaults. When the test runner is split into shards, each
+	// shard writes its report to the file named by the
+	// DEREFEREE_RESULTS_FILE environment variable.
+	const char* log_name = getenv("DEREFEREE_RESULTS_FILE");
+	if(log_name == NULL || *log_name == '\0')
+		log_name = ".dereferee.log";
+
+	memory_log = fopen(log_name, "w");
 
 	max_leaks = 100;
 	this->platform = platform;
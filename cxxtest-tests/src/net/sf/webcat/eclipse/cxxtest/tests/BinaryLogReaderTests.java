@@ -0,0 +1,181 @@
+package net.sf.webcat.eclipse.cxxtest.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import static org.junit.Assert.*;
+
+import net.sf.webcat.eclipse.cxxtest.xml.BinaryLogReader;
+import net.sf.webcat.eclipse.cxxtest.xml.ElementContext;
+
+public class BinaryLogReaderTests
+{
+	private static class Recorder extends ElementContext
+	{
+		private StringBuilder out;
+
+		public Recorder(StringBuilder out)
+		{
+			this.out = out;
+		}
+
+		public ElementContext startElement(String uri, String localName,
+				String qName, Attributes attributes)
+		{
+			out.append("<" + localName);
+
+			for (int i = 0; i < attributes.getLength(); i++)
+			{
+				out.append(" " + attributes.getQName(i) + "="
+						+ attributes.getValue(i));
+			}
+
+			out.append(">");
+			return new Recorder(out);
+		}
+
+		public void endElement(String uri, String localName, String qName)
+		{
+			out.append("</" + localName + ">");
+		}
+
+		public void characters(char[] chars, int start, int length)
+		{
+			out.append(chars, start, length);
+		}
+	}
+
+	private static class LogBuilder
+	{
+		private ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		public LogBuilder header()
+		{
+			out.write('C'); out.write('X'); out.write('T'); out.write('B');
+			out.write(1);
+			return this;
+		}
+
+		public LogBuilder number(long value)
+		{
+			while (value >= 0x80)
+			{
+				out.write((int) (value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+
+			out.write((int) value);
+			return this;
+		}
+
+		public LogBuilder string(String value) throws Exception
+		{
+			byte[] bytes = value.getBytes("UTF-8");
+			number(bytes.length);
+			out.write(bytes, 0, bytes.length);
+			return this;
+		}
+
+		public LogBuilder newRef(int index, String value) throws Exception
+		{
+			return number(index).string(value);
+		}
+
+		public LogBuilder raw(int b)
+		{
+			out.write(b);
+			return this;
+		}
+
+		public byte[] bytes()
+		{
+			return out.toByteArray();
+		}
+	}
+
+	private static String read(byte[] log) throws Exception
+	{
+		StringBuilder out = new StringBuilder();
+		new BinaryLogReader(new Recorder(out)).parse(
+				new ByteArrayInputStream(log));
+		return out.toString();
+	}
+
+	private static LogBuilder world() throws Exception
+	{
+		// <world><suite name=S file=a.h line=300>
+		return new LogBuilder().header()
+			.raw(1).newRef(0, "world").number(0)
+			.raw(1).newRef(1, "suite").number(3)
+				.newRef(2, "name").raw(0).string("S")
+				.newRef(3, "file").raw(1).newRef(4, "a.h")
+				.newRef(5, "line").raw(2).number(300);
+	}
+
+	@Test public void elementsAndAttributes() throws Exception
+	{
+		byte[] log = world()
+			.raw(1).newRef(6, "stack-frame").number(2)
+				.newRef(7, "function").raw(1).newRef(8, "f()")
+				.newRef(9, "location").raw(3).number(4).number(12)
+			.raw(3)
+			.raw(2).string("x < y")
+			.raw(3)
+			.raw(3)
+			.bytes();
+
+		assertEquals("<world><suite name=S file=a.h line=300>"
+				+ "<stack-frame function=f() location=a.h:12></stack-frame>"
+				+ "x < y</suite></world>", read(log));
+	}
+
+	@Test public void concatenatedLogs() throws Exception
+	{
+		byte[] first = world().raw(3).raw(3).bytes();
+		byte[] log = new byte[first.length * 2];
+		System.arraycopy(first, 0, log, 0, first.length);
+		System.arraycopy(first, 0, log, first.length, first.length);
+
+		assertEquals("<world><suite name=S file=a.h line=300></suite>"
+				+ "<suite name=S file=a.h line=300></suite></world>",
+				read(log));
+		assertTrue(BinaryLogReader.isComplete(new ByteArrayInputStream(log)));
+	}
+
+	@Test public void emptyLog() throws Exception
+	{
+		assertEquals("", read(new byte[0]));
+	}
+
+	@Test(expected = SAXException.class)
+	public void incompleteLog() throws Exception
+	{
+		read(world().raw(3).bytes());
+	}
+
+	@Test public void truncatedLogIsIncomplete() throws Exception
+	{
+		byte[] log = world().bytes();
+		byte[] truncated = new byte[log.length - 2];
+		System.arraycopy(log, 0, truncated, 0, truncated.length);
+
+		assertFalse(BinaryLogReader.isComplete(
+				new ByteArrayInputStream(truncated)));
+	}
+
+	@Test(expected = SAXException.class)
+	public void badStringReference() throws Exception
+	{
+		read(new LogBuilder().header().raw(1).number(5).bytes());
+	}
+
+	@Test(expected = SAXException.class)
+	public void missingHeader() throws Exception
+	{
+		read(new LogBuilder().raw(1).newRef(0, "world").number(0).bytes());
+	}
+}
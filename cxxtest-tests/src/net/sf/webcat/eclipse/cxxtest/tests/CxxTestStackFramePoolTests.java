@@ -0,0 +1,59 @@
+package net.sf.webcat.eclipse.cxxtest.tests;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
+import net.sf.webcat.eclipse.cxxtest.model.ICxxTestStackFrame;
+
+public class CxxTestStackFramePoolTests
+{
+	@Test public void repeatedFramesAreShared()
+	{
+		CxxTestStackFramePool pool = new CxxTestStackFramePool();
+		ICxxTestStackFrame frame = pool.getFrame(new String("f()"),
+				new String("a.cpp:12"));
+
+		assertSame(frame, pool.getFrame(new String("f()"),
+				new String("a.cpp:12")));
+		assertEquals(1, pool.size());
+	}
+
+	@Test public void locationIsSplit()
+	{
+		CxxTestStackFramePool pool = new CxxTestStackFramePool();
+
+		ICxxTestStackFrame frame = pool.getFrame("f()", "c:\\src\\a.cpp:12");
+		assertEquals("f()", frame.getFunction());
+		assertEquals("c:\\src\\a.cpp", frame.getFile());
+		assertEquals(12, frame.getLineNumber());
+
+		frame = pool.getFrame("f()", "a.cpp");
+		assertEquals("a.cpp", frame.getFile());
+		assertEquals(0, frame.getLineNumber());
+
+		frame = pool.getFrame("f()", "a.cpp:main");
+		assertEquals("a.cpp:main", frame.getFile());
+		assertEquals(0, frame.getLineNumber());
+
+		frame = pool.getFrame(null, null);
+		assertNull(frame.getFunction());
+		assertNull(frame.getFile());
+	}
+
+	@Test public void namesAreInterned()
+	{
+		CxxTestStackFramePool pool = new CxxTestStackFramePool();
+		ICxxTestStackFrame first = pool.getFrame("f()", "a.cpp:12");
+		ICxxTestStackFrame second = pool.getFrame(new String("f()"),
+				"a.cpp:20");
+		ICxxTestStackFrame third = pool.getFrame("g()", "a.cpp:30");
+
+		assertNotSame(first, second);
+		assertSame(first.getFunction(), second.getFunction());
+		assertSame(first.getFile(), second.getFile());
+		assertSame(first.getFile(), third.getFile());
+		assertEquals(3, pool.size());
+	}
+}
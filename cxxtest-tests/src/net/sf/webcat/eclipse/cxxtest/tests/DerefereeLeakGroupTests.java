@@ -0,0 +1,70 @@
+package net.sf.webcat.eclipse.cxxtest.tests;
+
+import org.junit.Test;
+import org.xml.sax.helpers.AttributesImpl;
+
+import static org.junit.Assert.*;
+
+import net.sf.webcat.eclipse.cxxtest.internal.model.CxxTestStackFramePool;
+import net.sf.webcat.eclipse.cxxtest.internal.model.DerefereeLeak;
+import net.sf.webcat.eclipse.cxxtest.internal.model.DerefereeLeakGroup;
+import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeak;
+import net.sf.webcat.eclipse.cxxtest.model.IDerefereeLeakGroup;
+
+public class DerefereeLeakGroupTests
+{
+	private CxxTestStackFramePool pool = new CxxTestStackFramePool();
+
+	private DerefereeLeak leak(int size, boolean array, String... functions)
+	{
+		AttributesImpl attributes = new AttributesImpl();
+		attributes.addAttribute("", "address", "address", "CDATA", "0x1");
+		attributes.addAttribute("", "size", "size", "CDATA",
+				Integer.toString(size));
+		attributes.addAttribute("", "array", "array", "CDATA",
+				array ? "yes" : "no");
+
+		DerefereeLeak leak = new DerefereeLeak(attributes);
+
+		for (String function : functions)
+			leak.addStackFrame(pool.getFrame(function, "a.cpp:1"));
+
+		return leak;
+	}
+
+	@Test public void leaksWithTheSameTraceAreGrouped()
+	{
+		IDerefereeLeak[] leaks = {
+			leak(4, false, "f()", "main()"),
+			leak(8, false, "g()", "main()"),
+			leak(4, false, "f()", "main()"),
+			leak(4, true, "f()", "main()"),
+			leak(16, false, "f()"),
+			leak(12, false, "f()", "main()")
+		};
+
+		IDerefereeLeakGroup[] groups = DerefereeLeakGroup.group(leaks);
+		assertEquals(4, groups.length);
+
+		assertEquals(3, groups[0].getLeakCount());
+		assertEquals(20, groups[0].getTotalSize());
+		assertSame(leaks[0], groups[0].getLeak(0));
+		assertSame(leaks[2], groups[0].getLeak(1));
+		assertSame(leaks[5], groups[0].getLeak(2));
+		assertEquals(2, groups[0].getStackTrace().length);
+
+		assertEquals(1, groups[1].getLeakCount());
+		assertTrue(groups[2].isArray());
+		assertEquals(16, groups[3].getTotalSize());
+	}
+
+	@Test public void leaksWithoutTraces()
+	{
+		IDerefereeLeakGroup[] groups = DerefereeLeakGroup.group(
+				new IDerefereeLeak[] { leak(4, false), leak(6, false) });
+
+		assertEquals(1, groups.length);
+		assertEquals(10, groups[0].getTotalSize());
+		assertEquals(0, groups[0].getStackTrace().length);
+	}
+}
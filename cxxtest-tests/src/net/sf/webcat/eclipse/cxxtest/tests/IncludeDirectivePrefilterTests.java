@@ -0,0 +1,66 @@
+package net.sf.webcat.eclipse.cxxtest.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.webcat.eclipse.cxxtest.internal.generator.IncludeDirectivePrefilter;
+
+public class IncludeDirectivePrefilterTests
+{
+	private static int scan(String contents) throws IOException
+	{
+		return IncludeDirectivePrefilter.scan(Channels.newChannel(
+				new ByteArrayInputStream(contents.getBytes())));
+	}
+
+	@Test public void scanEmpty() throws IOException
+	{
+		assertEquals(IncludeDirectivePrefilter.NO_SUITES, scan(""));
+	}
+
+	@Test public void scanInclude() throws IOException
+	{
+		assertEquals(IncludeDirectivePrefilter.INCLUDES_CXXTEST,
+				scan("#include <cxxtest/TestSuite.h>\n"));
+	}
+
+	@Test public void scanIncludeWithWhitespace() throws IOException
+	{
+		assertEquals(IncludeDirectivePrefilter.INCLUDES_CXXTEST,
+				scan("int x;\r\n  #  include\t<cxxtest/TestSuite.h>\r\n"));
+	}
+
+	@Test public void scanOtherInclude() throws IOException
+	{
+		assertEquals(IncludeDirectivePrefilter.NO_SUITES,
+				scan("#include <cxxtest/TestSuite.hpp>\n#include <vector>\n"));
+	}
+
+	@Test public void scanIncludeNotAtLineStart() throws IOException
+	{
+		assertEquals(IncludeDirectivePrefilter.MAY_CONTAIN_SUITES,
+				scan("int x; #include <cxxtest/TestSuite.h>\n"));
+	}
+
+	@Test public void scanTestSuiteIdentifier() throws IOException
+	{
+		assertEquals(IncludeDirectivePrefilter.MAY_CONTAIN_SUITES,
+				scan("#include \"base.h\"\nclass A : public CxxTest::TestSuite {};"));
+	}
+
+	@Test public void scanMainAtEnd() throws IOException
+	{
+		assertEquals(IncludeDirectivePrefilter.MAY_CONTAIN_SUITES,
+				scan("int main"));
+	}
+
+	@Test public void scanLongerIdentifiers() throws IOException
+	{
+		assertEquals(IncludeDirectivePrefilter.NO_SUITES,
+				scan("int domain(); class MyTestSuiteHelper { };"));
+	}
+}
@@ -0,0 +1,145 @@
+package net.sf.webcat.eclipse.cxxtest.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import net.sf.webcat.eclipse.cxxtest.internal.ShardLogMerger;
+import net.sf.webcat.eclipse.cxxtest.xml.BinaryLogReader;
+
+public class ShardLogMergerTests
+{
+	private File dir;
+
+	@Before public void createDirectory() throws Exception
+	{
+		dir = File.createTempFile("shards", "");
+		dir.delete();
+		dir.mkdir();
+	}
+
+	@After public void deleteDirectory()
+	{
+		for (File file : dir.listFiles())
+			file.delete();
+
+		dir.delete();
+	}
+
+	private File write(String name, byte[] contents) throws Exception
+	{
+		File file = new File(dir, name);
+		OutputStream stream = new FileOutputStream(file);
+		stream.write(contents);
+		stream.close();
+		return file;
+	}
+
+	private File write(String name, String contents) throws Exception
+	{
+		return write(name, contents.getBytes("UTF-8"));
+	}
+
+	private byte[] read(File file) throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		InputStream stream = new FileInputStream(file);
+		int b;
+		while ((b = stream.read()) != -1)
+			out.write(b);
+		stream.close();
+		return out.toByteArray();
+	}
+
+	private static final String COMPLETE_LOG = "<?xml version='1.0'?>\n"
+		+ "<world>\n"
+		+ "    <suite name=\"A\" file=\"A.h\" line=\"1\">\n"
+		+ "    </suite>\n"
+		+ "</world>\n";
+
+	// <world><suite name=S></suite></world>, as the binary formatter
+	// writes it.
+	private static final byte[] COMPLETE_BINARY_LOG = {
+		'C', 'X', 'T', 'B', 1,
+		1, 0, 5, 'w', 'o', 'r', 'l', 'd', 0,
+		1, 1, 5, 's', 'u', 'i', 't', 'e', 1, 2, 4, 'n', 'a', 'm', 'e', 0,
+			1, 'S',
+		3,
+		3
+	};
+
+	@Test public void completeShards() throws Exception
+	{
+		File target = new File(dir, "merged");
+		ShardLogMerger.mergeTestResults(new File[] {
+				write("0", COMPLETE_LOG), write("1", COMPLETE_LOG) }, target);
+
+		String merged = new String(read(target), "UTF-8");
+		assertTrue(merged.trim().endsWith("</world>"));
+	}
+
+	@Test public void missingShardLeavesWorldOpen() throws Exception
+	{
+		File target = new File(dir, "merged");
+		ShardLogMerger.mergeTestResults(new File[] {
+				write("0", COMPLETE_LOG), new File(dir, "missing") }, target);
+
+		String merged = new String(read(target), "UTF-8");
+		assertTrue(merged.contains("<suite name=\"A\""));
+		assertFalse(merged.contains("</world>"));
+	}
+
+	@Test public void truncatedShardLeavesWorldOpen() throws Exception
+	{
+		File target = new File(dir, "merged");
+		ShardLogMerger.mergeTestResults(new File[] {
+				write("0", COMPLETE_LOG),
+				write("1", "<?xml version='1.0'?>\n<world>\n") }, target);
+
+		String merged = new String(read(target), "UTF-8");
+		assertFalse(merged.contains("</world>"));
+	}
+
+	@Test public void completeBinaryShards() throws Exception
+	{
+		File target = new File(dir, "merged");
+		ShardLogMerger.mergeBinaryTestResults(new File[] {
+				write("0", COMPLETE_BINARY_LOG),
+				write("1", COMPLETE_BINARY_LOG) }, target);
+
+		assertTrue(BinaryLogReader.isComplete(new FileInputStream(target)));
+	}
+
+	@Test public void missingBinaryShardIsIncomplete() throws Exception
+	{
+		File target = new File(dir, "merged");
+		ShardLogMerger.mergeBinaryTestResults(new File[] {
+				write("0", COMPLETE_BINARY_LOG), new File(dir, "missing") },
+				target);
+
+		assertFalse(BinaryLogReader.isComplete(new FileInputStream(target)));
+	}
+
+	@Test public void truncatedBinaryShardIsIncomplete() throws Exception
+	{
+		byte[] truncated = new byte[COMPLETE_BINARY_LOG.length - 2];
+		System.arraycopy(COMPLETE_BINARY_LOG, 0, truncated, 0,
+				truncated.length);
+
+		File target = new File(dir, "merged");
+		ShardLogMerger.mergeBinaryTestResults(new File[] {
+				write("0", truncated), write("1", COMPLETE_BINARY_LOG) },
+				target);
+
+		assertFalse(BinaryLogReader.isComplete(new FileInputStream(target)));
+	}
+}
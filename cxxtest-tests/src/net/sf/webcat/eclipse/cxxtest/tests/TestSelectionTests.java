@@ -0,0 +1,63 @@
+package net.sf.webcat.eclipse.cxxtest.tests;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.webcat.eclipse.cxxtest.internal.TestSelection;
+
+public class TestSelectionTests
+{
+	@Test public void everything()
+	{
+		assertTrue(TestSelection.EVERYTHING.isEverything());
+		assertTrue(TestSelection.EVERYTHING.isSelected("Suite", "testA"));
+	}
+
+	@Test public void includeSuite()
+	{
+		TestSelection selection = new TestSelection(
+				Arrays.asList("Suite"), null);
+
+		assertTrue(selection.isSelected("Suite", "testA"));
+		assertFalse(selection.isSelected("SuiteTwo", "testA"));
+	}
+
+	@Test public void includeTest()
+	{
+		TestSelection selection = new TestSelection(
+				Arrays.asList("Other", "Suite::testA"), null);
+
+		assertTrue(selection.isSelected("Suite", "testA"));
+		assertFalse(selection.isSelected("Suite", "testB"));
+		assertTrue(selection.isSelected("Other", "testB"));
+	}
+
+	@Test public void includeNothing()
+	{
+		TestSelection selection = new TestSelection(
+				Collections.<String>emptyList(), null);
+
+		assertFalse(selection.isEverything());
+		assertFalse(selection.isSelected("Suite", "testA"));
+	}
+
+	@Test public void wildcards()
+	{
+		TestSelection selection = new TestSelection(
+				Arrays.asList("S*::test?"), Arrays.asList("*::testB"));
+
+		assertTrue(selection.isSelected("Suite", "testA"));
+		assertFalse(selection.isSelected("Suite", "testB"));
+		assertFalse(selection.isSelected("Suite", "testAB"));
+		assertFalse(selection.isSelected("Other", "testA"));
+	}
+
+	@Test public void join()
+	{
+		assertEquals("A,B::c", TestSelection.join(Arrays.asList("A", "B::c")));
+		assertEquals("", TestSelection.join(Collections.<String>emptyList()));
+	}
+}
@@ -0,0 +1,68 @@
+package net.sf.webcat.eclipse.cxxtest.tests;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.webcat.eclipse.cxxtest.internal.TestShardPlanner;
+
+public class TestShardPlannerTests
+{
+	private static Map<String, Long> durations(Object... pairs)
+	{
+		Map<String, Long> map = new HashMap<String, Long>();
+
+		for (int i = 0; i < pairs.length; i += 2)
+			map.put((String) pairs[i], ((Number) pairs[i + 1]).longValue());
+
+		return map;
+	}
+
+	@Test public void partitionEmpty()
+	{
+		assertTrue(TestShardPlanner.partition(durations(), 4).isEmpty());
+	}
+
+	@Test public void partitionSingleShard()
+	{
+		List<List<String>> shards = TestShardPlanner.partition(
+				durations("B", 1, "A", 1), 1);
+
+		assertEquals(1, shards.size());
+		assertEquals(Arrays.asList("A", "B"), shards.get(0));
+	}
+
+	@Test public void partitionFewerSuitesThanShards()
+	{
+		List<List<String>> shards = TestShardPlanner.partition(
+				durations("A", 5, "B", 3), 8);
+
+		assertEquals(2, shards.size());
+		assertEquals(Arrays.asList("A"), shards.get(0));
+		assertEquals(Arrays.asList("B"), shards.get(1));
+	}
+
+	@Test public void partitionBalancesDurations()
+	{
+		List<List<String>> shards = TestShardPlanner.partition(
+				durations("A", 7, "B", 5, "C", 4, "D", 3, "E", 1), 2);
+
+		assertEquals(Arrays.asList("A", "D"), shards.get(0));
+		assertEquals(Arrays.asList("B", "C", "E"), shards.get(1));
+	}
+
+	@Test public void estimateWithoutHistory()
+	{
+		assertEquals(3, TestShardPlanner.estimateDuration(3, 0, 0));
+		assertEquals(1, TestShardPlanner.estimateDuration(0, 0, 0));
+	}
+
+	@Test public void estimateFromHistory()
+	{
+		assertEquals(40, TestShardPlanner.estimateDuration(4, 100, 10));
+	}
+}
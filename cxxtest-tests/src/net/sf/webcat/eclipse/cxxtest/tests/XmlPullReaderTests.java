@@ -0,0 +1,114 @@
+package net.sf.webcat.eclipse.cxxtest.tests;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.xml.sax.SAXParseException;
+
+import static org.junit.Assert.*;
+
+import net.sf.webcat.eclipse.cxxtest.xml.XmlPullReader;
+
+public class XmlPullReaderTests
+{
+	private static XmlPullReader reader(String xml)
+	{
+		return new XmlPullReader(new StringReader(xml));
+	}
+
+	private static String text(XmlPullReader reader)
+	{
+		return new String(reader.getTextCharacters(), 0,
+				reader.getTextLength());
+	}
+
+	@Test public void elements() throws Exception
+	{
+		XmlPullReader reader = reader("<?xml version='1.0'?>\n<a><b/></a>");
+		assertEquals(XmlPullReader.TEXT, reader.next());
+		assertEquals("\n", text(reader));
+		assertEquals(XmlPullReader.START_ELEMENT, reader.next());
+		assertEquals("a", reader.getName());
+		assertEquals(XmlPullReader.START_ELEMENT, reader.next());
+		assertEquals("b", reader.getName());
+		assertEquals(XmlPullReader.END_ELEMENT, reader.next());
+		assertEquals("b", reader.getName());
+		assertEquals(XmlPullReader.END_ELEMENT, reader.next());
+		assertEquals("a", reader.getName());
+		assertEquals(XmlPullReader.END_DOCUMENT, reader.next());
+	}
+
+	@Test public void namesAreShared() throws Exception
+	{
+		XmlPullReader reader = reader("<test/><test/>");
+		reader.next();
+		String first = reader.getName();
+		reader.next();
+		reader.next();
+		assertSame(first, reader.getName());
+	}
+
+	@Test public void attributes() throws Exception
+	{
+		XmlPullReader reader = reader(
+				"<test name=\"one\" line='12' empty=\"\"/>");
+		assertEquals(XmlPullReader.START_ELEMENT, reader.next());
+		assertEquals(3, reader.getAttributes().getLength());
+		assertEquals("one", reader.getAttributes().getValue("name"));
+		assertEquals("12", reader.getAttributes().getValue("line"));
+		assertEquals("", reader.getAttributes().getValue("empty"));
+		assertNull(reader.getAttributes().getValue("missing"));
+		assertEquals(XmlPullReader.END_ELEMENT, reader.next());
+		assertEquals(0, reader.getAttributes().getLength());
+	}
+
+	@Test public void entities() throws Exception
+	{
+		XmlPullReader reader = reader(
+				"<a v=\"&quot;&apos;&lt;&gt;&amp;\">x &lt; y&#65;&#x42;</a>");
+		reader.next();
+		assertEquals("\"'<>&", reader.getAttributes().getValue("v"));
+		assertEquals(XmlPullReader.TEXT, reader.next());
+		assertEquals("x < yAB", text(reader));
+	}
+
+	@Test public void attributeWhitespace() throws Exception
+	{
+		XmlPullReader reader = reader("<a v=\"one\ttwo\r\nthree\"/>");
+		reader.next();
+		assertEquals("one two three", reader.getAttributes().getValue("v"));
+	}
+
+	@Test public void cdataAndComments() throws Exception
+	{
+		XmlPullReader reader = reader(
+				"<a><!-- skip -->one<![CDATA[<two>]]></a>");
+		reader.next();
+		assertEquals(XmlPullReader.TEXT, reader.next());
+		assertEquals("one<two>", text(reader));
+		assertEquals(XmlPullReader.END_ELEMENT, reader.next());
+	}
+
+	@Test public void lineNumbers() throws Exception
+	{
+		XmlPullReader reader = reader("<a>\r\n<b/>\n</a>");
+		reader.next();
+		reader.next();
+		reader.next();
+		assertEquals(2, reader.getLineNumber());
+	}
+
+	@Test(expected = SAXParseException.class)
+	public void unknownEntity() throws Exception
+	{
+		XmlPullReader reader = reader("<a>&bogus;</a>");
+		reader.next();
+		reader.next();
+	}
+
+	@Test(expected = SAXParseException.class)
+	public void unterminatedTag() throws Exception
+	{
+		reader("<a name=\"x\"").next();
+	}
+}